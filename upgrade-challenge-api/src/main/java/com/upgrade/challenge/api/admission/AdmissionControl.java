@@ -0,0 +1,120 @@
+package com.upgrade.challenge.api.admission;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.upgrade.challenge.api.availability.Campsites;
+import com.upgrade.challenge.api.availability.ReservationEngine;
+import com.upgrade.challenge.api.exceprions.BookingDateUnavailableException;
+import com.upgrade.challenge.api.service.BookingValidator;
+import com.upgrade.challenge.api.service.ValidationError;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Sheds booking writes before they reach the database: a token bucket per client answers 429, writes beyond
+ * {@code booking.admission.max-in-flight} are answered 503 instead of queueing for a connection, and
+ * {@link #precheck} refuses nights already known to be taken.
+ */
+@Component
+public class AdmissionControl {
+
+    public static final String ADMISSION_COUNTER = "booking.admission";
+
+    private final ReservationEngine reservationEngine;
+
+    private final Campsites campsites;
+
+    private final BookingValidator bookingValidator;
+
+    private final double rate;
+
+    private final double burst;
+
+    private final Semaphore inFlight;
+
+    private final Cache<String, TokenBucket> buckets;
+
+    private final Counter admitted;
+
+    private final Counter rateLimited;
+
+    private final Counter overloaded;
+
+    private final Counter taken;
+
+    public AdmissionControl(ReservationEngine reservationEngine, Campsites campsites,
+                            BookingValidator bookingValidator, MeterRegistry meterRegistry,
+                            @Value("${booking.admission.rate:20}") double rate,
+                            @Value("${booking.admission.burst:40}") double burst,
+                            @Value("${booking.admission.max-in-flight:50}") int maxInFlight,
+                            @Value("${booking.admission.max-clients:100000}") long maxClients) {
+        this.reservationEngine = reservationEngine;
+        this.campsites = campsites;
+        this.bookingValidator = bookingValidator;
+        this.rate = rate;
+        this.burst = burst;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxClients)
+                .expireAfterAccess(Duration.ofSeconds((long) Math.ceil(burst / rate) + 1))
+                .build();
+
+        this.admitted = meterRegistry.counter(ADMISSION_COUNTER, "outcome", "admitted");
+        this.rateLimited = meterRegistry.counter(ADMISSION_COUNTER, "outcome", "rate_limited");
+        this.overloaded = meterRegistry.counter(ADMISSION_COUNTER, "outcome", "overloaded");
+        this.taken = meterRegistry.counter(ADMISSION_COUNTER, "outcome", "taken");
+        Gauge.builder("booking.admission.in_flight", this.inFlight, permits -> maxInFlight - permits.availablePermits())
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return 0 when admitted, otherwise the seconds after which the client should retry
+     */
+    long tryAcquireRate(String client) {
+        long now = System.nanoTime();
+        TokenBucket bucket = this.buckets.get(client, key -> new TokenBucket(this.burst, this.rate, now));
+        if (bucket.tryAcquire(now)) {
+            return 0;
+        }
+        this.rateLimited.increment();
+        return bucket.secondsUntilNextToken();
+    }
+
+    boolean tryEnter() {
+        if (this.inFlight.tryAcquire()) {
+            this.admitted.increment();
+            return true;
+        }
+        this.overloaded.increment();
+        return false;
+    }
+
+    void release() {
+        this.inFlight.release();
+    }
+
+    // stays the booking rules refuse are rejected first, so a check costs at most the longest stay
+    public void precheck(Long campsiteId, LocalDate checkIn, LocalDate checkOut) {
+        long campsite = campsiteId == null ? Campsites.DEFAULT_ID : campsiteId;
+        if (checkIn == null || checkOut == null || !this.campsites.exists(campsite)) {
+            return;
+        }
+        ValidationError error = this.bookingValidator.checkDateRange(checkIn, checkOut);
+        if (error != null) {
+            throw error.toException();
+        }
+        for (long day = checkIn.toEpochDay(); day < checkOut.toEpochDay(); day++) {
+            if (this.reservationEngine.isClaimed(campsite, day)) {
+                this.taken.increment();
+                throw new BookingDateUnavailableException();
+            }
+        }
+    }
+}
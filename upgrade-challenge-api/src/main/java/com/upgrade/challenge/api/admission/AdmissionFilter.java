@@ -0,0 +1,99 @@
+package com.upgrade.challenge.api.admission;
+
+import com.upgrade.challenge.api.exceprions.ErrorCode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Applies {@link AdmissionControl} to the booking writes: every POST, PUT and DELETE under {@code /api/booking}.
+ * Clients are told apart by {@code booking.admission.client-header} when set, for instance
+ * {@code X-Forwarded-For} behind a proxy, and by their address otherwise. Each proxy appends the address it got
+ * the request from, and anything before that is up to the client, so the client is the entry
+ * {@code booking.admission.trusted-proxies} hops from the right; a header with fewer entries did not come through
+ * the proxies and the address is used instead.
+ */
+@Component
+public class AdmissionFilter extends OncePerRequestFilter {
+
+    private static final String BOOKING_PATH = "/api/booking";
+
+    private final AdmissionControl admissionControl;
+
+    private final boolean enabled;
+
+    private final String clientHeader;
+
+    private final int trustedProxies;
+
+    public AdmissionFilter(AdmissionControl admissionControl,
+                           @Value("${booking.admission.enabled:true}") boolean enabled,
+                           @Value("${booking.admission.client-header:}") String clientHeader,
+                           @Value("${booking.admission.trusted-proxies:1}") int trustedProxies) {
+        this.admissionControl = admissionControl;
+        this.enabled = enabled;
+        this.clientHeader = clientHeader;
+        this.trustedProxies = trustedProxies;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !this.enabled
+                || HttpMethod.GET.matches(request.getMethod())
+                || HttpMethod.HEAD.matches(request.getMethod())
+                || HttpMethod.OPTIONS.matches(request.getMethod())
+                || !request.getRequestURI().startsWith(BOOKING_PATH);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        long retryAfter = this.admissionControl.tryAcquireRate(this.clientOf(request));
+        if (retryAfter > 0) {
+            reject(response, ErrorCode.RATE_LIMITED, retryAfter, "Too many requests, please slow down.");
+            return;
+        }
+        if (!this.admissionControl.tryEnter()) {
+            reject(response, ErrorCode.OVERLOADED, 1, "The service is busy, please try again shortly.");
+            return;
+        }
+
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            this.admissionControl.release();
+        }
+    }
+
+    private String clientOf(HttpServletRequest request) {
+        if (!this.clientHeader.isEmpty()) {
+            String value = request.getHeader(this.clientHeader);
+            if (value != null) {
+                String[] hops = value.split(",");
+                if (this.trustedProxies > 0 && hops.length >= this.trustedProxies) {
+                    String client = hops[hops.length - this.trustedProxies].trim();
+                    if (!client.isEmpty()) {
+                        return client;
+                    }
+                }
+            }
+        }
+        return request.getRemoteAddr();
+    }
+
+    private static void reject(HttpServletResponse response, ErrorCode code, long retryAfterSeconds,
+                               String message) throws IOException {
+        response.setStatus(code.getStatus().value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+        response.setContentType("application/json");
+        response.getWriter().write("{\"code\":\"" + code + "\",\"message\":\"" + message + "\"}");
+    }
+}
@@ -0,0 +1,39 @@
+package com.upgrade.challenge.api.admission;
+
+/**
+ * Holds up to {@code capacity} tokens, refilled continuously at {@code ratePerSecond}; each request takes one.
+ */
+class TokenBucket {
+
+    private final double capacity;
+
+    private final double tokensPerNano;
+
+    private double tokens;
+
+    private long refilledAt;
+
+    TokenBucket(double capacity, double ratePerSecond, long now) {
+        this.capacity = capacity;
+        this.tokensPerNano = ratePerSecond / 1_000_000_000d;
+        this.tokens = capacity;
+        this.refilledAt = now;
+    }
+
+    synchronized boolean tryAcquire(long now) {
+        this.tokens = Math.min(this.capacity, this.tokens + (now - this.refilledAt) * this.tokensPerNano);
+        this.refilledAt = now;
+        if (this.tokens < 1) {
+            return false;
+        }
+        this.tokens--;
+        return true;
+    }
+
+    /**
+     * Whole seconds until the next token, for Retry-After.
+     */
+    synchronized long secondsUntilNextToken() {
+        return Math.max(1, (long) Math.ceil((1 - this.tokens) / this.tokensPerNano / 1_000_000_000d));
+    }
+}
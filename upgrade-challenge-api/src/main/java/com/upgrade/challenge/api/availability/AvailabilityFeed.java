@@ -0,0 +1,346 @@
+package com.upgrade.challenge.api.availability;
+
+import com.upgrade.challenge.api.exceprions.BookingOverloadedException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Pushes a {@code snapshot} of a campsite's availability, then {@code delta} events, to Server-Sent Events
+ * subscribers. Changes are never queued as events: they are ORed into each subscriber's dirty bitmap and turned
+ * into one delta at send time, so a slow reader costs a fixed buffer and bursts coalesce.
+ * <p>
+ * A blocked send cannot be taken back, so a subscriber whose send outlasts {@code booking.feed.send-timeout} is
+ * evicted and a sender thread added while it stays blocked, up to {@code booking.feed.max-stalled-sends}.
+ */
+@Component
+@Lazy(false)
+public class AvailabilityFeed implements AvailabilityListener {
+
+    private static final int MASK = AvailabilityIndex.CAPACITY - 1;
+
+    private static final int WORDS = AvailabilityIndex.CAPACITY / Long.SIZE;
+
+    private static final int IDLE = 0;
+
+    private static final int SENDING = 1;
+
+    private static final int STALLED = 2;
+
+    private final AvailabilityIndex availabilityIndex;
+
+    private final Set<Subscriber>[] subscribers;
+
+    private final AtomicLongArray[] pending;
+
+    private final Semaphore signal = new Semaphore(0);
+
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+
+    private final ThreadPoolExecutor senders;
+
+    private final Set<Subscriber> sending = ConcurrentHashMap.newKeySet();
+
+    private final int maxSubscribers;
+
+    private final long timeoutMillis;
+
+    private final long sendTimeoutNanos;
+
+    private final int maxStalledSends;
+
+    private int stalledSends;
+
+    private volatile boolean running = true;
+
+    private Thread dispatcher;
+
+    @SuppressWarnings("unchecked")
+    public AvailabilityFeed(AvailabilityIndex availabilityIndex, Campsites campsites,
+                            @Value("${booking.feed.max-subscribers:50000}") int maxSubscribers,
+                            @Value("${booking.feed.sender-threads:2}") int senderThreads,
+                            @Value("${booking.feed.timeout:30m}") Duration timeout,
+                            @Value("${booking.feed.send-timeout:5s}") Duration sendTimeout,
+                            @Value("${booking.feed.max-stalled-sends:64}") int maxStalledSends) {
+        this.availabilityIndex = availabilityIndex;
+        this.subscribers = new Set[campsites.count()];
+        this.pending = new AtomicLongArray[campsites.count()];
+        for (int i = 0; i < campsites.count(); i++) {
+            this.subscribers[i] = ConcurrentHashMap.newKeySet();
+            this.pending[i] = new AtomicLongArray(WORDS);
+        }
+        this.maxSubscribers = maxSubscribers;
+        this.timeoutMillis = timeout.toMillis();
+        this.sendTimeoutNanos = sendTimeout.toNanos();
+        this.maxStalledSends = maxStalledSends;
+        this.senders = new ThreadPoolExecutor(senderThreads, senderThreads, 1, TimeUnit.MINUTES,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "availability-feed-sender");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PostConstruct
+    public void start() {
+        this.availabilityIndex.addListener(this);
+        this.dispatcher = new Thread(this::dispatch, "availability-feed");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        this.running = false;
+        this.availabilityIndex.removeListener(this);
+        this.signal.release();
+        this.senders.shutdownNow();
+        for (Set<Subscriber> campsiteSubscribers : this.subscribers) {
+            campsiteSubscribers.forEach(subscriber -> subscriber.emitter.complete());
+        }
+    }
+
+    // later nights than the index covers cannot be reserved yet, so deltas stop there
+    public SseEmitter subscribe(long campsiteId, long firstDay, long lastDay) throws IOException {
+        if (this.subscriberCount.incrementAndGet() > this.maxSubscribers) {
+            this.subscriberCount.decrementAndGet();
+            throw new BookingOverloadedException("Too many availability subscribers, please try again later.");
+        }
+
+        Subscriber subscriber = new Subscriber(campsiteId, firstDay,
+                Math.min(lastDay, firstDay + AvailabilityIndex.CAPACITY - 1), this.newEmitter(this.timeoutMillis));
+        subscriber.emitter.onCompletion(() -> this.remove(subscriber));
+        subscriber.emitter.onTimeout(() -> this.remove(subscriber));
+        subscriber.emitter.onError(error -> this.remove(subscriber));
+
+        // registered before the snapshot is taken, so no change can fall between the two
+        this.subscribers[Campsites.shardOf(campsiteId)].add(subscriber);
+
+        AvailabilityRangesWriter writer = new AvailabilityRangesWriter();
+        writer.start(firstDay, lastDay);
+        this.availabilityIndex.forEachAvailableRange(campsiteId, firstDay, lastDay, writer);
+        ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        writer.writeTo(snapshot);
+        synchronized (subscriber) {
+            try {
+                subscriber.emitter.send(SseEmitter.event()
+                        .name("snapshot")
+                        .data(new String(snapshot.toByteArray(), StandardCharsets.UTF_8)));
+            } catch (IOException ex) {
+                this.remove(subscriber);
+                throw ex;
+            }
+        }
+
+        subscriber.queued.set(false);
+        if (subscriber.isDirty()) {
+            this.schedule(subscriber);
+        }
+        return subscriber.emitter;
+    }
+
+    SseEmitter newEmitter(long timeoutMillis) {
+        return new SseEmitter(timeoutMillis);
+    }
+
+    @Override
+    public void changed(long campsiteId, long fromDay, long toDay) {
+        int shard = Campsites.shardOf(campsiteId);
+        if (this.subscribers[shard].isEmpty()) {
+            return;
+        }
+        AtomicLongArray bits = this.pending[shard];
+        for (long day = Math.max(fromDay, toDay - AvailabilityIndex.CAPACITY); day < toDay; day++) {
+            or(bits, AvailabilityIndex.wordOf(day), AvailabilityIndex.bitOf(day));
+        }
+        this.signal.release();
+    }
+
+    private void dispatch() {
+        long[] changed = new long[WORDS];
+        long checkNanos = Math.max(this.sendTimeoutNanos / 2, TimeUnit.MILLISECONDS.toNanos(10));
+        while (this.running) {
+            try {
+                this.signal.tryAcquire(checkNanos, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException ex) {
+                return;
+            }
+            this.signal.drainPermits();
+            this.evictStalled();
+
+            for (int shard = 0; shard < this.pending.length; shard++) {
+                boolean any = false;
+                for (int word = 0; word < WORDS; word++) {
+                    changed[word] = this.pending[shard].getAndSet(word, 0L);
+                    any |= changed[word] != 0;
+                }
+                if (!any) {
+                    continue;
+                }
+                for (Subscriber subscriber : this.subscribers[shard]) {
+                    for (int word = 0; word < WORDS; word++) {
+                        if (changed[word] != 0) {
+                            or(subscriber.dirty, word, changed[word]);
+                        }
+                    }
+                    this.schedule(subscriber);
+                }
+            }
+        }
+    }
+
+    private void schedule(Subscriber subscriber) {
+        if (subscriber.queued.compareAndSet(false, true)) {
+            this.senders.execute(() -> this.flush(subscriber));
+        }
+    }
+
+    // under the subscriber's lock, so a delta never overtakes an older one
+    private void flush(Subscriber subscriber) {
+        synchronized (subscriber) {
+            String delta = subscriber.takeDelta(this.availabilityIndex);
+            if (delta != null) {
+                subscriber.sendStarted = System.nanoTime();
+                subscriber.sendState.set(SENDING);
+                this.sending.add(subscriber);
+                try {
+                    subscriber.emitter.send(SseEmitter.event().name("delta").data(delta));
+                } catch (IOException | IllegalStateException ex) {
+                    this.remove(subscriber);
+                } finally {
+                    this.sending.remove(subscriber);
+                }
+                if (!subscriber.sendState.compareAndSet(SENDING, IDLE)) {
+                    this.replaceStalledSender(false);
+                    subscriber.emitter.complete();
+                    return;
+                }
+            }
+        }
+
+        subscriber.queued.set(false);
+        if (subscriber.isDirty() && this.subscribers[Campsites.shardOf(subscriber.campsiteId)].contains(subscriber)) {
+            this.schedule(subscriber);
+        }
+    }
+
+    // the emitter is completed by the sender once its send returns, not from here
+    private void evictStalled() {
+        long now = System.nanoTime();
+        for (Subscriber subscriber : this.sending) {
+            if (now - subscriber.sendStarted > this.sendTimeoutNanos
+                    && subscriber.sendState.compareAndSet(SENDING, STALLED)) {
+                this.remove(subscriber);
+                this.replaceStalledSender(true);
+            }
+        }
+    }
+
+    private synchronized void replaceStalledSender(boolean stalled) {
+        if (stalled) {
+            if (this.stalledSends++ < this.maxStalledSends) {
+                this.senders.setMaximumPoolSize(this.senders.getMaximumPoolSize() + 1);
+                this.senders.setCorePoolSize(this.senders.getCorePoolSize() + 1);
+            }
+        } else if (--this.stalledSends < this.maxStalledSends) {
+            this.senders.setCorePoolSize(this.senders.getCorePoolSize() - 1);
+            this.senders.setMaximumPoolSize(this.senders.getMaximumPoolSize() - 1);
+        }
+    }
+
+    int subscriberCount() {
+        return this.subscriberCount.get();
+    }
+
+    private void remove(Subscriber subscriber) {
+        if (this.subscribers[Campsites.shardOf(subscriber.campsiteId)].remove(subscriber)) {
+            this.subscriberCount.decrementAndGet();
+        }
+    }
+
+    private static void or(AtomicLongArray words, int word, long bits) {
+        long current;
+        do {
+            current = words.get(word);
+        } while ((current & bits) != bits && !words.compareAndSet(word, current, current | bits));
+    }
+
+    private static final class Subscriber {
+
+        private final long campsiteId;
+
+        private final long firstDay;
+
+        private final long lastDay;
+
+        private final SseEmitter emitter;
+
+        private final AtomicLongArray dirty = new AtomicLongArray(WORDS);
+
+        private final AtomicInteger sendState = new AtomicInteger(IDLE);
+
+        private volatile long sendStarted;
+
+        // set until the snapshot is sent
+        private final AtomicBoolean queued = new AtomicBoolean(true);
+
+        Subscriber(long campsiteId, long firstDay, long lastDay, SseEmitter emitter) {
+            this.campsiteId = campsiteId;
+            this.firstDay = firstDay;
+            this.lastDay = lastDay;
+            this.emitter = emitter;
+        }
+
+        boolean isDirty() {
+            for (int word = 0; word < WORDS; word++) {
+                if (dirty.get(word) != 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        String takeDelta(AvailabilityIndex availabilityIndex) {
+            StringBuilder reserved = new StringBuilder();
+            StringBuilder released = new StringBuilder();
+            for (int word = 0; word < WORDS; word++) {
+                long bits = dirty.getAndSet(word, 0L);
+                while (bits != 0) {
+                    int slot = word * Long.SIZE + Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    long day = firstDay + ((slot - (firstDay & MASK)) & MASK);
+                    if (day > lastDay) {
+                        continue;
+                    }
+                    StringBuilder target = availabilityIndex.isReserved(campsiteId, day) ? reserved : released;
+                    target.append(target.length() == 0 ? "\"" : ",\"").append(LocalDate.ofEpochDay(day)).append('"');
+                }
+            }
+
+            if (reserved.length() == 0 && released.length() == 0) {
+                return null;
+            }
+            return "{\"campsiteId\":" + campsiteId
+                    + ",\"reserved\":[" + reserved
+                    + "],\"released\":[" + released + "]}";
+        }
+    }
+}
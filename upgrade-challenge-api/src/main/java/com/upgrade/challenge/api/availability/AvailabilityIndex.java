@@ -0,0 +1,240 @@
+package com.upgrade.challenge.api.availability;
+
+import com.upgrade.challenge.api.repository.BookingRepository;
+import com.upgrade.challenge.api.repository.BookingStay;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Committed reservations, one bit per night in a ring of {@link #CAPACITY} days from today per campsite. Days
+ * leaving the ring are cleared when the date rolls over, so a stale bit never aliases a future night.
+ */
+@Component
+@Lazy(false)
+public class AvailabilityIndex {
+
+    public static final int CAPACITY = 128;
+
+    private static final int MASK = CAPACITY - 1;
+
+    private final BookingRepository bookingRepository;
+
+    private final Shard[] shards;
+
+    private final List<AvailabilityListener> listeners = new CopyOnWriteArrayList<>();
+
+    public AvailabilityIndex(BookingRepository bookingRepository, Campsites campsites) {
+        this.bookingRepository = bookingRepository;
+        this.shards = new Shard[campsites.count()];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Shard();
+        }
+    }
+
+    @PostConstruct
+    public synchronized void load() {
+        LocalDate today = LocalDate.now();
+        for (Shard shard : shards) {
+            shard.reset(today.toEpochDay());
+        }
+
+        for (BookingStay booking : bookingRepository.findOverlapping(today, today.plusDays(CAPACITY))) {
+            int shard = Campsites.shardOf(booking.getCampsiteId());
+            if (shard < 0 || shard >= shards.length) {
+                continue;
+            }
+            for (long day = booking.getCheckInDate().toEpochDay(); day < booking.getCheckOutDate().toEpochDay(); day++) {
+                shards[shard].set(day);
+            }
+        }
+
+        for (int shard = 0; shard < shards.length; shard++) {
+            this.fireChanged(shard + 1, today.toEpochDay(), today.toEpochDay() + CAPACITY);
+        }
+    }
+
+    public void addListener(AvailabilityListener listener) {
+        this.listeners.add(listener);
+    }
+
+    public void removeListener(AvailabilityListener listener) {
+        this.listeners.remove(listener);
+    }
+
+    private void fireChanged(long campsiteId, long fromDay, long toDay) {
+        for (AvailabilityListener listener : this.listeners) {
+            listener.changed(campsiteId, fromDay, toDay);
+        }
+    }
+
+    // writers roll the ring before touching a bit, so a covered slot only holds the bit of its own night
+    public boolean isReserved(long campsiteId, long epochDay) {
+        return this.shard(campsiteId).isReserved(epochDay);
+    }
+
+    public boolean isAvailable(long campsiteId, long fromDay, long toDay) {
+        Shard shard = this.shard(campsiteId);
+        for (long day = fromDay; day < toDay; day++) {
+            if (shard.isReserved(day)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Bit i is set when a stay of the given nights checking in on fromDay + i is free.
+     */
+    public long availableStarts(long campsiteId, long fromDay, int days, int nights) {
+        if (days > Long.SIZE) {
+            throw new IllegalArgumentException("At most " + Long.SIZE + " check-in days can be searched at once.");
+        }
+        Shard shard = this.shard(campsiteId);
+        long starts = 0;
+        int run = 0;
+        for (long day = fromDay; day < fromDay + days + nights - 1; day++) {
+            run = shard.isReserved(day) ? 0 : run + 1;
+            if (run >= nights) {
+                starts |= 1L << (day - nights + 1 - fromDay);
+            }
+        }
+        return starts;
+    }
+
+    // nights past the end of the ring cannot be reserved yet
+    public void forEachAvailableRange(long campsiteId, long fromDay, long lastDay, AvailableRangeVisitor visitor) {
+        Shard shard = this.shard(campsiteId);
+        long scanEnd = Math.min(lastDay + 1, shard.firstDay + CAPACITY);
+        long runStart = -1;
+        long day = fromDay;
+        for (; day < scanEnd; day++) {
+            if (shard.isReserved(day)) {
+                if (runStart >= 0) {
+                    visitor.range(runStart, day);
+                    runStart = -1;
+                }
+            } else if (runStart < 0) {
+                runStart = day;
+            }
+        }
+
+        if (runStart < 0 && day <= lastDay) {
+            runStart = day;
+        }
+        if (runStart >= 0) {
+            visitor.range(runStart, lastDay + 1);
+        }
+    }
+
+    public void reserve(long campsiteId, long fromDay, long toDay) {
+        Shard shard = this.shard(campsiteId);
+        shard.roll();
+        for (long day = fromDay; day < toDay; day++) {
+            shard.set(day);
+        }
+        this.fireChanged(campsiteId, fromDay, toDay);
+    }
+
+    public void release(long campsiteId, long fromDay, long toDay) {
+        Shard shard = this.shard(campsiteId);
+        shard.roll();
+        for (long day = fromDay; day < toDay; day++) {
+            shard.clear(day);
+        }
+        this.fireChanged(campsiteId, fromDay, toDay);
+    }
+
+    // reserves before releasing, so a night shared by both stays never shows as available
+    public void move(long campsiteId, long oldFromDay, long oldToDay, long newFromDay, long newToDay) {
+        this.reserve(campsiteId, newFromDay, newToDay);
+        Shard shard = this.shard(campsiteId);
+        for (long day = oldFromDay; day < oldToDay; day++) {
+            if (day < newFromDay || day >= newToDay) {
+                shard.clear(day);
+            }
+        }
+        this.fireChanged(campsiteId, oldFromDay, oldToDay);
+    }
+
+    private Shard shard(long campsiteId) {
+        return shards[Campsites.shardOf(campsiteId)];
+    }
+
+    private static final class Shard {
+
+        private final AtomicLongArray words = new AtomicLongArray(CAPACITY / Long.SIZE);
+
+        private volatile long firstDay;
+
+        void reset(long today) {
+            for (int i = 0; i < words.length(); i++) {
+                words.set(i, 0L);
+            }
+            firstDay = today;
+        }
+
+        boolean isReserved(long epochDay) {
+            return this.covers(epochDay) && (words.get(wordOf(epochDay)) & bitOf(epochDay)) != 0;
+        }
+
+        boolean covers(long epochDay) {
+            long first = firstDay;
+            return epochDay >= first && epochDay < first + CAPACITY;
+        }
+
+        void set(long epochDay) {
+            if (!this.covers(epochDay)) {
+                return;
+            }
+            int word = wordOf(epochDay);
+            long bit = bitOf(epochDay);
+            long current;
+            do {
+                current = words.get(word);
+            } while (!words.compareAndSet(word, current, current | bit));
+        }
+
+        void clear(long epochDay) {
+            if (!this.covers(epochDay)) {
+                return;
+            }
+            int word = wordOf(epochDay);
+            long bit = bitOf(epochDay);
+            long current;
+            do {
+                current = words.get(word);
+            } while (!words.compareAndSet(word, current, current & ~bit));
+        }
+
+        void roll() {
+            long today = LocalDate.now().toEpochDay();
+            if (today <= firstDay) {
+                return;
+            }
+            synchronized (this) {
+                long first = firstDay;
+                if (today <= first) {
+                    return;
+                }
+                for (long day = first; day < today && day < first + CAPACITY; day++) {
+                    this.clear(day);
+                }
+                firstDay = today;
+            }
+        }
+    }
+
+    static int wordOf(long epochDay) {
+        return (int) (epochDay & MASK) >>> 6;
+    }
+
+    static long bitOf(long epochDay) {
+        return 1L << (epochDay & MASK);
+    }
+}
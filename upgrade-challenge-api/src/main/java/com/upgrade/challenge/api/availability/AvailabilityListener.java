@@ -0,0 +1,10 @@
+package com.upgrade.challenge.api.availability;
+
+/**
+ * Told by {@link AvailabilityIndex} about nights whose state may have changed. Called on the committing thread,
+ * so implementations must only record the change and return.
+ */
+public interface AvailabilityListener {
+
+    void changed(long campsiteId, long fromDay, long toDay);
+}
@@ -0,0 +1,112 @@
+package com.upgrade.challenge.api.availability;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Encodes an availability window as compact JSON straight into a byte buffer sized for the window:
+ *
+ * <pre>{"startDate":"2020-08-01","days":31,"free":[[0,3],[5,31]]}</pre>
+ *
+ * Each entry of {@code free} is a [from, to) pair of day offsets from {@code startDate}.
+ */
+public final class AvailabilityRangesWriter implements AvailableRangeVisitor {
+
+    public static final String MEDIA_TYPE = "application/vnd.volcano.availability-ranges+json";
+
+    private static final int MAX_INITIAL_CAPACITY = 64 * 1024;
+
+    private byte[] buffer = new byte[0];
+
+    private int position;
+
+    private long firstDay;
+
+    private int ranges;
+
+    @Override
+    public void start(long firstDay, long lastDay) {
+        long days = Math.max(0, lastDay - firstDay + 1);
+        long capacity = 64 + (days + 1) / 2 * (2L * Long.toString(days).length() + 4);
+        this.buffer = new byte[(int) Math.min(capacity, MAX_INITIAL_CAPACITY)];
+        this.position = 0;
+        this.ranges = 0;
+        this.firstDay = firstDay;
+
+        this.writeAscii("{\"startDate\":\"");
+        this.writeDate(firstDay);
+        this.writeAscii("\",\"days\":");
+        this.writeNumber(Math.max(0, lastDay - firstDay + 1));
+        this.writeAscii(",\"free\":[");
+    }
+
+    @Override
+    public void range(long fromDay, long toDay) {
+        if (this.ranges++ > 0) {
+            this.write(',');
+        }
+        this.write('[');
+        this.writeNumber(fromDay - this.firstDay);
+        this.write(',');
+        this.writeNumber(toDay - this.firstDay);
+        this.write(']');
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        this.writeAscii("]}");
+        out.write(this.buffer, 0, this.position);
+    }
+
+    private void writeDate(long epochDay) {
+        LocalDate date = LocalDate.ofEpochDay(epochDay);
+        this.writeNumber(date.getYear());
+        this.write('-');
+        this.writeTwoDigits(date.getMonthValue());
+        this.write('-');
+        this.writeTwoDigits(date.getDayOfMonth());
+    }
+
+    private void writeTwoDigits(int value) {
+        this.write((char) ('0' + value / 10));
+        this.write((char) ('0' + value % 10));
+    }
+
+    private void writeNumber(long value) {
+        if (value < 0) {
+            this.write('-');
+            value = -value;
+        }
+        this.ensureCapacity(20);
+        int start = this.position;
+        do {
+            this.buffer[this.position++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+
+        for (int i = start, j = this.position - 1; i < j; i++, j--) {
+            byte digit = this.buffer[i];
+            this.buffer[i] = this.buffer[j];
+            this.buffer[j] = digit;
+        }
+    }
+
+    private void writeAscii(String text) {
+        this.ensureCapacity(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            this.buffer[this.position++] = (byte) text.charAt(i);
+        }
+    }
+
+    private void write(char c) {
+        this.ensureCapacity(1);
+        this.buffer[this.position++] = (byte) c;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (this.position + extra > this.buffer.length) {
+            this.buffer = Arrays.copyOf(this.buffer, Math.max(this.buffer.length * 2, this.position + extra));
+        }
+    }
+}
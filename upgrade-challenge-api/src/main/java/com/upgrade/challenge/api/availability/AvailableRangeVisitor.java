@@ -0,0 +1,12 @@
+package com.upgrade.challenge.api.availability;
+
+/**
+ * Receives the available nights of a date window as runs of consecutive epoch-days.
+ */
+public interface AvailableRangeVisitor {
+
+    void start(long firstDay, long lastDay);
+
+    // [fromDay, toDay), in ascending order
+    void range(long fromDay, long toDay);
+}
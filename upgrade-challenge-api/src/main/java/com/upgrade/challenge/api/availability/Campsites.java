@@ -0,0 +1,37 @@
+package com.upgrade.challenge.api.availability;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * The campsites served by this deployment, numbered from 1 to {@code booking.campsites}.
+ */
+@Component
+public class Campsites {
+
+    public static final long DEFAULT_ID = 1L;
+
+    private final int count;
+
+    public Campsites(@Value("${booking.campsites:1}") int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("At least one campsite is required.");
+        }
+        this.count = count;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public boolean exists(Long campsiteId) {
+        return campsiteId != null && campsiteId >= 1 && campsiteId <= count;
+    }
+
+    /**
+     * Position of the campsite in the per-site shard arrays.
+     */
+    static int shardOf(long campsiteId) {
+        return (int) campsiteId - 1;
+    }
+}
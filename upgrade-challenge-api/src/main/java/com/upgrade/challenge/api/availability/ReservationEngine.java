@@ -0,0 +1,195 @@
+package com.upgrade.challenge.api.availability;
+
+import com.upgrade.challenge.api.repository.BookingRepository;
+import com.upgrade.challenge.api.repository.BookingStay;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Claims nights in memory before anything is written: each night holds the token of its owner, or {@link #FREE}.
+ * The unique key of reserved_day still decides between nodes.
+ */
+@Component
+@Lazy(false)
+public class ReservationEngine {
+
+    public static final long FREE = 0L;
+
+    private static final long COMMITTED = -1L;
+
+    private static final int CAPACITY = AvailabilityIndex.CAPACITY;
+
+    private static final int MASK = CAPACITY - 1;
+
+    private final AtomicLong tokens = new AtomicLong();
+
+    private final BookingRepository bookingRepository;
+
+    private final Shard[] shards;
+
+    public ReservationEngine(BookingRepository bookingRepository, Campsites campsites) {
+        this.bookingRepository = bookingRepository;
+        this.shards = new Shard[campsites.count()];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Shard();
+        }
+    }
+
+    // stored nights are owned by no claim, only release(campsiteId, fromDay, toDay) frees them
+    @PostConstruct
+    public synchronized void load() {
+        LocalDate today = LocalDate.now();
+        for (Shard shard : shards) {
+            shard.reset(today.toEpochDay());
+        }
+
+        for (BookingStay booking : bookingRepository.findOverlapping(today, today.plusDays(CAPACITY))) {
+            int shard = Campsites.shardOf(booking.getCampsiteId());
+            if (shard < 0 || shard >= shards.length) {
+                continue;
+            }
+            for (long day = booking.getCheckInDate().toEpochDay(); day < booking.getCheckOutDate().toEpochDay(); day++) {
+                shards[shard].set(day, COMMITTED);
+            }
+        }
+    }
+
+    public long newToken() {
+        return tokens.incrementAndGet();
+    }
+
+    public boolean isClaimed(long campsiteId, long epochDay) {
+        return this.shard(campsiteId).get(epochDay) != FREE;
+    }
+
+    public boolean isClaimedBy(long campsiteId, long epochDay, long token) {
+        return this.shard(campsiteId).get(epochDay) == token;
+    }
+
+    /**
+     * @return the token owning the nights, or {@link #FREE} when one of them is already taken
+     */
+    public long claim(long campsiteId, long fromDay, long toDay) {
+        long token = this.newToken();
+        return this.claim(campsiteId, fromDay, toDay, 0, 0, token) ? token : FREE;
+    }
+
+    /**
+     * All or nothing; the nights in [keepFromDay, keepToDay) are already the caller's.
+     */
+    public boolean claim(long campsiteId, long fromDay, long toDay, long keepFromDay, long keepToDay, long token) {
+        Shard shard = this.shard(campsiteId);
+        shard.roll();
+        for (long day = fromDay; day < toDay; day++) {
+            if (day >= keepFromDay && day < keepToDay) {
+                continue;
+            }
+            if (!shard.compareAndSet(day, FREE, token)) {
+                this.release(campsiteId, fromDay, day, keepFromDay, keepToDay, token);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void release(long campsiteId, long fromDay, long toDay, long keepFromDay, long keepToDay, long token) {
+        Shard shard = this.shard(campsiteId);
+        for (long day = fromDay; day < toDay; day++) {
+            if (day >= keepFromDay && day < keepToDay) {
+                continue;
+            }
+            shard.compareAndSet(day, token, FREE);
+        }
+    }
+
+    public void move(long campsiteId, long oldFromDay, long oldToDay, long newFromDay, long newToDay) {
+        Shard shard = this.shard(campsiteId);
+        shard.roll();
+        for (long day = oldFromDay; day < oldToDay; day++) {
+            if (day < newFromDay || day >= newToDay) {
+                shard.set(day, FREE);
+            }
+        }
+    }
+
+    // a booking committed elsewhere, such as on another node
+    public void reserve(long campsiteId, long fromDay, long toDay) {
+        Shard shard = this.shard(campsiteId);
+        shard.roll();
+        for (long day = fromDay; day < toDay; day++) {
+            shard.set(day, COMMITTED);
+        }
+    }
+
+    public void release(long campsiteId, long fromDay, long toDay) {
+        Shard shard = this.shard(campsiteId);
+        shard.roll();
+        for (long day = fromDay; day < toDay; day++) {
+            shard.set(day, FREE);
+        }
+    }
+
+    private Shard shard(long campsiteId) {
+        return shards[Campsites.shardOf(campsiteId)];
+    }
+
+    private static final class Shard {
+
+        private final AtomicLongArray slots = new AtomicLongArray(CAPACITY);
+
+        private volatile long firstDay;
+
+        void reset(long today) {
+            for (int i = 0; i < slots.length(); i++) {
+                slots.set(i, FREE);
+            }
+            firstDay = today;
+        }
+
+        boolean covers(long epochDay) {
+            long first = firstDay;
+            return epochDay >= first && epochDay < first + CAPACITY;
+        }
+
+        long get(long epochDay) {
+            return this.covers(epochDay) ? slots.get(slotOf(epochDay)) : FREE;
+        }
+
+        void set(long epochDay, long token) {
+            if (this.covers(epochDay)) {
+                slots.set(slotOf(epochDay), token);
+            }
+        }
+
+        // nights outside the ring cannot be booked anyway
+        boolean compareAndSet(long epochDay, long expected, long token) {
+            return !this.covers(epochDay) || slots.compareAndSet(slotOf(epochDay), expected, token);
+        }
+
+        void roll() {
+            long today = LocalDate.now().toEpochDay();
+            if (today <= firstDay) {
+                return;
+            }
+            synchronized (this) {
+                long first = firstDay;
+                if (today <= first) {
+                    return;
+                }
+                for (long day = first; day < today && day < first + CAPACITY; day++) {
+                    slots.set(slotOf(day), FREE);
+                }
+                firstDay = today;
+            }
+        }
+    }
+
+    private static int slotOf(long epochDay) {
+        return (int) (epochDay & MASK);
+    }
+}
@@ -0,0 +1,293 @@
+package com.upgrade.challenge.api.cluster;
+
+import com.upgrade.challenge.api.availability.AvailabilityIndex;
+import com.upgrade.challenge.api.availability.ReservationEngine;
+import com.upgrade.challenge.api.entity.Booking;
+import com.upgrade.challenge.api.entity.ReservationEvent;
+import com.upgrade.challenge.api.entity.ReservedDay;
+import com.upgrade.challenge.api.repository.ReservationEventRepository;
+import com.upgrade.challenge.api.repository.ReservedDayRepository;
+import com.upgrade.challenge.api.service.BookingCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the in-memory views and caches of nodes sharing one database in step: every change of a booking's nights is
+ * written to reservation_event by the transaction making it, and each node polls the events of the others.
+ * <p>
+ * A transaction can commit after one holding a later event id, so an id missing below the applied ones is waited for
+ * during {@code booking.cluster.grace} before it is taken as rolled back. Starts in {@link #PHASE}, before the
+ * lifecycle beans that claim nights on top of the reloaded engine.
+ */
+@Slf4j
+@Component
+@Lazy(false)
+@ConditionalOnProperty(name = "booking.cluster.enabled", havingValue = "true")
+public class ClusterSync implements SmartLifecycle {
+
+    public static final String EVENT_COUNTER = "booking.cluster.events";
+
+    public static final String DELAY_TIMER = "booking.cluster.delay";
+
+    public static final int PHASE = 0;
+
+    private final ReservationEventRepository reservationEventRepository;
+
+    private final AvailabilityIndex availabilityIndex;
+
+    private final ReservationEngine reservationEngine;
+
+    private final BookingCache bookingCache;
+
+    private final Cache secondLevelCache;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final MeterRegistry meterRegistry;
+
+    private final String nodeId;
+
+    private final Duration pollInterval;
+
+    private final long graceNanos;
+
+    private final Duration retention;
+
+    private final int batchSize;
+
+    // every event up to this id has been applied or will never commit
+    private long appliedUpTo;
+
+    // applied above appliedUpTo, with the time each was first seen
+    private final NavigableMap<Long, Long> appliedAbove = new TreeMap<>();
+
+    private long lastPurge;
+
+    private volatile ScheduledExecutorService poller;
+
+    private final ThreadLocal<Boolean> unpublished = new ThreadLocal<>();
+
+    public ClusterSync(ReservationEventRepository reservationEventRepository, AvailabilityIndex availabilityIndex,
+                       ReservationEngine reservationEngine, BookingCache bookingCache,
+                       EntityManagerFactory entityManagerFactory, PlatformTransactionManager transactionManager,
+                       MeterRegistry meterRegistry,
+                       @Value("${booking.cluster.node-id:}") String nodeId,
+                       @Value("${booking.cluster.poll-interval:100ms}") Duration pollInterval,
+                       @Value("${booking.cluster.grace:5s}") Duration grace,
+                       @Value("${booking.cluster.retention:1h}") Duration retention,
+                       @Value("${booking.cluster.batch-size:1000}") int batchSize) {
+        this.reservationEventRepository = reservationEventRepository;
+        this.availabilityIndex = availabilityIndex;
+        this.reservationEngine = reservationEngine;
+        this.bookingCache = bookingCache;
+        this.secondLevelCache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.meterRegistry = meterRegistry;
+        this.nodeId = nodeId.isEmpty() ? UUID.randomUUID().toString() : nodeId;
+        this.pollInterval = pollInterval;
+        this.graceNanos = grace.toNanos();
+        this.retention = retention;
+        this.batchSize = batchSize;
+    }
+
+    // reloaded once the position is known, so a change committed meanwhile is either loaded or polled
+    @Override
+    public void start() {
+        this.appliedUpTo = this.reservationEventRepository.findLastId();
+        this.availabilityIndex.load();
+        this.reservationEngine.load();
+
+        this.poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "booking-cluster-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = this.pollInterval.toNanos();
+        this.poller.scheduleWithFixedDelay(this::pollQuietly, interval, interval, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void stop() {
+        ScheduledExecutorService poller = this.poller;
+        this.poller = null;
+        poller.shutdownNow();
+        try {
+            if (!poller.awaitTermination(5, TimeUnit.SECONDS)) {
+                log.warn("The reservation event poller did not stop in time");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return this.poller != null;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+    // the publishing methods must be called within the transaction making the change
+    public void reserved(Booking booking) {
+        this.publish(booking, null, null, booking.getCheckInDate(), booking.getCheckOutDate());
+    }
+
+    public void released(Booking booking) {
+        this.publish(booking, booking.getCheckInDate(), booking.getCheckOutDate(), null, null);
+    }
+
+    public void moved(Booking booking, LocalDate oldCheckIn, LocalDate oldCheckOut) {
+        this.publish(booking, oldCheckIn, oldCheckOut, booking.getCheckInDate(), booking.getCheckOutDate());
+    }
+
+    public void changed(Booking booking) {
+        this.publish(booking, null, null, null, null);
+    }
+
+    /**
+     * For work that is always rolled back, whose events would only leave gaps to wait out.
+     */
+    public void unpublished(Runnable work) {
+        this.unpublished.set(Boolean.TRUE);
+        try {
+            work.run();
+        } finally {
+            this.unpublished.remove();
+        }
+    }
+
+    private void publish(Booking booking, LocalDate releasedFrom, LocalDate releasedTo,
+                         LocalDate reservedFrom, LocalDate reservedTo) {
+        if (this.unpublished.get() != null) {
+            return;
+        }
+        this.reservationEventRepository.save(ReservationEvent.builder()
+                .nodeId(this.nodeId)
+                .bookingId(booking.getId())
+                .campsiteId(booking.getCampsiteId())
+                .releasedFrom(releasedFrom)
+                .releasedTo(releasedTo)
+                .reservedFrom(reservedFrom)
+                .reservedTo(reservedTo)
+                .createdAt(Instant.now())
+                .build());
+    }
+
+    private void pollQuietly() {
+        try {
+            this.poll();
+            this.purge();
+        } catch (RuntimeException ex) {
+            log.warn("Unable to poll the reservation events", ex);
+        }
+    }
+
+    /**
+     * @return the number of events of other nodes applied
+     */
+    public synchronized int poll() {
+        long now = System.nanoTime();
+        int applied = 0;
+        boolean nightsChanged = false;
+        long after = this.appliedUpTo;
+        List<ReservationEvent> events;
+        do {
+            events = this.reservationEventRepository.findAfter(after, PageRequest.of(0, this.batchSize));
+            for (ReservationEvent event : events) {
+                after = event.getId();
+                if (this.appliedAbove.putIfAbsent(event.getId(), now) != null || this.nodeId.equals(event.getNodeId())) {
+                    continue;
+                }
+                nightsChanged |= this.apply(event);
+                applied++;
+            }
+        } while (events.size() == this.batchSize);
+
+        if (nightsChanged) {
+            this.secondLevelCache.evictEntityData(ReservedDay.class);
+            this.secondLevelCache.evictQueryRegion(ReservedDayRepository.RANGE_CACHE_REGION);
+        }
+
+        // the ids right above the watermark leave no gap, and a gap older than the grace period is a rollback
+        for (Iterator<Map.Entry<Long, Long>> entries = this.appliedAbove.entrySet().iterator(); entries.hasNext(); ) {
+            Map.Entry<Long, Long> entry = entries.next();
+            if (entry.getKey() != this.appliedUpTo + 1 && now - entry.getValue() < this.graceNanos) {
+                break;
+            }
+            this.appliedUpTo = entry.getKey();
+            entries.remove();
+        }
+        return applied;
+    }
+
+    // the second-level cache goes before the booking cache, which loads through it
+    private boolean apply(ReservationEvent event) {
+        this.secondLevelCache.evictEntityData(Booking.class, event.getBookingId());
+        this.bookingCache.invalidate(event.getBookingId());
+
+        long campsiteId = event.getCampsiteId();
+        boolean released = event.getReleasedFrom() != null;
+        boolean reserved = event.getReservedFrom() != null;
+        if (released && reserved) {
+            long oldCheckIn = event.getReleasedFrom().toEpochDay();
+            long oldCheckOut = event.getReleasedTo().toEpochDay();
+            long newCheckIn = event.getReservedFrom().toEpochDay();
+            long newCheckOut = event.getReservedTo().toEpochDay();
+            this.reservationEngine.reserve(campsiteId, newCheckIn, newCheckOut);
+            this.availabilityIndex.move(campsiteId, oldCheckIn, oldCheckOut, newCheckIn, newCheckOut);
+            this.reservationEngine.move(campsiteId, oldCheckIn, oldCheckOut, newCheckIn, newCheckOut);
+        } else if (reserved) {
+            long checkIn = event.getReservedFrom().toEpochDay();
+            long checkOut = event.getReservedTo().toEpochDay();
+            this.reservationEngine.reserve(campsiteId, checkIn, checkOut);
+            this.availabilityIndex.reserve(campsiteId, checkIn, checkOut);
+        } else if (released) {
+            long checkIn = event.getReleasedFrom().toEpochDay();
+            long checkOut = event.getReleasedTo().toEpochDay();
+            this.availabilityIndex.release(campsiteId, checkIn, checkOut);
+            this.reservationEngine.release(campsiteId, checkIn, checkOut);
+        }
+
+        this.meterRegistry.counter(EVENT_COUNTER).increment();
+        this.meterRegistry.timer(DELAY_TIMER).record(Duration.between(event.getCreatedAt(), Instant.now()));
+        return released || reserved;
+    }
+
+    private void purge() {
+        long now = System.currentTimeMillis();
+        if (now - this.lastPurge < TimeUnit.MINUTES.toMillis(1)) {
+            return;
+        }
+        this.lastPurge = now;
+        Instant before = Instant.now().minus(this.retention);
+        this.transactionTemplate.executeWithoutResult(status ->
+                this.reservationEventRepository.deleteCreatedBefore(before));
+    }
+}
@@ -0,0 +1,35 @@
+package com.upgrade.challenge.api.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * {@code booking.execution.mode=virtual} runs each request on a virtual thread (Java 21); JDBC concurrency is then
+ * bounded by the Hikari pool instead of Tomcat's.
+ */
+@Configuration
+public class ExecutionConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "booking.execution.mode", havingValue = "virtual")
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadExecutorCustomizer() {
+        ExecutorService executor = newVirtualThreadPerTaskExecutor();
+        return protocolHandler -> protocolHandler.setExecutor(executor);
+    }
+
+    // reflective, so the code still compiles against Java 11
+    static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException ex) {
+            throw new IllegalStateException("booking.execution.mode=virtual requires Java 21 or later.", ex);
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException("Unable to create the virtual thread executor.", ex);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.upgrade.challenge.api.config;
+
+import com.upgrade.challenge.api.journal.JournalStore;
+import com.upgrade.challenge.api.journal.JournalTransactionManager;
+import com.upgrade.challenge.api.repository.BookingRepository;
+import com.upgrade.challenge.api.repository.ReservedDayRepository;
+import com.upgrade.challenge.api.repository.journal.JournalBookingRepository;
+import com.upgrade.challenge.api.repository.journal.JournalReservedDayRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+
+/**
+ * Stores bookings in an append-only journal on local disk instead of the database, with the {@code journal} profile.
+ * The application yaml excludes the JPA auto-configuration for that profile.
+ */
+@Configuration
+@Profile("journal")
+public class JournalConfig {
+
+    @Bean(destroyMethod = "close")
+    public JournalStore journalStore(@Value("${booking.journal.directory:journal}") String directory,
+                                     @Value("${booking.journal.segment-size:64MB}") DataSize segmentSize,
+                                     @Value("${booking.journal.fsync:true}") boolean fsync,
+                                     @Value("${booking.journal.snapshot-interval:10m}") Duration snapshotInterval)
+            throws IOException {
+        JournalStore store = new JournalStore(Paths.get(directory), Math.toIntExact(segmentSize.toBytes()), fsync,
+                snapshotInterval);
+        store.open();
+        return store;
+    }
+
+    @Bean
+    public PlatformTransactionManager transactionManager(JournalStore journalStore) {
+        return new JournalTransactionManager(journalStore);
+    }
+
+    @Bean
+    public BookingRepository bookingRepository(JournalStore journalStore) {
+        return new JournalBookingRepository(journalStore);
+    }
+
+    @Bean
+    public ReservedDayRepository reservedDayRepository(JournalStore journalStore) {
+        return new JournalReservedDayRepository(journalStore);
+    }
+}
@@ -0,0 +1,78 @@
+package com.upgrade.challenge.api.config;
+
+import com.upgrade.challenge.api.datasource.ReplicaLagGuard;
+import com.upgrade.challenge.api.datasource.ReplicaRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Adds read replicas, listed as JDBC URLs in {@code booking.datasource.replicas}: read-only transactions run on
+ * them and everything else on {@code spring.datasource}. Replicas use the credentials of the primary, and every
+ * pool takes the {@code spring.datasource.hikari} settings.
+ */
+@Configuration
+@ConditionalOnProperty(name = "booking.datasource.replicas")
+@EnableConfigurationProperties(DataSourceProperties.class)
+public class ReplicaRoutingConfig {
+
+    @Bean
+    public DataSource dataSource(DataSourceProperties properties, Environment environment,
+                                 @Value("${booking.datasource.replicas}") List<String> replicaUrls,
+                                 ReplicaLagGuard replicaLagGuard, MeterRegistry meterRegistry) {
+        HikariDataSource primary = pool(properties, environment, properties.determineUrl(), "primary");
+        List<DataSource> replicas = new ArrayList<>();
+        for (int i = 0; i < replicaUrls.size(); i++) {
+            replicas.add(pool(properties, environment, replicaUrls.get(i), "replica-" + i));
+        }
+
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary, replicas, replicaLagGuard, meterRegistry);
+        routing.afterPropertiesSet();
+        return new ClosingDataSourceProxy(routing, primary, replicas);
+    }
+
+    private static HikariDataSource pool(DataSourceProperties properties, Environment environment, String url,
+                                         String name) {
+        HikariDataSource pool = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .url(url)
+                .build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+        pool.setPoolName("booking-" + name);
+        return pool;
+    }
+
+    /**
+     * Closes the pools behind the routing data source with the context.
+     */
+    static class ClosingDataSourceProxy extends LazyConnectionDataSourceProxy implements AutoCloseable {
+
+        private final List<DataSource> pools = new ArrayList<>();
+
+        ClosingDataSourceProxy(DataSource routing, DataSource primary, List<DataSource> replicas) {
+            super(routing);
+            this.pools.add(primary);
+            this.pools.addAll(replicas);
+        }
+
+        @Override
+        public void close() {
+            for (DataSource pool : this.pools) {
+                ((HikariDataSource) pool).close();
+            }
+        }
+    }
+}
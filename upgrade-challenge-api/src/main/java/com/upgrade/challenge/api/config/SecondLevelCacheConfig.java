@@ -0,0 +1,44 @@
+package com.upgrade.challenge.api.config;
+
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.ehcache.xml.XmlConfiguration;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.ObjectUtils;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.net.URL;
+
+/**
+ * Gives each application context its own cache manager for the Hibernate second-level cache, configured from
+ * {@code booking.cache.l2.config}. The JCache provider hands out one manager per configuration URI, so contexts
+ * started in the same JVM, on different databases or as different cluster nodes, would otherwise share entries.
+ */
+@Configuration
+@ConditionalOnProperty(name = "spring.jpa.properties.hibernate.cache.use_second_level_cache", havingValue = "true")
+public class SecondLevelCacheConfig {
+
+    @Bean(destroyMethod = "close")
+    public CacheManager secondLevelCacheManager(@Value("${booking.cache.l2.config:ehcache.xml}") String config) {
+        ClassLoader classLoader = getClass().getClassLoader();
+        URL url = classLoader.getResource(config);
+        if (url == null) {
+            throw new IllegalStateException("Second-level cache configuration " + config + " not found on the classpath.");
+        }
+        EhcacheCachingProvider provider = (EhcacheCachingProvider) Caching.getCachingProvider(
+                EhcacheCachingProvider.class.getName(), classLoader);
+        URI uri = URI.create("urn:upgrade-challenge:l2:" + ObjectUtils.getIdentityHexString(this));
+        return provider.getCacheManager(uri, new XmlConfiguration(url, classLoader));
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheManagerCustomizer(CacheManager secondLevelCacheManager) {
+        return properties -> properties.put(ConfigSettings.CACHE_MANAGER, secondLevelCacheManager);
+    }
+}
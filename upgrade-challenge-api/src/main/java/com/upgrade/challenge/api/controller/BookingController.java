@@ -1,46 +1,211 @@
 package com.upgrade.challenge.api.controller;
 
+import com.upgrade.challenge.api.admission.AdmissionControl;
+import com.upgrade.challenge.api.availability.AvailabilityRangesWriter;
 import com.upgrade.challenge.api.dto.BookingDto;
+import com.upgrade.challenge.api.dto.BookingListDto;
+import com.upgrade.challenge.api.dto.BookingResultDto;
+import com.upgrade.challenge.api.dto.BookingStatusDto;
+import com.upgrade.challenge.api.dto.HoldDto;
+import com.upgrade.challenge.api.dto.StayDto;
+import com.upgrade.challenge.api.dto.StayPageDto;
 import com.upgrade.challenge.api.entity.Booking;
 import com.upgrade.challenge.api.entity.ReservedDay;
+import com.upgrade.challenge.api.exceprions.BookingAccessDeniedException;
 import com.upgrade.challenge.api.exceprions.BookingDateUnavailableException;
+import com.upgrade.challenge.api.hold.Hold;
 import com.upgrade.challenge.api.repository.BookingRepository;
 import com.upgrade.challenge.api.repository.ReservedDayRepository;
+import com.upgrade.challenge.api.service.AvailableStay;
+import com.upgrade.challenge.api.service.BookingListing;
+import com.upgrade.challenge.api.service.BookingResult;
 import com.upgrade.challenge.api.service.BookingService;
+import com.upgrade.challenge.api.service.PendingBooking;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.time.LocalDate;
-import java.util.AbstractMap;
+import java.util.List;
+import java.util.stream.Collectors;
 
 @RestController
 @CrossOrigin
 @RequestMapping(path = "/api/booking")
 public class BookingController {
 
+    public static final String STAFF_KEY_HEADER = "X-Staff-Key";
+
     private BookingService bookingService;
 
-    public BookingController(BookingService bookingService) {
+    private AdmissionControl admissionControl;
+
+    private byte[] staffKey;
+
+    public BookingController(BookingService bookingService, AdmissionControl admissionControl,
+                             @Value("${booking.listing.staff-key:}") String staffKey) {
         this.bookingService = bookingService;
+        this.admissionControl = admissionControl;
+        this.staffKey = staffKey.getBytes(StandardCharsets.UTF_8);
     }
 
     @GetMapping(path = "/available")
     public Iterable<LocalDate> getAvailableDates(
+            @RequestParam(value = "campsiteId", defaultValue = "1") Long campsiteId,
             @RequestParam(value = "startDate") @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate startDate,
             @RequestParam(value = "endDate") @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate endDate) {
 
-        return this.bookingService.findAvailableDates(startDate, endDate);
+        return this.bookingService.findAvailableDates(campsiteId, startDate, endDate);
+
+    }
+
+    @GetMapping(path = "/available", params = "format=ranges")
+    public void getAvailableRanges(
+            @RequestParam(value = "campsiteId", defaultValue = "1") Long campsiteId,
+            @RequestParam(value = "startDate") @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate startDate,
+            @RequestParam(value = "endDate") @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate endDate,
+            HttpServletResponse response) throws IOException {
+
+        AvailabilityRangesWriter writer = new AvailabilityRangesWriter();
+        this.bookingService.findAvailableRanges(campsiteId, startDate, endDate, writer);
+
+        response.setContentType(AvailabilityRangesWriter.MEDIA_TYPE);
+        writer.writeTo(response.getOutputStream());
+    }
+
+    @GetMapping(path = "/available", produces = AvailabilityRangesWriter.MEDIA_TYPE)
+    public void getAvailableRangesByAcceptHeader(
+            @RequestParam(value = "campsiteId", defaultValue = "1") Long campsiteId,
+            @RequestParam(value = "startDate") @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate startDate,
+            @RequestParam(value = "endDate") @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate endDate,
+            HttpServletResponse response) throws IOException {
+
+        this.getAvailableRanges(campsiteId, startDate, endDate, response);
+    }
+
+    @GetMapping(path = "/available/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamAvailableDates(
+            @RequestParam(value = "campsiteId", defaultValue = "1") Long campsiteId,
+            @RequestParam(value = "startDate", required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate startDate,
+            @RequestParam(value = "endDate", required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate endDate)
+            throws IOException {
+
+        return this.bookingService.subscribeAvailability(campsiteId, startDate, endDate);
+    }
+
+    @GetMapping(path = "/available/campsites")
+    public Iterable<Long> getAvailableCampsites(
+            @RequestParam(value = "checkInDate") @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate checkInDate,
+            @RequestParam(value = "checkOutDate") @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate checkOutDate) {
+
+        return this.bookingService.findAvailableCampsites(checkInDate, checkOutDate);
+    }
+
+    @GetMapping(path = "/available/stays")
+    public StayPageDto getAvailableStays(
+            @RequestParam(value = "nights") int nights,
+            @RequestParam(value = "campsiteId", required = false) Long campsiteId,
+            @RequestParam(value = "startDate", required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate startDate,
+            @RequestParam(value = "endDate", required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate endDate,
+            Pageable pageable) {
 
+        Page<AvailableStay> stays = this.bookingService.findAvailableStays(campsiteId, nights, startDate, endDate, pageable);
+        return StayPageDto.builder()
+                .page(stays.getNumber())
+                .size(stays.getSize())
+                .total(stays.getTotalElements())
+                .stays(stays.stream()
+                        .map(stay -> StayDto.builder()
+                                .campsiteId(stay.getCampsiteId())
+                                .checkInDate(stay.getCheckInDate())
+                                .checkOutDate(stay.getCheckOutDate())
+                                .build())
+                        .collect(Collectors.toList()))
+                .build();
+    }
+
+    // the listings show guests' names and emails, so they take the staff key
+    @GetMapping(path = "/by-email")
+    public BookingListDto getBookingsByEmail(
+            @RequestHeader(value = STAFF_KEY_HEADER, required = false) String staffKey,
+            @RequestParam(value = "email") String email,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", defaultValue = "20") int size) {
+
+        this.checkStaffKey(staffKey);
+        return this.toListDto(this.bookingService.findBookingsByEmail(email, cursor, size));
     }
 
+    @GetMapping(path = "/by-check-in")
+    public BookingListDto getBookingsByCheckIn(
+            @RequestHeader(value = STAFF_KEY_HEADER, required = false) String staffKey,
+            @RequestParam(value = "startDate") @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate startDate,
+            @RequestParam(value = "endDate") @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate endDate,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", defaultValue = "20") int size) {
+
+        this.checkStaffKey(staffKey);
+        return this.toListDto(this.bookingService.findBookingsByCheckIn(startDate, endDate, cursor, size));
+    }
+
+    /**
+     * Without a configured key the listings are closed to everyone. The key is compared in constant time.
+     */
+    private void checkStaffKey(String staffKey) {
+        if (this.staffKey.length == 0 || staffKey == null
+                || !MessageDigest.isEqual(this.staffKey, staffKey.getBytes(StandardCharsets.UTF_8))) {
+            throw new BookingAccessDeniedException("A valid " + STAFF_KEY_HEADER + " is required to list bookings.");
+        }
+    }
+
+    private BookingListDto toListDto(BookingListing listing) {
+        return BookingListDto.builder()
+                .bookings(listing.getBookings())
+                .nextCursor(listing.getNextCursor())
+                .build();
+    }
+
+    /**
+     * The version only travels in the ETag, to be sent back in If-Match.
+     */
+    @GetMapping(path = "/{bookingId}")
+    public ResponseEntity<BookingDto> getBooking(@PathVariable(name = "bookingId", required = true) Long bookingId) {
+        Booking booking = this.bookingService.findBooking(bookingId);
+        return ResponseEntity.ok().eTag(eTagOf(booking)).body(BookingDto.builder()
+                .id(booking.getId())
+                .campsiteId(booking.getCampsiteId())
+                .email(booking.getEmail())
+                .fullName(booking.getFullName())
+                .checkInDate(booking.getCheckInDate())
+                .checkOutDate(booking.getCheckOutDate())
+                .build());
+    }
+
+    /**
+     * Stays with a night already known to be taken are refused before the booking transaction is opened.
+     */
     @PostMapping
     public ResponseEntity<Long> book(@RequestBody BookingDto bookingDto) {
 
+        this.admissionControl.precheck(bookingDto.getCampsiteId(), bookingDto.getCheckInDate(),
+                bookingDto.getCheckOutDate());
+
         Booking booking = Booking.builder()
+                .campsiteId(bookingDto.getCampsiteId())
                 .email(bookingDto.getEmail())
                 .fullName(bookingDto.getFullName())
                 .checkInDate(bookingDto.getCheckInDate())
@@ -56,20 +221,150 @@ public class BookingController {
         return ResponseEntity.ok(booking.getId());
     }
 
-    @PutMapping(path = "/{bookingId}")
+    // a conflict only the database finds on commit rejects the whole batch with a 409
+    @PostMapping(path = "/bulk")
+    public List<BookingResultDto> bookAll(@RequestBody List<BookingDto> bookingDtos) {
+
+        List<Booking> bookings = bookingDtos.stream()
+                .map(bookingDto -> bookingDto == null ? null : Booking.builder()
+                        .campsiteId(bookingDto.getCampsiteId())
+                        .email(bookingDto.getEmail())
+                        .fullName(bookingDto.getFullName())
+                        .checkInDate(bookingDto.getCheckInDate())
+                        .checkOutDate(bookingDto.getCheckOutDate())
+                        .build())
+                .collect(Collectors.toList());
+
+        List<BookingResult> results;
+        try {
+            results = this.bookingService.bookAll(bookings);
+        } catch (DataIntegrityViolationException ex) {
+            throw new BookingDateUnavailableException();
+        }
+
+        return this.toResultDtos(results);
+    }
+
+    @PostMapping(path = "/bulk/cancel")
+    public List<BookingResultDto> cancelAll(@RequestBody List<Long> bookingIds) {
+        return this.toResultDtos(this.bookingService.cancelAll(bookingIds));
+    }
+
+    private List<BookingResultDto> toResultDtos(List<BookingResult> results) {
+        return results.stream()
+                .map(result -> BookingResultDto.builder()
+                        .status(result.getStatus().name())
+                        .bookingId(result.getBookingId())
+                        .message(result.getMessage())
+                        .build())
+                .collect(Collectors.toList());
+    }
+
+    // the token is only known to this instance, and is lost if it restarts
+    @PostMapping(path = "/async")
+    public ResponseEntity<BookingStatusDto> bookAsync(@RequestBody BookingDto bookingDto) {
+
+        Booking booking = Booking.builder()
+                .campsiteId(bookingDto.getCampsiteId())
+                .email(bookingDto.getEmail())
+                .fullName(bookingDto.getFullName())
+                .checkInDate(bookingDto.getCheckInDate())
+                .checkOutDate(bookingDto.getCheckOutDate())
+                .build();
+
+        PendingBooking pendingBooking = this.bookingService.bookAsync(booking);
+
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/booking/async/" + pendingBooking.getToken()))
+                .body(this.toStatusDto(pendingBooking));
+    }
+
+    @GetMapping(path = "/async/{token}")
+    public BookingStatusDto getAsyncBookingStatus(@PathVariable(name = "token") String token) {
+        return this.toStatusDto(this.bookingService.findPendingBooking(token));
+    }
+
+    private BookingStatusDto toStatusDto(PendingBooking pendingBooking) {
+        return BookingStatusDto.builder()
+                .token(pendingBooking.getToken())
+                .status(pendingBooking.getStatus().name())
+                .bookingId(pendingBooking.getBookingId())
+                .message(pendingBooking.getMessage())
+                .build();
+    }
+
+    @PostMapping(path = "/holds")
+    public ResponseEntity<HoldDto> hold(@RequestBody BookingDto bookingDto) {
+
+        this.admissionControl.precheck(bookingDto.getCampsiteId(), bookingDto.getCheckInDate(),
+                bookingDto.getCheckOutDate());
+
+        Hold hold = this.bookingService.hold(bookingDto.getCampsiteId(), bookingDto.getCheckInDate(),
+                bookingDto.getCheckOutDate());
+
+        return ResponseEntity.created(URI.create("/api/booking/holds/" + hold.getId()))
+                .body(this.toHoldDto(hold));
+    }
+
+    @GetMapping(path = "/holds/{holdId}")
+    public HoldDto getHold(@PathVariable(name = "holdId") String holdId) {
+        return this.toHoldDto(this.bookingService.findHold(holdId));
+    }
+
+    @DeleteMapping(path = "/holds/{holdId}")
     @ResponseStatus(value = HttpStatus.OK)
-    public void update(@RequestBody BookingDto bookingDto, @PathVariable(name = "bookingId", required = true) Long bookingId) {
+    public void releaseHold(@PathVariable(name = "holdId") String holdId) {
+        this.bookingService.releaseHold(holdId);
+    }
+
+    /**
+     * Books the held nights for the guest in the body; its campsite and dates are ignored.
+     */
+    @PostMapping(path = "/holds/{holdId}/booking")
+    public ResponseEntity<Long> bookHold(@PathVariable(name = "holdId") String holdId,
+                                         @RequestBody BookingDto bookingDto) {
+
+        Booking booking = Booking.builder()
+                .email(bookingDto.getEmail())
+                .fullName(bookingDto.getFullName())
+                .build();
+
+        try {
+            booking = this.bookingService.bookHold(holdId, booking);
+        } catch (DataIntegrityViolationException ex) {
+            throw new BookingDateUnavailableException();
+        }
+
+        return ResponseEntity.ok(booking.getId());
+    }
+
+    private HoldDto toHoldDto(Hold hold) {
+        return HoldDto.builder()
+                .holdId(hold.getId())
+                .campsiteId(hold.getCampsiteId())
+                .checkInDate(hold.getCheckInDate())
+                .checkOutDate(hold.getCheckOutDate())
+                .expiresAt(hold.getExpiresAt())
+                .build();
+    }
+
+    @PutMapping(path = "/{bookingId}")
+    public ResponseEntity<Void> update(@RequestBody BookingDto bookingDto,
+                                       @PathVariable(name = "bookingId", required = true) Long bookingId,
+                                       @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
 
         Booking booking = Booking.builder()
                 .id(bookingId)
+                .campsiteId(bookingDto.getCampsiteId())
                 .email(bookingDto.getEmail())
                 .fullName(bookingDto.getFullName())
                 .checkInDate(bookingDto.getCheckInDate())
                 .checkOutDate(bookingDto.getCheckOutDate())
+                .version(versionOf(ifMatch))
                 .build();
 
         try {
-            this.bookingService.update(booking);
+            return ResponseEntity.ok().eTag(eTagOf(this.bookingService.update(booking))).build();
         } catch (DataIntegrityViolationException ex) {
             throw new BookingDateUnavailableException();
         }
@@ -81,16 +376,26 @@ public class BookingController {
         this.bookingService.cancel(bookingId);
     }
 
-    /**
-     * Global Exception handler for all exceptions.
-     */
-    @ExceptionHandler({Exception.class})
-    public ResponseEntity<AbstractMap.SimpleEntry<String, String>> handle(Exception exception) {
-        AbstractMap.SimpleEntry<String, String> response =
-                new AbstractMap.SimpleEntry<>("message", exception.getMessage());
-        exception.printStackTrace();
-        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+    private static String eTagOf(Booking booking) {
+        return "\"" + booking.getVersion() + "\"";
     }
 
-
+    // "*" or no header means any version; anything that is not one of our ETags can never match
+    private static Long versionOf(String ifMatch) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.startsWith("W/")) {
+            tag = tag.substring(2);
+        }
+        if (tag.length() > 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+            try {
+                return Long.valueOf(tag.substring(1, tag.length() - 1));
+            } catch (NumberFormatException ex) {
+                // fall through
+            }
+        }
+        return -1L;
+    }
 }
@@ -0,0 +1,111 @@
+package com.upgrade.challenge.api.controller;
+
+import com.upgrade.challenge.api.dto.ErrorDto;
+import com.upgrade.challenge.api.exceprions.BookingAccessDeniedException;
+import com.upgrade.challenge.api.exceprions.BookingAlreadyFinishedException;
+import com.upgrade.challenge.api.exceprions.BookingDateUnavailableException;
+import com.upgrade.challenge.api.exceprions.BookingError;
+import com.upgrade.challenge.api.exceprions.BookingOverloadedException;
+import com.upgrade.challenge.api.exceprions.BookingValidationException;
+import com.upgrade.challenge.api.exceprions.BookingVersionMismatchException;
+import com.upgrade.challenge.api.exceprions.ErrorCode;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExceptionHandler;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Business errors carry no stack trace and are not logged. Unexpected errors are answered 500 and logged at most
+ * once per {@code booking.errors.log-interval}, with the number left out since.
+ */
+@Slf4j
+@RestControllerAdvice
+public class BookingExceptionHandler extends ResponseEntityExceptionHandler {
+
+    public static final String ERROR_COUNTER = "booking.errors";
+
+    private final MeterRegistry meterRegistry;
+
+    private final long logIntervalNanos;
+
+    private final AtomicLong nextLogAt = new AtomicLong(System.nanoTime());
+
+    private final AtomicLong unlogged = new AtomicLong();
+
+    public BookingExceptionHandler(MeterRegistry meterRegistry,
+                                   @Value("${booking.errors.log-interval:10s}") Duration logInterval) {
+        this.meterRegistry = meterRegistry;
+        this.logIntervalNanos = logInterval.toNanos();
+    }
+
+    @ExceptionHandler({BookingValidationException.class, BookingDateUnavailableException.class,
+            BookingAlreadyFinishedException.class, BookingVersionMismatchException.class,
+            BookingOverloadedException.class, BookingAccessDeniedException.class})
+    public ResponseEntity<ErrorDto> handleBookingError(Exception exception) {
+        BookingError error = (BookingError) exception;
+        return this.respond(error.getErrorCode(), error.getMessage());
+    }
+
+    @ExceptionHandler({DataIntegrityViolationException.class})
+    public ResponseEntity<ErrorDto> handle(DataIntegrityViolationException exception) {
+        return this.respond(ErrorCode.DATES_UNAVAILABLE, BookingDateUnavailableException.MESSAGE);
+    }
+
+    @ExceptionHandler({ObjectOptimisticLockingFailureException.class})
+    public ResponseEntity<ErrorDto> handle(ObjectOptimisticLockingFailureException exception) {
+        return this.respond(ErrorCode.CONCURRENT_MODIFICATION, "Booking was modified concurrently, please try again.");
+    }
+
+    @ExceptionHandler({IllegalArgumentException.class})
+    public ResponseEntity<ErrorDto> handle(IllegalArgumentException exception) {
+        return this.respond(ErrorCode.INVALID_REQUEST, exception.getMessage());
+    }
+
+    @ExceptionHandler({Exception.class})
+    public ResponseEntity<ErrorDto> handle(Exception exception) {
+        this.logSampled(exception);
+        return this.respond(ErrorCode.INTERNAL_ERROR, "An unexpected error occurred.");
+    }
+
+    /**
+     * Spring MVC's own errors, such as an unreadable body or a missing parameter, keep their status.
+     */
+    @Override
+    protected ResponseEntity<Object> handleExceptionInternal(Exception exception, Object body, HttpHeaders headers,
+                                                             HttpStatus status, WebRequest request) {
+        ErrorCode code = status.is5xxServerError() ? ErrorCode.INTERNAL_ERROR : ErrorCode.INVALID_REQUEST;
+        if (status.is5xxServerError()) {
+            this.logSampled(exception);
+        }
+        this.meterRegistry.counter(ERROR_COUNTER, "code", code.name()).increment();
+        return new ResponseEntity<>(ErrorDto.builder().code(code.name()).message(exception.getMessage()).build(),
+                headers, status);
+    }
+
+    private ResponseEntity<ErrorDto> respond(ErrorCode code, String message) {
+        this.meterRegistry.counter(ERROR_COUNTER, "code", code.name()).increment();
+        return ResponseEntity.status(code.getStatus())
+                .body(ErrorDto.builder().code(code.name()).message(message).build());
+    }
+
+    private void logSampled(Exception exception) {
+        long now = System.nanoTime();
+        long next = this.nextLogAt.get();
+        if (now - next < 0 || !this.nextLogAt.compareAndSet(next, now + this.logIntervalNanos)) {
+            this.unlogged.incrementAndGet();
+            return;
+        }
+        log.error("Unexpected error, {} more since the last one logged", this.unlogged.getAndSet(0), exception);
+    }
+}
@@ -0,0 +1,59 @@
+package com.upgrade.challenge.api.datasource;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Read-your-writes guard for replica reads: bookings written by this node within {@code booking.datasource
+ * .max-replica-lag} are read from the primary, since a replica may not have applied the write yet.
+ * <p>
+ * The writes are only known to the node that made them; a read balanced to another node may still hit a lagging
+ * replica. Reads that cannot tell which bookings they will return run {@link #onPrimary} instead.
+ */
+@Component
+public class ReplicaLagGuard {
+
+    private final ThreadLocal<Boolean> primaryRequired = new ThreadLocal<>();
+
+    private final Cache<Long, Boolean> recentWrites;
+
+    public ReplicaLagGuard(@Value("${booking.datasource.max-replica-lag:5s}") Duration maxReplicaLag) {
+        this.recentWrites = Caffeine.newBuilder()
+                .expireAfterWrite(maxReplicaLag)
+                .build();
+    }
+
+    public void written(Long bookingId) {
+        this.recentWrites.put(bookingId, Boolean.TRUE);
+    }
+
+    public <T> T read(Long bookingId, Function<Long, T> reader) {
+        if (this.recentWrites.getIfPresent(bookingId) == null) {
+            return reader.apply(bookingId);
+        }
+        return this.onPrimary(() -> reader.apply(bookingId));
+    }
+
+    public <T> T onPrimary(Supplier<T> reader) {
+        if (this.isPrimaryRequired()) {
+            return reader.get();
+        }
+
+        this.primaryRequired.set(Boolean.TRUE);
+        try {
+            return reader.get();
+        } finally {
+            this.primaryRequired.remove();
+        }
+    }
+
+    boolean isPrimaryRequired() {
+        return this.primaryRequired.get() != null;
+    }
+}
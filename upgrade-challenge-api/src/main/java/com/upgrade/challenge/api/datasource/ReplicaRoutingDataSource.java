@@ -0,0 +1,61 @@
+package com.upgrade.challenge.api.datasource;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends read-only transactions to the replicas unless the {@link ReplicaLagGuard} requires the primary. The flag
+ * is only set after the connection is asked for, so this sits behind a LazyConnectionDataSourceProxy.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    public static final String CONNECTION_COUNTER = "booking.datasource.connections";
+
+    private static final String PRIMARY = "primary";
+
+    private final ReplicaLagGuard replicaLagGuard;
+
+    private final int replicaCount;
+
+    private final AtomicInteger nextReplica = new AtomicInteger();
+
+    private final Counter primaryConnections;
+
+    private final Counter replicaConnections;
+
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas, ReplicaLagGuard replicaLagGuard,
+                                    MeterRegistry meterRegistry) {
+        this.replicaLagGuard = replicaLagGuard;
+        this.replicaCount = replicas.size();
+        this.primaryConnections = meterRegistry.counter(CONNECTION_COUNTER, "target", "primary");
+        this.replicaConnections = meterRegistry.counter(CONNECTION_COUNTER, "target", "replica");
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (int i = 0; i < replicas.size(); i++) {
+            targets.put(i, replicas.get(i));
+        }
+        this.setTargetDataSources(targets);
+        this.setDefaultTargetDataSource(primary);
+        this.setLenientFallback(false);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (this.replicaCount == 0 || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                || this.replicaLagGuard.isPrimaryRequired()) {
+            this.primaryConnections.increment();
+            return PRIMARY;
+        }
+        this.replicaConnections.increment();
+        return Math.floorMod(this.nextReplica.getAndIncrement(), this.replicaCount);
+    }
+}
@@ -17,6 +17,12 @@ import java.time.LocalDate;
 @ApiModel(value="Booking")
 public class BookingDto {
 
+    @ApiModelProperty(value="Reservation Id", dataType = "Long", readOnly = true)
+    private Long id;
+
+    @ApiModelProperty(value="Campsite", dataType = "Long", example = "1")
+    private Long campsiteId;
+
     @ApiModelProperty(value="Email", dataType = "String", required = true)
     private String email;
 
@@ -0,0 +1,25 @@
+package com.upgrade.challenge.api.dto;
+
+import com.upgrade.challenge.api.repository.BookingSummary;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@ApiModel(value="BookingList")
+public class BookingListDto {
+
+    @ApiModelProperty(value="Reservations of the page, by check in date")
+    private List<BookingSummary> bookings;
+
+    @ApiModelProperty(value="Cursor of the next page, absent after the last one", dataType = "String")
+    private String nextCursor;
+}
@@ -0,0 +1,25 @@
+package com.upgrade.challenge.api.dto;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@ApiModel(value="BookingResult")
+public class BookingResultDto {
+
+    @ApiModelProperty(value="OK or REJECTED", dataType = "String")
+    private String status;
+
+    @ApiModelProperty(value="Reservation Id", dataType = "Long")
+    private Long bookingId;
+
+    @ApiModelProperty(value="Reason of the rejection", dataType = "String")
+    private String message;
+}
@@ -0,0 +1,28 @@
+package com.upgrade.challenge.api.dto;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@ApiModel(value="BookingStatus")
+public class BookingStatusDto {
+
+    @ApiModelProperty(value="Reservation token", dataType = "String")
+    private String token;
+
+    @ApiModelProperty(value="PENDING, CONFIRMED or REJECTED", dataType = "String")
+    private String status;
+
+    @ApiModelProperty(value="Reservation Id, once confirmed", dataType = "Long")
+    private Long bookingId;
+
+    @ApiModelProperty(value="Reason of the rejection", dataType = "String")
+    private String message;
+}
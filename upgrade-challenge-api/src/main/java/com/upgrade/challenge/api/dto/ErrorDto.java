@@ -0,0 +1,22 @@
+package com.upgrade.challenge.api.dto;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@ApiModel(value="Error")
+public class ErrorDto {
+
+    @ApiModelProperty(value="Machine-readable error code, such as DATES_UNAVAILABLE", dataType = "String")
+    private String code;
+
+    @ApiModelProperty(value="Description of the error", dataType = "String")
+    private String message;
+}
@@ -0,0 +1,34 @@
+package com.upgrade.challenge.api.dto;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@ApiModel(value="Hold")
+public class HoldDto {
+
+    @ApiModelProperty(value="Hold Id", dataType = "String")
+    private String holdId;
+
+    @ApiModelProperty(value="Campsite", dataType = "Long", example = "1")
+    private Long campsiteId;
+
+    @ApiModelProperty(value="Check In date", dataType = "String", example = "yyyy-MM-dd")
+    private LocalDate checkInDate;
+
+    @ApiModelProperty(value="check Out date", dataType = "String", example = "yyyy-MM-dd")
+    private LocalDate checkOutDate;
+
+    @ApiModelProperty(value="Time the held nights are released at", dataType = "String")
+    private Instant expiresAt;
+}
@@ -0,0 +1,30 @@
+package com.upgrade.challenge.api.dto;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@ApiModel(value="StayPage")
+public class StayPageDto {
+
+    @ApiModelProperty(value="Page number, from 0", dataType = "Integer")
+    private int page;
+
+    @ApiModelProperty(value="Page size", dataType = "Integer")
+    private int size;
+
+    @ApiModelProperty(value="Stays found on every page", dataType = "Long")
+    private long total;
+
+    @ApiModelProperty(value="Stays of the page, by check in date then campsite")
+    private List<StayDto> stays;
+}
@@ -1,6 +1,9 @@
 package com.upgrade.challenge.api.entity;
 
+import com.upgrade.challenge.api.availability.Campsites;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 import javax.validation.constraints.Email;
@@ -9,7 +12,13 @@ import java.io.Serializable;
 import java.time.LocalDate;
 
 @Entity
-@Table(name = "booking")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Booking.CACHE_REGION)
+@Table(name = "booking", indexes = {
+        @Index(name = "idx_booking_stay", columnList = "campsite_id, check_in_date, check_out_date"),
+        @Index(name = "idx_booking_email", columnList = "email, check_in_date, id"),
+        @Index(name = "idx_booking_check_in", columnList = "check_in_date, id")
+})
 @Data
 @Builder
 @EqualsAndHashCode(of = {"id"})
@@ -17,10 +26,17 @@ import java.time.LocalDate;
 @AllArgsConstructor
 public class Booking implements Serializable {
 
+    public static final String CACHE_REGION = "booking";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.SEQUENCE)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "booking_seq")
+    @SequenceGenerator(name = "booking_seq", sequenceName = "booking_seq", allocationSize = 50)
     private Long id;
 
+    @Column(name = "campsite_id", nullable = false)
+    @Builder.Default
+    private Long campsiteId = Campsites.DEFAULT_ID;
+
     @Column(name = "email", nullable = false)
     @NotBlank(message = "Valid E-mail required")
     @Email(message = "Invalid e-mail.")
@@ -35,4 +51,8 @@ public class Booking implements Serializable {
 
     @Column(name = "check_out_date", nullable = false)
     private LocalDate checkOutDate;
+
+    @Version
+    @Column(name = "version")
+    private Long version;
 }
@@ -0,0 +1,45 @@
+package com.upgrade.challenge.api.entity;
+
+import lombok.*;
+import org.springframework.data.domain.Persistable;
+
+import javax.persistence.*;
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * The stored copy of a hold, read back only when the application starts.
+ */
+@Entity
+@Table(name = "booking_hold")
+@Data
+@Builder
+@EqualsAndHashCode(of = {"id"})
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookingHold implements Persistable<String> {
+
+    @Id
+    @Column(name = "id", length = 36)
+    private String id;
+
+    @Column(name = "campsite_id", nullable = false)
+    private Long campsiteId;
+
+    @Column(name = "check_in_date", nullable = false)
+    private LocalDate checkInDate;
+
+    @Column(name = "check_out_date", nullable = false)
+    private LocalDate checkOutDate;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+
+    /**
+     * Holds are only ever inserted and deleted, so saving one never reads it first.
+     */
+    @Override
+    public boolean isNew() {
+        return true;
+    }
+}
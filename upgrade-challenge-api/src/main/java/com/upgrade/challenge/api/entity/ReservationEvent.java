@@ -0,0 +1,54 @@
+package com.upgrade.challenge.api.entity;
+
+import lombok.*;
+
+import javax.persistence.*;
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * A committed change of a booking, for the other nodes to apply: the nights in [releasedFrom, releasedTo) were freed
+ * and those in [reservedFrom, reservedTo) taken. Both ranges are empty when only the details of the booking changed.
+ * <p>
+ * The sequence is not pooled, so ids are handed out in order across nodes and can be followed by polling.
+ */
+@Entity
+@Table(name = "reservation_event", indexes = {
+        @Index(name = "idx_reservation_event_created_at", columnList = "created_at")
+})
+@Data
+@Builder
+@EqualsAndHashCode(of = {"id"})
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReservationEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "reservation_event_seq")
+    @SequenceGenerator(name = "reservation_event_seq", sequenceName = "reservation_event_seq", allocationSize = 1)
+    private Long id;
+
+    @Column(name = "node_id", nullable = false, length = 64)
+    private String nodeId;
+
+    @Column(name = "booking_id", nullable = false)
+    private Long bookingId;
+
+    @Column(name = "campsite_id", nullable = false)
+    private Long campsiteId;
+
+    @Column(name = "released_from")
+    private LocalDate releasedFrom;
+
+    @Column(name = "released_to")
+    private LocalDate releasedTo;
+
+    @Column(name = "reserved_from")
+    private LocalDate reservedFrom;
+
+    @Column(name = "reserved_to")
+    private LocalDate reservedTo;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+}
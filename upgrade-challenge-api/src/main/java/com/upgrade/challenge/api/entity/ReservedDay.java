@@ -1,12 +1,20 @@
 package com.upgrade.challenge.api.entity;
 
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 import java.time.LocalDate;
 
 @Entity
-@Table(name = "reserved_day")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = ReservedDay.CACHE_REGION)
+@Table(name = "reserved_day", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_reserved_day_campsite_date", columnNames = {"campsite_id", "date"})
+}, indexes = {
+        @Index(name = "idx_reserved_day_booking", columnList = "booking_id")
+})
 @Data
 @Builder
 @EqualsAndHashCode(of = {"id"})
@@ -14,11 +22,21 @@ import java.time.LocalDate;
 @AllArgsConstructor
 public class ReservedDay {
 
+    public static final String CACHE_REGION = "reserved-day";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.SEQUENCE)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "reserved_day_seq")
+    @SequenceGenerator(name = "reserved_day_seq", sequenceName = "reserved_day_seq", allocationSize = 50)
     private Long id;
 
-    @Column(name = "date", unique = true)
+    @Column(name = "campsite_id", nullable = false)
+    private Long campsiteId;
+
+    @Column(name = "date")
     private LocalDate date;
 
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "booking_id", nullable = false)
+    private Booking booking;
+
 }
@@ -0,0 +1,18 @@
+package com.upgrade.challenge.api.exceprions;
+
+public class BookingAccessDeniedException extends SecurityException implements BookingError {
+
+    public BookingAccessDeniedException(String message) {
+        super(message);
+    }
+
+    @Override
+    public ErrorCode getErrorCode() {
+        return ErrorCode.ACCESS_DENIED;
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
@@ -1,8 +1,13 @@
 package com.upgrade.challenge.api.exceprions;
 
-public class BookingAlreadyFinishedException extends RuntimeException {
+public class BookingAlreadyFinishedException extends RuntimeException implements BookingError {
 
     public BookingAlreadyFinishedException() {
-        super("Booking already finished.");
+        super("Booking already finished.", null, false, false);
+    }
+
+    @Override
+    public ErrorCode getErrorCode() {
+        return ErrorCode.BOOKING_FINISHED;
     }
 }
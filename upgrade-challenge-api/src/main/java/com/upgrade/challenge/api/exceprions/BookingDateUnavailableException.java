@@ -1,8 +1,15 @@
 package com.upgrade.challenge.api.exceprions;
 
-public class BookingDateUnavailableException extends RuntimeException {
+public class BookingDateUnavailableException extends RuntimeException implements BookingError {
+
+    public static final String MESSAGE = "Booking date is unavailable.";
 
     public BookingDateUnavailableException() {
-        super("Booking date is unavailable.");
+        super(MESSAGE, null, false, false);
+    }
+
+    @Override
+    public ErrorCode getErrorCode() {
+        return ErrorCode.DATES_UNAVAILABLE;
     }
 }
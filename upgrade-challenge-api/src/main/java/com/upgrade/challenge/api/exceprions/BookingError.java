@@ -0,0 +1,12 @@
+package com.upgrade.challenge.api.exceprions;
+
+/**
+ * A business error expected in normal operation. Implementations do not capture a stack trace, so rejecting a
+ * request costs about as much as answering it.
+ */
+public interface BookingError {
+
+    ErrorCode getErrorCode();
+
+    String getMessage();
+}
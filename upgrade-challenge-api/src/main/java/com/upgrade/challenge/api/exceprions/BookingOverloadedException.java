@@ -0,0 +1,18 @@
+package com.upgrade.challenge.api.exceprions;
+
+public class BookingOverloadedException extends IllegalStateException implements BookingError {
+
+    public BookingOverloadedException(String message) {
+        super(message);
+    }
+
+    @Override
+    public ErrorCode getErrorCode() {
+        return ErrorCode.OVERLOADED;
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
@@ -0,0 +1,24 @@
+package com.upgrade.challenge.api.exceprions;
+
+/**
+ * A request rejected by validation. Stays an {@link IllegalArgumentException} for existing callers.
+ */
+public class BookingValidationException extends IllegalArgumentException implements BookingError {
+
+    private final ErrorCode errorCode;
+
+    public BookingValidationException(ErrorCode errorCode, String message) {
+        super(message);
+        this.errorCode = errorCode;
+    }
+
+    @Override
+    public ErrorCode getErrorCode() {
+        return this.errorCode;
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
@@ -0,0 +1,13 @@
+package com.upgrade.challenge.api.exceprions;
+
+public class BookingVersionMismatchException extends RuntimeException implements BookingError {
+
+    public BookingVersionMismatchException() {
+        super("Booking was modified since it was read.", null, false, false);
+    }
+
+    @Override
+    public ErrorCode getErrorCode() {
+        return ErrorCode.VERSION_MISMATCH;
+    }
+}
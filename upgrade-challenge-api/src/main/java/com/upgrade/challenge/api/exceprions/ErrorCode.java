@@ -0,0 +1,33 @@
+package com.upgrade.challenge.api.exceprions;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * Error codes returned to clients, with the HTTP status each one is answered with.
+ */
+public enum ErrorCode {
+
+    INVALID_REQUEST(HttpStatus.BAD_REQUEST),
+    INVALID_CAMPSITE(HttpStatus.BAD_REQUEST),
+    INVALID_DATE_INTERVAL(HttpStatus.BAD_REQUEST),
+    ACCESS_DENIED(HttpStatus.FORBIDDEN),
+    BOOKING_NOT_FOUND(HttpStatus.NOT_FOUND),
+    HOLD_NOT_FOUND(HttpStatus.NOT_FOUND),
+    DATES_UNAVAILABLE(HttpStatus.CONFLICT),
+    BOOKING_FINISHED(HttpStatus.CONFLICT),
+    CONCURRENT_MODIFICATION(HttpStatus.CONFLICT),
+    VERSION_MISMATCH(HttpStatus.PRECONDITION_FAILED),
+    RATE_LIMITED(HttpStatus.TOO_MANY_REQUESTS),
+    OVERLOADED(HttpStatus.SERVICE_UNAVAILABLE),
+    INTERNAL_ERROR(HttpStatus.INTERNAL_SERVER_ERROR);
+
+    private final HttpStatus status;
+
+    ErrorCode(HttpStatus status) {
+        this.status = status;
+    }
+
+    public HttpStatus getStatus() {
+        return this.status;
+    }
+}
@@ -1,8 +1,8 @@
 package com.upgrade.challenge.api.exceprions;
 
-public class InvalidDateIntervalException extends RuntimeException {
+public class InvalidDateIntervalException extends BookingValidationException {
 
     public InvalidDateIntervalException(String message) {
-        super(message);
+        super(ErrorCode.INVALID_DATE_INTERVAL, message);
     }
 }
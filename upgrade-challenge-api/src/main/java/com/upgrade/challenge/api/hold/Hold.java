@@ -0,0 +1,40 @@
+package com.upgrade.challenge.api.hold;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * Nights of a campsite held for a client until {@link #getExpiresAt()}, claimed in the reservation engine under
+ * their own token.
+ */
+@Getter
+public class Hold {
+
+    private final String id;
+
+    private final long campsiteId;
+
+    private final LocalDate checkInDate;
+
+    private final LocalDate checkOutDate;
+
+    private final Instant expiresAt;
+
+    @Getter(AccessLevel.PACKAGE)
+    private final long claimToken;
+
+    @Getter(AccessLevel.NONE)
+    TimerWheel.Timeout<Hold> timeout;
+
+    Hold(String id, long campsiteId, LocalDate checkInDate, LocalDate checkOutDate, Instant expiresAt, long claimToken) {
+        this.id = id;
+        this.campsiteId = campsiteId;
+        this.checkInDate = checkInDate;
+        this.checkOutDate = checkOutDate;
+        this.expiresAt = expiresAt;
+        this.claimToken = claimToken;
+    }
+}
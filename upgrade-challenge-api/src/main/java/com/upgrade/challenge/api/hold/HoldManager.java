@@ -0,0 +1,321 @@
+package com.upgrade.challenge.api.hold;
+
+import com.upgrade.challenge.api.availability.AvailabilityIndex;
+import com.upgrade.challenge.api.availability.ReservationEngine;
+import com.upgrade.challenge.api.cluster.ClusterSync;
+import com.upgrade.challenge.api.entity.BookingHold;
+import com.upgrade.challenge.api.exceprions.BookingDateUnavailableException;
+import com.upgrade.challenge.api.exceprions.BookingOverloadedException;
+import com.upgrade.challenge.api.repository.BookingHoldRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Holds on nights claimed under their own token while a client checks out, lapsing after {@code booking.hold.ttl} on
+ * a {@link TimerWheel}. Holds are written to booking_hold in batches and claimed again on startup; other nodes of a
+ * cluster only see the nights once they are booked.
+ */
+@Slf4j
+@Component
+@Lazy(false)
+public class HoldManager implements SmartLifecycle {
+
+    public static final String HOLD_COUNTER = "booking.holds";
+
+    public static final int PHASE = ClusterSync.PHASE + 1;
+
+    private final AvailabilityIndex availabilityIndex;
+
+    private final ReservationEngine reservationEngine;
+
+    private final BookingHoldRepository bookingHoldRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final MeterRegistry meterRegistry;
+
+    private final Duration ttl;
+
+    private final int maxHolds;
+
+    private final Duration tick;
+
+    private final Duration flushInterval;
+
+    private final Map<String, Hold> holds = new ConcurrentHashMap<>();
+
+    // guards itself and holds, so a hold is either taken or expired, never both
+    private final TimerWheel<Hold> wheel;
+
+    // rows to insert, or null for the ids to delete
+    private final Queue<Map.Entry<String, BookingHold>> changes = new ConcurrentLinkedQueue<>();
+
+    // kept for the next flush if one fails; only used by the flushing thread
+    private final Map<String, BookingHold> unflushed = new LinkedHashMap<>();
+
+    private volatile ScheduledExecutorService scheduler;
+
+    public HoldManager(AvailabilityIndex availabilityIndex, ReservationEngine reservationEngine,
+                       ObjectProvider<BookingHoldRepository> bookingHoldRepository,
+                       PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                       @Value("${booking.hold.ttl:5m}") Duration ttl,
+                       @Value("${booking.hold.max-holds:10000}") int maxHolds,
+                       @Value("${booking.hold.tick:100ms}") Duration tick,
+                       @Value("${booking.hold.flush-interval:50ms}") Duration flushInterval) {
+        this.availabilityIndex = availabilityIndex;
+        this.reservationEngine = reservationEngine;
+        this.bookingHoldRepository = bookingHoldRepository.getIfAvailable();
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.meterRegistry = meterRegistry;
+        this.ttl = ttl;
+        this.maxHolds = maxHolds;
+        this.tick = tick;
+        this.flushInterval = flushInterval;
+
+        // one turn of the wheel covers the TTL, so a hold is only looked at when it is due
+        int ticksPerTtl = (int) Math.min(ttl.toNanos() / tick.toNanos() + 1, 1 << 16);
+        int wheelSize = Integer.highestOneBit(ticksPerTtl);
+        if (wheelSize < ticksPerTtl) {
+            wheelSize <<= 1;
+        }
+        this.wheel = new TimerWheel<>(tick.toNanos(), wheelSize, System.nanoTime());
+        Gauge.builder("booking.holds.active", this.holds, Map::size).register(meterRegistry);
+    }
+
+    // after ClusterSync, whose start reloads the engine and would drop the restored claims
+    @Override
+    public void start() {
+        if (this.bookingHoldRepository != null) {
+            this.restore();
+        }
+
+        this.scheduler = Executors.newScheduledThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "booking-holds");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.scheduleAtFixedRate(this::expire,
+                this.tick.toNanos(), this.tick.toNanos(), TimeUnit.NANOSECONDS);
+        this.scheduler.scheduleWithFixedDelay(this::flushQuietly,
+                this.flushInterval.toNanos(), this.flushInterval.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    private void restore() {
+        List<BookingHold> stored = this.transactionTemplate.execute(status -> {
+            List<BookingHold> rows = new ArrayList<>();
+            this.bookingHoldRepository.findAll().forEach(rows::add);
+            return rows;
+        });
+        Instant now = Instant.now();
+        int restored = 0;
+        for (BookingHold row : stored) {
+            long token = row.getExpiresAt().isAfter(now)
+                    ? this.reservationEngine.claim(row.getCampsiteId(),
+                    row.getCheckInDate().toEpochDay(), row.getCheckOutDate().toEpochDay())
+                    : ReservationEngine.FREE;
+            if (token == ReservationEngine.FREE) {
+                this.unflushed.put(row.getId(), null);
+                continue;
+            }
+            this.start(new Hold(row.getId(), row.getCampsiteId(), row.getCheckInDate(), row.getCheckOutDate(),
+                    row.getExpiresAt(), token));
+            restored++;
+        }
+        log.info("Restored {} of {} stored holds", restored, stored.size());
+    }
+
+    @Override
+    public void stop() {
+        ScheduledExecutorService scheduler = this.scheduler;
+        this.scheduler = null;
+        scheduler.shutdownNow();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        this.flushQuietly();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return this.scheduler != null;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+    // for a campsite and dates already validated
+    public Hold place(long campsiteId, LocalDate checkIn, LocalDate checkOut) {
+        if (this.holds.size() >= this.maxHolds) {
+            throw new BookingOverloadedException("Too many reservations on hold, please try again later.");
+        }
+        long token = this.reservationEngine.claim(campsiteId, checkIn.toEpochDay(), checkOut.toEpochDay());
+        if (token == ReservationEngine.FREE) {
+            throw new BookingDateUnavailableException();
+        }
+
+        Hold hold = new Hold(UUID.randomUUID().toString(), campsiteId, checkIn, checkOut,
+                Instant.now().plus(this.ttl), token);
+        this.start(hold);
+        this.changes.add(new AbstractMap.SimpleImmutableEntry<>(hold.getId(), BookingHold.builder()
+                .id(hold.getId())
+                .campsiteId(campsiteId)
+                .checkInDate(checkIn)
+                .checkOutDate(checkOut)
+                .expiresAt(hold.getExpiresAt())
+                .build()));
+        this.meterRegistry.counter(HOLD_COUNTER, "outcome", "placed").increment();
+        return hold;
+    }
+
+    private void start(Hold hold) {
+        this.availabilityIndex.reserve(hold.getCampsiteId(),
+                hold.getCheckInDate().toEpochDay(), hold.getCheckOutDate().toEpochDay());
+        this.schedule(hold);
+    }
+
+    private void schedule(Hold hold) {
+        long remaining = Duration.between(Instant.now(), hold.getExpiresAt()).toNanos();
+        synchronized (this.wheel) {
+            hold.timeout = this.wheel.schedule(hold, System.nanoTime() + remaining);
+            this.holds.put(hold.getId(), hold);
+        }
+    }
+
+    public Optional<Hold> find(String holdId) {
+        return Optional.ofNullable(this.holds.get(holdId));
+    }
+
+    /**
+     * Hands the hold over with its nights still claimed; the caller then calls {@link #converted} or
+     * {@link #restore(Hold)}.
+     */
+    public Optional<Hold> take(String holdId) {
+        synchronized (this.wheel) {
+            Hold hold = this.holds.remove(holdId);
+            if (hold != null) {
+                this.wheel.cancel(hold.timeout);
+            }
+            return Optional.ofNullable(hold);
+        }
+    }
+
+    public void converted(Hold hold) {
+        this.removed(hold, "converted");
+    }
+
+    public void restore(Hold hold) {
+        this.schedule(hold);
+    }
+
+    /**
+     * @return false when there is no such hold running
+     */
+    public boolean release(String holdId) {
+        return this.take(holdId)
+                .map(hold -> {
+                    this.free(hold);
+                    this.removed(hold, "released");
+                    return true;
+                })
+                .orElse(false);
+    }
+
+    private void expire() {
+        List<Hold> expired = new ArrayList<>();
+        synchronized (this.wheel) {
+            this.wheel.advance(System.nanoTime(), hold -> {
+                this.holds.remove(hold.getId());
+                expired.add(hold);
+            });
+        }
+        for (Hold hold : expired) {
+            this.free(hold);
+            this.removed(hold, "expired");
+        }
+    }
+
+    // a night taken over by another node's booking stays reserved
+    private void free(Hold hold) {
+        long campsiteId = hold.getCampsiteId();
+        long checkIn = hold.getCheckInDate().toEpochDay();
+        long checkOut = hold.getCheckOutDate().toEpochDay();
+        for (long day = checkIn; day < checkOut; day++) {
+            if (this.reservationEngine.isClaimedBy(campsiteId, day, hold.getClaimToken())) {
+                this.availabilityIndex.release(campsiteId, day, day + 1);
+            }
+        }
+        this.reservationEngine.release(campsiteId, checkIn, checkOut, 0, 0, hold.getClaimToken());
+    }
+
+    private void removed(Hold hold, String outcome) {
+        this.changes.add(new AbstractMap.SimpleImmutableEntry<>(hold.getId(), null));
+        this.meterRegistry.counter(HOLD_COUNTER, "outcome", outcome).increment();
+    }
+
+    private void flushQuietly() {
+        try {
+            this.flush();
+        } catch (RuntimeException ex) {
+            log.warn("Unable to store {} hold changes, will retry", this.unflushed.size(), ex);
+        }
+    }
+
+    synchronized void flush() {
+        for (Map.Entry<String, BookingHold> change; (change = this.changes.poll()) != null; ) {
+            if (change.getValue() == null && this.unflushed.get(change.getKey()) != null) {
+                this.unflushed.remove(change.getKey());
+            } else {
+                this.unflushed.put(change.getKey(), change.getValue());
+            }
+        }
+        if (this.unflushed.isEmpty() || this.bookingHoldRepository == null) {
+            this.unflushed.clear();
+            return;
+        }
+
+        List<BookingHold> inserted = this.unflushed.values().stream()
+                .filter(row -> row != null)
+                .collect(Collectors.toList());
+        List<String> deleted = this.unflushed.entrySet().stream()
+                .filter(entry -> entry.getValue() == null)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+        this.transactionTemplate.executeWithoutResult(status -> {
+            this.bookingHoldRepository.saveAll(inserted);
+            if (!deleted.isEmpty()) {
+                this.bookingHoldRepository.deleteHolds(deleted);
+            }
+        });
+        this.unflushed.clear();
+    }
+}
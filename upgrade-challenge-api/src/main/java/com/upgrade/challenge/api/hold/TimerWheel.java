@@ -0,0 +1,144 @@
+package com.upgrade.challenge.api.hold;
+
+import java.util.function.Consumer;
+
+/**
+ * Hashed timer wheel; a timeout further away than one turn stays in its bucket until its turn comes.
+ * Not thread-safe: callers hold a lock around every call.
+ */
+final class TimerWheel<T> {
+
+    static final class Timeout<T> {
+
+        private final T value;
+
+        private final long deadlineTick;
+
+        private Bucket<T> bucket;
+
+        private Timeout<T> previous;
+
+        private Timeout<T> next;
+
+        private Timeout(T value, long deadlineTick) {
+            this.value = value;
+            this.deadlineTick = deadlineTick;
+        }
+
+        boolean isPending() {
+            return this.bucket != null;
+        }
+    }
+
+    private static final class Bucket<T> {
+
+        private Timeout<T> head;
+
+        void add(Timeout<T> timeout) {
+            timeout.bucket = this;
+            timeout.next = this.head;
+            if (this.head != null) {
+                this.head.previous = timeout;
+            }
+            this.head = timeout;
+        }
+
+        void remove(Timeout<T> timeout) {
+            if (timeout.previous != null) {
+                timeout.previous.next = timeout.next;
+            } else {
+                this.head = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.previous = timeout.previous;
+            }
+            timeout.bucket = null;
+            timeout.previous = null;
+            timeout.next = null;
+        }
+
+        void expire(long tick, Consumer<T> expired) {
+            Timeout<T> timeout = this.head;
+            while (timeout != null) {
+                Timeout<T> next = timeout.next;
+                if (timeout.deadlineTick <= tick) {
+                    this.remove(timeout);
+                    expired.accept(timeout.value);
+                }
+                timeout = next;
+            }
+        }
+    }
+
+    private final Bucket<T>[] buckets;
+
+    private final int mask;
+
+    private final long tickNanos;
+
+    private final long startNanos;
+
+    private long currentTick;
+
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    TimerWheel(long tickNanos, int wheelSize, long startNanos) {
+        if (Integer.bitCount(wheelSize) != 1) {
+            throw new IllegalArgumentException("The wheel size must be a power of two.");
+        }
+        this.buckets = new Bucket[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            this.buckets[i] = new Bucket<>();
+        }
+        this.mask = wheelSize - 1;
+        this.tickNanos = tickNanos;
+        this.startNanos = startNanos;
+    }
+
+    // never on the current tick
+    Timeout<T> schedule(T value, long deadlineNanos) {
+        long elapsed = deadlineNanos - this.startNanos;
+        long tick = Math.max((elapsed + this.tickNanos - 1) / this.tickNanos, this.currentTick + 1);
+        Timeout<T> timeout = new Timeout<>(value, tick);
+        this.buckets[(int) (tick & this.mask)].add(timeout);
+        this.size++;
+        return timeout;
+    }
+
+    /**
+     * @return whether the timeout was still pending
+     */
+    boolean cancel(Timeout<T> timeout) {
+        if (!timeout.isPending()) {
+            return false;
+        }
+        timeout.bucket.remove(timeout);
+        this.size--;
+        return true;
+    }
+
+    // after more than a turn, as after a long pause, each bucket is visited once
+    void advance(long nowNanos, Consumer<T> expired) {
+        long targetTick = (nowNanos - this.startNanos) / this.tickNanos;
+        Consumer<T> counting = value -> {
+            this.size--;
+            expired.accept(value);
+        };
+        if (targetTick - this.currentTick > this.buckets.length) {
+            for (Bucket<T> bucket : this.buckets) {
+                bucket.expire(targetTick, counting);
+            }
+            this.currentTick = targetTick;
+            return;
+        }
+        while (this.currentTick < targetTick) {
+            this.currentTick++;
+            this.buckets[(int) (this.currentTick & this.mask)].expire(this.currentTick, counting);
+        }
+    }
+
+    int size() {
+        return this.size;
+    }
+}
@@ -0,0 +1,51 @@
+package com.upgrade.challenge.api.journal;
+
+import com.upgrade.challenge.api.entity.Booking;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.LocalDate;
+
+/**
+ * Binary form of a booking shared by journal events and snapshots.
+ */
+final class BookingRecords {
+
+    private BookingRecords() {
+    }
+
+    static void write(DataOutput output, Booking booking) throws IOException {
+        output.writeLong(booking.getId());
+        output.writeLong(booking.getCampsiteId());
+        output.writeLong(booking.getVersion());
+        output.writeLong(booking.getCheckInDate().toEpochDay());
+        output.writeLong(booking.getCheckOutDate().toEpochDay());
+        output.writeUTF(booking.getEmail());
+        output.writeUTF(booking.getFullName());
+    }
+
+    static Booking read(DataInput input) throws IOException {
+        return Booking.builder()
+                .id(input.readLong())
+                .campsiteId(input.readLong())
+                .version(input.readLong())
+                .checkInDate(LocalDate.ofEpochDay(input.readLong()))
+                .checkOutDate(LocalDate.ofEpochDay(input.readLong()))
+                .email(input.readUTF())
+                .fullName(input.readUTF())
+                .build();
+    }
+
+    static Booking copy(Booking booking) {
+        return Booking.builder()
+                .id(booking.getId())
+                .campsiteId(booking.getCampsiteId())
+                .version(booking.getVersion())
+                .checkInDate(booking.getCheckInDate())
+                .checkOutDate(booking.getCheckOutDate())
+                .email(booking.getEmail())
+                .fullName(booking.getFullName())
+                .build();
+    }
+}
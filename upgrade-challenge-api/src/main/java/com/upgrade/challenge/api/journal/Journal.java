@@ -0,0 +1,214 @@
+package com.upgrade.challenge.api.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log in memory-mapped segment files. Replay stops at the first torn or corrupt record and zeroes the
+ * rest of its segment, so nothing written before a crash can resurface behind newer records.
+ */
+public class Journal implements Closeable {
+
+    private static final String PREFIX = "journal-";
+
+    private static final String SUFFIX = ".log";
+
+    private static final int HEADER = 2 * Integer.BYTES;
+
+    private final Path directory;
+
+    private final int segmentSize;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition synced = lock.newCondition();
+
+    private MappedByteBuffer segment;
+
+    private long segmentId;
+
+    private long written;
+
+    private long durable;
+
+    private boolean syncing;
+
+    public Journal(Path directory, int segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+    }
+
+    public void open(long firstSegment, Consumer<ByteBuffer> replay) throws IOException {
+        Files.createDirectories(this.directory);
+        long lastSegment = -1;
+        for (long id : this.segmentIds()) {
+            if (id < firstSegment) {
+                continue;
+            }
+            if (this.segment != null) {
+                this.replay(this.segment, replay);
+            }
+            this.segment = this.map(id);
+            lastSegment = id;
+        }
+
+        if (this.segment == null) {
+            this.segmentId = firstSegment;
+            this.segment = this.map(firstSegment);
+            return;
+        }
+
+        this.segmentId = lastSegment;
+        this.replay(this.segment, replay);
+        for (int position = this.segment.position(); position < this.segment.limit(); position++) {
+            this.segment.put(position, (byte) 0);
+        }
+    }
+
+    public long append(byte[] payload) throws IOException {
+        int size = HEADER + payload.length;
+        if (size > this.segmentSize) {
+            throw new IllegalArgumentException("A journal record of " + size + " bytes does not fit in a segment.");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        this.lock.lock();
+        try {
+            if (this.segment.remaining() < size) {
+                this.rollLocked();
+            }
+            this.segment.putInt(payload.length);
+            this.segment.putInt((int) crc.getValue());
+            this.segment.put(payload);
+            this.written += size;
+            return this.written;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    // group commit: concurrent callers share the fsync of the first one
+    public void sync(long position) {
+        this.lock.lock();
+        try {
+            while (this.durable < position) {
+                if (this.syncing) {
+                    this.synced.awaitUninterruptibly();
+                    continue;
+                }
+
+                this.syncing = true;
+                long target = this.written;
+                MappedByteBuffer current = this.segment;
+                this.lock.unlock();
+                try {
+                    current.force();
+                } finally {
+                    this.lock.lock();
+                    this.syncing = false;
+                    this.synced.signalAll();
+                }
+                this.durable = Math.max(this.durable, target);
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    public long roll() throws IOException {
+        this.lock.lock();
+        try {
+            this.rollLocked();
+            return this.segmentId;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    public void deleteSegmentsBefore(long id) throws IOException {
+        for (long segment : this.segmentIds()) {
+            if (segment < id) {
+                Files.deleteIfExists(this.path(segment));
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        this.lock.lock();
+        try {
+            this.segment.force();
+            this.durable = this.written;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private void rollLocked() throws IOException {
+        this.segment.force();
+        this.durable = this.written;
+        this.segmentId++;
+        this.segment = this.map(this.segmentId);
+    }
+
+    private void replay(MappedByteBuffer segment, Consumer<ByteBuffer> replay) {
+        CRC32 crc = new CRC32();
+        while (segment.remaining() >= HEADER) {
+            int start = segment.position();
+            int length = segment.getInt();
+            int checksum = segment.getInt();
+            if (length <= 0 || length > segment.remaining()) {
+                segment.position(start);
+                return;
+            }
+
+            ByteBuffer payload = segment.slice();
+            payload.limit(length);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                segment.position(start);
+                return;
+            }
+            replay.accept(payload);
+            segment.position(start + HEADER + length);
+        }
+    }
+
+    private MappedByteBuffer map(long id) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(this.path(id).toFile(), "rw")) {
+            if (file.length() < this.segmentSize) {
+                file.setLength(this.segmentSize);
+            }
+            return file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, file.length());
+        }
+    }
+
+    private Path path(long id) {
+        return this.directory.resolve(String.format("%s%020d%s", PREFIX, id, SUFFIX));
+    }
+
+    private List<Long> segmentIds() throws IOException {
+        try (Stream<Path> files = Files.list(this.directory)) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.startsWith(PREFIX) && name.endsWith(SUFFIX))
+                    .map(name -> Long.valueOf(name.substring(PREFIX.length(), name.length() - SUFFIX.length())))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.upgrade.challenge.api.journal;
+
+import com.upgrade.challenge.api.entity.Booking;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * The live bookings as of the start of a journal segment ({@code snapshot-<segment>.bin}), so recovery only replays
+ * the segments from there on. Written to a temporary file, forced and renamed, and checksummed as a whole. The
+ * previous snapshot and its segments are kept, so one that fails its checksum is skipped in favour of the older one.
+ */
+final class JournalSnapshot {
+
+    private static final int MAGIC = 0x424b534e;
+
+    private static final String PREFIX = "snapshot-";
+
+    private static final String SUFFIX = ".bin";
+
+    final long firstSegment;
+
+    final long nextBookingId;
+
+    final List<Booking> bookings;
+
+    JournalSnapshot(long firstSegment, long nextBookingId, List<Booking> bookings) {
+        this.firstSegment = firstSegment;
+        this.nextBookingId = nextBookingId;
+        this.bookings = bookings;
+    }
+
+    static JournalSnapshot load(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        for (Path file : snapshotFiles(directory, Comparator.reverseOrder())) {
+            JournalSnapshot snapshot = read(file);
+            if (snapshot != null) {
+                return snapshot;
+            }
+        }
+        return new JournalSnapshot(0, 1, Collections.emptyList());
+    }
+
+    static long write(Path directory, long firstSegment, long nextBookingId, Collection<Booking> bookings)
+            throws IOException {
+        Path target = directory.resolve(String.format("%s%020d%s", PREFIX, firstSegment, SUFFIX));
+        Path temporary = directory.resolve(target.getFileName() + ".tmp");
+
+        try (FileOutputStream file = new FileOutputStream(temporary.toFile())) {
+            CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(file), new CRC32());
+            DataOutputStream output = new DataOutputStream(checked);
+            output.writeInt(MAGIC);
+            output.writeLong(firstSegment);
+            output.writeLong(nextBookingId);
+            output.writeInt(bookings.size());
+            for (Booking booking : bookings) {
+                BookingRecords.write(output, booking);
+            }
+            output.writeLong(checked.getChecksum().getValue());
+            output.flush();
+            file.getChannel().force(true);
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        // the rename has to be durable before older segments are deleted
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ex) {
+            // directories cannot be opened on every platform
+        }
+
+        List<Path> snapshots = snapshotFiles(directory, Comparator.reverseOrder());
+        for (Path file : snapshots.subList(Math.min(2, snapshots.size()), snapshots.size())) {
+            Files.deleteIfExists(file);
+        }
+        return segmentOf(snapshots.get(Math.min(1, snapshots.size() - 1)));
+    }
+
+    private static long segmentOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    private static JournalSnapshot read(Path file) throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        if (bytes.length < Long.BYTES) {
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - Long.BYTES);
+        if (crc.getValue() != ByteBuffer.wrap(bytes, bytes.length - Long.BYTES, Long.BYTES).getLong()) {
+            return null;
+        }
+
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (input.readInt() != MAGIC) {
+            return null;
+        }
+        long firstSegment = input.readLong();
+        long nextBookingId = input.readLong();
+        int count = input.readInt();
+        List<Booking> bookings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            bookings.add(BookingRecords.read(input));
+        }
+        return new JournalSnapshot(firstSegment, nextBookingId, bookings);
+    }
+
+    private static List<Path> snapshotFiles(Path directory, Comparator<String> order) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> {
+                String name = file.getFileName().toString();
+                return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+            })
+                    .sorted(Comparator.comparing(file -> file.getFileName().toString(), order))
+                    .collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,450 @@
+package com.upgrade.challenge.api.journal;
+
+import com.upgrade.challenge.api.entity.Booking;
+import com.upgrade.challenge.api.entity.ReservedDay;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bookings held in memory and made durable by a {@link Journal}, one record per transaction. Reserved days are not
+ * journaled: commits keep them equal to the stays of their bookings, so recovery derives them.
+ * <p>
+ * Commits are applied one at a time under a lock, which orders the journal, and wait for the flush outside of it, so
+ * a commit is visible slightly before it is durable. After a failed append or flush the store refuses commits.
+ */
+@Slf4j
+public class JournalStore implements Closeable {
+
+    private static final byte BOOKED = 1;
+
+    private static final byte UPDATED = 2;
+
+    private static final byte CANCELLED = 3;
+
+    private final Path directory;
+
+    private final Journal journal;
+
+    private final boolean fsync;
+
+    private final Duration snapshotInterval;
+
+    private final Map<Long, Booking> bookings = new ConcurrentHashMap<>();
+
+    private final Map<Long, ConcurrentSkipListMap<LocalDate, ReservedDay>> nights = new ConcurrentHashMap<>();
+
+    private final AtomicLong bookingIds = new AtomicLong(1);
+
+    private final AtomicLong reservedDayIds = new AtomicLong(1);
+
+    private final ReentrantLock commitLock = new ReentrantLock();
+
+    private long commitsSinceSnapshot;
+
+    // why the journal can no longer be written, or null while it can
+    private volatile Exception failure;
+
+    private ScheduledExecutorService snapshots;
+
+    public JournalStore(Path directory, int segmentSize, boolean fsync, Duration snapshotInterval) {
+        this.directory = directory;
+        this.journal = new Journal(directory, segmentSize);
+        this.fsync = fsync;
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    public void open() throws IOException {
+        JournalSnapshot snapshot = JournalSnapshot.load(this.directory);
+        snapshot.bookings.forEach(booking -> this.bookings.put(booking.getId(), booking));
+        this.bookingIds.set(snapshot.nextBookingId);
+        this.journal.open(snapshot.firstSegment, this::replay);
+        this.bookings.values().forEach(booking -> this.reserveNights(booking));
+        log.info("Recovered {} bookings from the journal in {}", this.bookings.size(), this.directory);
+
+        if (!this.snapshotInterval.isZero()) {
+            this.snapshots = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "booking-journal-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long interval = this.snapshotInterval.toMillis();
+            this.snapshots.scheduleWithFixedDelay(this::snapshotQuietly, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (this.snapshots != null) {
+            this.snapshots.shutdownNow();
+        }
+        this.snapshotQuietly();
+        this.journal.close();
+    }
+
+    public JournalTransaction begin() {
+        return new JournalTransaction(this);
+    }
+
+    public JournalTransaction currentTransaction() {
+        JournalTransaction transaction = (JournalTransaction) TransactionSynchronizationManager.getResource(this);
+        if (transaction == null) {
+            throw new IllegalStateException("The journal store can only be used within a transaction.");
+        }
+        return transaction;
+    }
+
+    public synchronized void snapshot() throws IOException {
+        long segment;
+        List<Booking> live;
+        long nextBookingId;
+        this.commitLock.lock();
+        try {
+            if (this.commitsSinceSnapshot == 0 || this.failure != null) {
+                return;
+            }
+            segment = this.journal.roll();
+            live = new ArrayList<>(this.bookings.values());
+            nextBookingId = this.bookingIds.get();
+            this.commitsSinceSnapshot = 0;
+        } finally {
+            this.commitLock.unlock();
+        }
+
+        this.journal.deleteSegmentsBefore(JournalSnapshot.write(this.directory, segment, nextBookingId, live));
+    }
+
+    private void snapshotQuietly() {
+        try {
+            this.snapshot();
+        } catch (IOException | RuntimeException ex) {
+            log.warn("Unable to snapshot the booking journal", ex);
+        }
+    }
+
+    // fails early, as a JPA flush would
+    void checkVersions(JournalTransaction transaction) {
+        for (Booking booking : transaction.managed.values()) {
+            Booking committed = this.bookings.get(booking.getId());
+            if (committed == null) {
+                if (!transaction.created.contains(booking.getId())) {
+                    throw new ObjectOptimisticLockingFailureException(Booking.class, booking.getId());
+                }
+            } else if (!sameState(committed, booking) && !Objects.equals(committed.getVersion(), booking.getVersion())) {
+                throw new ObjectOptimisticLockingFailureException(Booking.class, booking.getId());
+            }
+        }
+    }
+
+    void commit(JournalTransaction transaction) {
+        long position;
+        this.commitLock.lock();
+        try {
+            this.checkWritable();
+            this.checkVersions(transaction);
+
+            List<Booking> written = new ArrayList<>();
+            Set<Long> writtenIds = new HashSet<>();
+            for (Booking booking : transaction.managed.values()) {
+                Booking committed = this.bookings.get(booking.getId());
+                if (committed == null || !sameState(committed, booking)) {
+                    Booking after = BookingRecords.copy(booking);
+                    after.setVersion(committed == null ? 0L : committed.getVersion() + 1);
+                    written.add(after);
+                    writtenIds.add(after.getId());
+                }
+            }
+
+            List<Booking> cancelled = new ArrayList<>();
+            for (Map.Entry<Long, Long> deleted : transaction.deleted.entrySet()) {
+                Booking committed = this.bookings.get(deleted.getKey());
+                if (committed == null) {
+                    if (deleted.getValue() != null) {
+                        throw new ObjectOptimisticLockingFailureException(Booking.class, deleted.getKey());
+                    }
+                } else if (deleted.getValue() != null && !deleted.getValue().equals(committed.getVersion())) {
+                    throw new ObjectOptimisticLockingFailureException(Booking.class, deleted.getKey());
+                } else {
+                    cancelled.add(committed);
+                }
+            }
+
+            Map<Night, ReservedDay> inserted = this.checkNights(transaction);
+            this.checkStays(transaction, inserted, written, writtenIds, cancelled);
+            if (written.isEmpty() && cancelled.isEmpty()) {
+                return;
+            }
+
+            try {
+                position = this.journal.append(encode(written, cancelled));
+            } catch (IOException | RuntimeException ex) {
+                throw this.fail("Unable to append to the booking journal.", ex);
+            }
+
+            for (Map.Entry<Night, Long> night : transaction.deletedNights.entrySet()) {
+                this.nights.get(night.getKey().getCampsiteId()).remove(night.getKey().getDate());
+            }
+            for (ReservedDay night : inserted.values()) {
+                this.store(night.getId(), night.getCampsiteId(), night.getDate(), night.getBooking().getId());
+            }
+            for (Booking booking : written) {
+                this.bookings.put(booking.getId(), booking);
+                transaction.managed.get(booking.getId()).setVersion(booking.getVersion());
+            }
+            for (Booking booking : cancelled) {
+                this.bookings.remove(booking.getId());
+            }
+            this.commitsSinceSnapshot++;
+        } finally {
+            this.commitLock.unlock();
+        }
+
+        if (this.fsync) {
+            try {
+                this.journal.sync(position);
+            } catch (RuntimeException ex) {
+                throw this.fail("Unable to flush the booking journal.", ex);
+            }
+        }
+    }
+
+    private void checkWritable() {
+        if (this.failure != null) {
+            throw new DataAccessResourceFailureException("The booking journal failed, restart to recover it.",
+                    this.failure);
+        }
+    }
+
+    private DataAccessResourceFailureException fail(String message, Exception cause) {
+        if (this.failure == null) {
+            this.failure = cause;
+            log.error("Refusing every commit from now on: {}", message, cause);
+        }
+        return new DataAccessResourceFailureException(message, cause);
+    }
+
+    // as the unique key on (campsite_id, date) would have it
+    private Map<Night, ReservedDay> checkNights(JournalTransaction transaction) {
+        for (Map.Entry<Night, Long> deleted : transaction.deletedNights.entrySet()) {
+            ReservedDay committed = this.night(deleted.getKey());
+            if (committed == null || !committed.getId().equals(deleted.getValue())) {
+                throw new ObjectOptimisticLockingFailureException(ReservedDay.class, deleted.getValue());
+            }
+        }
+
+        Map<Night, ReservedDay> inserted = new HashMap<>();
+        for (ReservedDay night : transaction.insertedNights) {
+            Night key = Night.of(night);
+            boolean taken = this.night(key) != null && !transaction.deletedNights.containsKey(key);
+            if (inserted.put(key, night) != null || taken) {
+                throw new DataIntegrityViolationException("The night of " + night.getDate()
+                        + " is already reserved on campsite " + night.getCampsiteId() + ".");
+            }
+        }
+        return inserted;
+    }
+
+    // what lets recovery derive the reserved days
+    private void checkStays(JournalTransaction transaction, Map<Night, ReservedDay> inserted, List<Booking> written,
+                            Set<Long> writtenIds, List<Booking> cancelled) {
+        Set<Long> cancelledIds = new HashSet<>();
+        cancelled.forEach(booking -> cancelledIds.add(booking.getId()));
+
+        for (Booking booking : written) {
+            for (LocalDate date = booking.getCheckInDate(); date.isBefore(booking.getCheckOutDate()); date = date.plusDays(1)) {
+                if (!booking.getId().equals(this.ownerAfter(transaction, inserted, new Night(booking.getCampsiteId(), date)))) {
+                    throw stayMismatch(booking.getId());
+                }
+            }
+            Booking committed = this.bookings.get(booking.getId());
+            if (committed != null) {
+                this.checkReleased(transaction, inserted, committed, booking);
+            }
+        }
+        for (Booking booking : cancelled) {
+            this.checkReleased(transaction, inserted, booking, null);
+        }
+
+        for (ReservedDay night : inserted.values()) {
+            if (!writtenIds.contains(night.getBooking().getId())) {
+                throw stayMismatch(night.getBooking().getId());
+            }
+        }
+        for (Night night : transaction.deletedNights.keySet()) {
+            Long owner = this.night(night).getBooking().getId();
+            if (!writtenIds.contains(owner) && !cancelledIds.contains(owner)) {
+                throw stayMismatch(owner);
+            }
+        }
+    }
+
+    private void checkReleased(JournalTransaction transaction, Map<Night, ReservedDay> inserted, Booking before,
+                               Booking after) {
+        for (LocalDate date = before.getCheckInDate(); date.isBefore(before.getCheckOutDate()); date = date.plusDays(1)) {
+            boolean kept = after != null && after.getCampsiteId().equals(before.getCampsiteId())
+                    && !date.isBefore(after.getCheckInDate()) && date.isBefore(after.getCheckOutDate());
+            if (!kept && before.getId().equals(this.ownerAfter(transaction, inserted, new Night(before.getCampsiteId(), date)))) {
+                throw stayMismatch(before.getId());
+            }
+        }
+    }
+
+    private Long ownerAfter(JournalTransaction transaction, Map<Night, ReservedDay> inserted, Night key) {
+        ReservedDay night = inserted.get(key);
+        if (night == null && !transaction.deletedNights.containsKey(key)) {
+            night = this.night(key);
+        }
+        return night == null ? null : night.getBooking().getId();
+    }
+
+    private static DataIntegrityViolationException stayMismatch(Long bookingId) {
+        return new DataIntegrityViolationException("The reserved days of booking " + bookingId
+                + " must match its stay.");
+    }
+
+    private static byte[] encode(List<Booking> written, List<Booking> cancelled) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeInt(written.size() + cancelled.size());
+        for (Booking booking : written) {
+            output.writeByte(booking.getVersion() == 0 ? BOOKED : UPDATED);
+            BookingRecords.write(output, booking);
+        }
+        for (Booking booking : cancelled) {
+            output.writeByte(CANCELLED);
+            output.writeLong(booking.getId());
+        }
+        return bytes.toByteArray();
+    }
+
+    private void replay(ByteBuffer record) {
+        byte[] bytes = new byte[record.remaining()];
+        record.get(bytes);
+        try {
+            DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes));
+            for (int events = input.readInt(); events > 0; events--) {
+                if (input.readByte() == CANCELLED) {
+                    this.bookings.remove(input.readLong());
+                } else {
+                    Booking booking = BookingRecords.read(input);
+                    this.bookings.put(booking.getId(), booking);
+                    this.bookingIds.accumulateAndGet(booking.getId() + 1, Math::max);
+                }
+            }
+            this.commitsSinceSnapshot++;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private void reserveNights(Booking booking) {
+        for (LocalDate date = booking.getCheckInDate(); date.isBefore(booking.getCheckOutDate()); date = date.plusDays(1)) {
+            this.store(this.nextReservedDayId(), booking.getCampsiteId(), date, booking.getId());
+        }
+    }
+
+    private void store(long id, long campsiteId, LocalDate date, long bookingId) {
+        this.nights.computeIfAbsent(campsiteId, key -> new ConcurrentSkipListMap<>())
+                .put(date, ReservedDay.builder()
+                        .id(id)
+                        .campsiteId(campsiteId)
+                        .date(date)
+                        .booking(Booking.builder().id(bookingId).build())
+                        .build());
+    }
+
+    Booking booking(long id) {
+        return this.bookings.get(id);
+    }
+
+    Collection<Long> bookingIds() {
+        return this.bookings.keySet();
+    }
+
+    int bookingCount() {
+        return this.bookings.size();
+    }
+
+    long nextBookingId() {
+        return this.bookingIds.getAndIncrement();
+    }
+
+    long nextReservedDayId() {
+        return this.reservedDayIds.getAndIncrement();
+    }
+
+    ReservedDay night(Night key) {
+        Map<LocalDate, ReservedDay> campsite = this.nights.get(key.getCampsiteId());
+        return campsite == null ? null : campsite.get(key.getDate());
+    }
+
+    Collection<Long> campsites() {
+        return this.nights.keySet();
+    }
+
+    Collection<ReservedDay> nights(long campsiteId, LocalDate from, LocalDate to) {
+        NavigableMap<LocalDate, ReservedDay> campsite = this.nights.get(campsiteId);
+        if (campsite == null) {
+            return Collections.emptyList();
+        }
+        if (from != null) {
+            campsite = campsite.tailMap(from, true);
+        }
+        if (to != null) {
+            campsite = campsite.headMap(to, true);
+        }
+        return campsite.values();
+    }
+
+    static boolean sameState(Booking a, Booking b) {
+        return Objects.equals(a.getCampsiteId(), b.getCampsiteId())
+                && Objects.equals(a.getEmail(), b.getEmail())
+                && Objects.equals(a.getFullName(), b.getFullName())
+                && Objects.equals(a.getCheckInDate(), b.getCheckInDate())
+                && Objects.equals(a.getCheckOutDate(), b.getCheckOutDate());
+    }
+
+    @Value
+    static class Night {
+
+        long campsiteId;
+
+        LocalDate date;
+
+        static Night of(ReservedDay night) {
+            return new Night(night.getCampsiteId(), night.getDate());
+        }
+    }
+}
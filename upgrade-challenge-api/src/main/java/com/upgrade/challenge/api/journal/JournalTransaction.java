@@ -0,0 +1,211 @@
+package com.upgrade.challenge.api.journal;
+
+import com.upgrade.challenge.api.entity.Booking;
+import com.upgrade.challenge.api.entity.ReservedDay;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * The writes of one transaction on the {@link JournalStore}. Bookings behave like managed JPA entities: changes to
+ * the transaction's copy are written at commit even without a save, with the version checked and incremented.
+ */
+public final class JournalTransaction {
+
+    private final JournalStore store;
+
+    final Map<Long, Booking> managed = new LinkedHashMap<>();
+
+    final Set<Long> created = new HashSet<>();
+
+    // null versions are bulk deletes, which do not check them
+    final Map<Long, Long> deleted = new LinkedHashMap<>();
+
+    final List<ReservedDay> insertedNights = new ArrayList<>();
+
+    final Map<JournalStore.Night, Long> deletedNights = new HashMap<>();
+
+    private boolean rollbackOnly;
+
+    JournalTransaction(JournalStore store) {
+        this.store = store;
+    }
+
+    public Booking findBooking(long id) {
+        if (this.deleted.containsKey(id)) {
+            return null;
+        }
+        Booking booking = this.managed.get(id);
+        if (booking == null) {
+            Booking committed = this.store.booking(id);
+            if (committed == null) {
+                return null;
+            }
+            booking = BookingRecords.copy(committed);
+            this.managed.put(id, booking);
+        }
+        return booking;
+    }
+
+    public List<Booking> findBookings(Predicate<Booking> filter) {
+        List<Booking> bookings = new ArrayList<>();
+        for (Long id : this.store.bookingIds()) {
+            Booking booking = this.managed.get(id);
+            if (booking == null) {
+                Booking committed = this.store.booking(id);
+                if (committed == null || this.deleted.containsKey(id) || !filter.test(committed)) {
+                    continue;
+                }
+                booking = this.findBooking(id);
+            }
+            if (filter.test(booking)) {
+                bookings.add(booking);
+            }
+        }
+        for (Long id : this.created) {
+            Booking booking = this.managed.get(id);
+            if (booking != null && filter.test(booking)) {
+                bookings.add(booking);
+            }
+        }
+        return bookings;
+    }
+
+    public long countBookings() {
+        long deletedCommitted = this.deleted.keySet().stream().filter(id -> this.store.booking(id) != null).count();
+        long created = this.created.stream().filter(this.managed::containsKey).count();
+        return this.store.bookingCount() - deletedCommitted + created;
+    }
+
+    public <S extends Booking> S saveBooking(S booking) {
+        if (booking.getId() == null) {
+            booking.setId(this.store.nextBookingId());
+            booking.setVersion(0L);
+            this.created.add(booking.getId());
+        }
+        this.managed.put(booking.getId(), booking);
+        return booking;
+    }
+
+    public void deleteBooking(Booking booking) {
+        Long id = booking.getId();
+        if (id == null || this.managed.remove(id) == null && this.store.booking(id) == null) {
+            return;
+        }
+        if (!this.created.remove(id)) {
+            this.deleted.put(id, booking.getVersion());
+        }
+    }
+
+    public int deleteBookings(Collection<Long> ids) {
+        int count = 0;
+        for (Long id : ids) {
+            if (this.created.remove(id)) {
+                this.managed.remove(id);
+                count++;
+            } else if (!this.deleted.containsKey(id) && this.store.booking(id) != null) {
+                this.managed.remove(id);
+                this.deleted.put(id, null);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public void flush() {
+        this.store.checkVersions(this);
+    }
+
+    public List<ReservedDay> findNights(Long campsiteId, LocalDate from, LocalDate to) {
+        List<ReservedDay> nights = new ArrayList<>();
+        Collection<Long> campsites = campsiteId == null
+                ? this.store.campsites() : Collections.singleton(campsiteId);
+        for (Long campsite : campsites) {
+            for (ReservedDay night : this.store.nights(campsite, from, to)) {
+                if (!this.deletedNights.containsKey(JournalStore.Night.of(night))) {
+                    nights.add(ReservedDay.builder()
+                            .id(night.getId())
+                            .campsiteId(night.getCampsiteId())
+                            .date(night.getDate())
+                            .booking(this.findBooking(night.getBooking().getId()))
+                            .build());
+                }
+            }
+        }
+        for (ReservedDay night : this.insertedNights) {
+            if ((campsiteId == null || campsiteId.equals(night.getCampsiteId()))
+                    && (from == null || !night.getDate().isBefore(from))
+                    && (to == null || !night.getDate().isAfter(to))) {
+                nights.add(night);
+            }
+        }
+        return nights;
+    }
+
+    public <S extends ReservedDay> S saveNight(S night) {
+        if (night.getId() == null) {
+            night.setId(this.store.nextReservedDayId());
+        }
+        this.insertedNights.add(night);
+        return night;
+    }
+
+    // committed nights are found through the committed stay, which they always match
+    public int deleteNights(Collection<Long> bookingIds, LocalDate keepFrom, LocalDate keepTo) {
+        Predicate<LocalDate> released = date -> keepFrom == null || date.isBefore(keepFrom) || !date.isBefore(keepTo);
+        int count = 0;
+        for (Long bookingId : bookingIds) {
+            Booking committed = this.store.booking(bookingId);
+            if (committed != null) {
+                for (LocalDate date = committed.getCheckInDate(); date.isBefore(committed.getCheckOutDate()); date = date.plusDays(1)) {
+                    JournalStore.Night key = new JournalStore.Night(committed.getCampsiteId(), date);
+                    ReservedDay night = this.store.night(key);
+                    if (released.test(date) && night != null && night.getBooking().getId().equals(bookingId)
+                            && this.deletedNights.putIfAbsent(key, night.getId()) == null) {
+                        count++;
+                    }
+                }
+            }
+
+            for (Iterator<ReservedDay> nights = this.insertedNights.iterator(); nights.hasNext(); ) {
+                ReservedDay night = nights.next();
+                if (bookingId.equals(night.getBooking().getId()) && released.test(night.getDate())) {
+                    nights.remove();
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    public int deleteNights(Predicate<ReservedDay> filter) {
+        int count = 0;
+        for (ReservedDay night : this.findNights(null, null, null)) {
+            if (filter.test(night)) {
+                if (!this.insertedNights.remove(night)) {
+                    this.deletedNights.put(JournalStore.Night.of(night), night.getId());
+                }
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public boolean isRollbackOnly() {
+        return this.rollbackOnly;
+    }
+
+    public void setRollbackOnly() {
+        this.rollbackOnly = true;
+    }
+}
@@ -0,0 +1,87 @@
+package com.upgrade.challenge.api.journal;
+
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.SmartTransactionObject;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Runs {@code @Transactional} methods on the {@link JournalStore}: the thread's {@link JournalTransaction} is bound
+ * as a resource keyed by the store, and committing it appends to the journal and waits until it is durable.
+ */
+public class JournalTransactionManager extends AbstractPlatformTransactionManager {
+
+    private final JournalStore store;
+
+    public JournalTransactionManager(JournalStore store) {
+        this.store = store;
+    }
+
+    @Override
+    protected Object doGetTransaction() {
+        TransactionObject transaction = new TransactionObject();
+        transaction.transaction = (JournalTransaction) TransactionSynchronizationManager.getResource(this.store);
+        return transaction;
+    }
+
+    @Override
+    protected boolean isExistingTransaction(Object transaction) {
+        return ((TransactionObject) transaction).transaction != null;
+    }
+
+    @Override
+    protected void doBegin(Object transaction, TransactionDefinition definition) {
+        JournalTransaction journalTransaction = this.store.begin();
+        TransactionSynchronizationManager.bindResource(this.store, journalTransaction);
+        ((TransactionObject) transaction).transaction = journalTransaction;
+    }
+
+    @Override
+    protected Object doSuspend(Object transaction) {
+        ((TransactionObject) transaction).transaction = null;
+        return TransactionSynchronizationManager.unbindResource(this.store);
+    }
+
+    @Override
+    protected void doResume(Object transaction, Object suspendedResources) {
+        TransactionSynchronizationManager.bindResource(this.store, suspendedResources);
+    }
+
+    @Override
+    protected void doCommit(DefaultTransactionStatus status) {
+        if (!status.isReadOnly()) {
+            this.store.commit(((TransactionObject) status.getTransaction()).transaction);
+        }
+    }
+
+    @Override
+    protected void doRollback(DefaultTransactionStatus status) {
+        // nothing was applied to the store yet
+    }
+
+    @Override
+    protected void doSetRollbackOnly(DefaultTransactionStatus status) {
+        ((TransactionObject) status.getTransaction()).transaction.setRollbackOnly();
+    }
+
+    @Override
+    protected void doCleanupAfterCompletion(Object transaction) {
+        TransactionSynchronizationManager.unbindResource(this.store);
+    }
+
+    private static final class TransactionObject implements SmartTransactionObject {
+
+        private JournalTransaction transaction;
+
+        @Override
+        public boolean isRollbackOnly() {
+            return this.transaction.isRollbackOnly();
+        }
+
+        @Override
+        public void flush() {
+            this.transaction.flush();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.upgrade.challenge.api.metrics;
+
+import com.upgrade.challenge.api.exceprions.BookingDateUnavailableException;
+import com.upgrade.challenge.api.exceprions.BookingVersionMismatchException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.AfterThrowing;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.aop.framework.AopProxyUtils;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+/**
+ * Meters the layers that Spring MVC's {@code http.server.requests} and {@code @Timed} do not cover:
+ * repository calls, whole {@code @Transactional} boundaries and booking conflicts.
+ * <p>
+ * Runs right after {@code ExposeInvocationInterceptor} and therefore outside the transaction interceptor, so that
+ * transaction timings include the commit and unique constraint violations raised while flushing are seen as conflicts.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class BookingMetricsAspect {
+
+    public static final String REPOSITORY_TIMER = "booking.repository";
+
+    public static final String TRANSACTION_TIMER = "booking.transaction";
+
+    public static final String CONFLICT_COUNTER = "booking.conflicts";
+
+    private final MeterRegistry meterRegistry;
+
+    public BookingMetricsAspect(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Around("execution(* com.upgrade.challenge.api.repository..*.*(..))")
+    public Object timeRepository(ProceedingJoinPoint joinPoint) throws Throwable {
+        return this.time(joinPoint, Timer.builder(REPOSITORY_TIMER)
+                .tag("repository", repositoryName(joinPoint.getTarget()))
+                .tag("method", joinPoint.getSignature().getName()));
+    }
+
+    @Around("@annotation(org.springframework.transaction.annotation.Transactional)")
+    public Object timeTransaction(ProceedingJoinPoint joinPoint) throws Throwable {
+        return this.time(joinPoint, Timer.builder(TRANSACTION_TIMER)
+                .tag("class", joinPoint.getSignature().getDeclaringType().getSimpleName())
+                .tag("method", joinPoint.getSignature().getName()));
+    }
+
+    @AfterThrowing(pointcut = "execution(* com.upgrade.challenge.api.service.BookingService+.*(..))", throwing = "exception")
+    public void countConflict(JoinPoint joinPoint, RuntimeException exception) {
+        String source;
+        if (exception instanceof BookingDateUnavailableException) {
+            source = "claim";
+        } else if (exception instanceof DataIntegrityViolationException) {
+            source = "constraint";
+        } else if (exception instanceof BookingVersionMismatchException
+                || exception instanceof ObjectOptimisticLockingFailureException) {
+            source = "version";
+        } else {
+            return;
+        }
+
+        Counter.builder(CONFLICT_COUNTER)
+                .tag("operation", joinPoint.getSignature().getName())
+                .tag("source", source)
+                .register(this.meterRegistry)
+                .increment();
+    }
+
+    private Object time(ProceedingJoinPoint joinPoint, Timer.Builder timer) throws Throwable {
+        Timer.Sample sample = Timer.start(this.meterRegistry);
+        String exception = "none";
+        try {
+            return joinPoint.proceed();
+        } catch (Throwable ex) {
+            exception = ex.getClass().getSimpleName();
+            throw ex;
+        } finally {
+            sample.stop(timer.tag("exception", exception).register(this.meterRegistry));
+        }
+    }
+
+    private static String repositoryName(Object repository) {
+        Class<?>[] interfaces = AopProxyUtils.proxiedUserInterfaces(repository);
+        return interfaces.length > 0 ? interfaces[0].getSimpleName() : repository.getClass().getSimpleName();
+    }
+}
@@ -0,0 +1,62 @@
+package com.upgrade.challenge.api.metrics;
+
+import com.upgrade.challenge.api.entity.Booking;
+import com.upgrade.challenge.api.entity.ReservedDay;
+import com.upgrade.challenge.api.repository.ReservedDayRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.function.Function;
+
+/**
+ * Hit ratio of the Hibernate second-level cache regions ({@code booking.cache.l2.hit_ratio} tagged {@code region}),
+ * since the start of the application. The raw counts are the {@code hibernate.second.level.cache.requests} and
+ * {@code hibernate.query.cache.requests} meters.
+ */
+@Component
+@Lazy(false)
+public class SecondLevelCacheMetrics {
+
+    public static final String HIT_RATIO_GAUGE = "booking.cache.l2.hit_ratio";
+
+    public SecondLevelCacheMetrics(ObjectProvider<EntityManagerFactory> entityManagerFactory,
+                                   MeterRegistry meterRegistry) {
+        EntityManagerFactory factory = entityManagerFactory.getIfAvailable();
+        if (factory == null) {
+            return;
+        }
+
+        Statistics statistics = factory.unwrap(SessionFactory.class).getStatistics();
+        register(meterRegistry, statistics, Booking.CACHE_REGION, Statistics::getDomainDataRegionStatistics);
+        register(meterRegistry, statistics, ReservedDay.CACHE_REGION, Statistics::getDomainDataRegionStatistics);
+        register(meterRegistry, statistics, ReservedDayRepository.RANGE_CACHE_REGION, Statistics::getQueryRegionStatistics);
+    }
+
+    private static void register(MeterRegistry meterRegistry, Statistics statistics, String region,
+                                 RegionLookup lookup) {
+        Function<Statistics, Double> hitRatio = stats -> {
+            CacheRegionStatistics regionStatistics = lookup.find(stats, region);
+            if (regionStatistics == null) {
+                return Double.NaN;
+            }
+            long requests = regionStatistics.getHitCount() + regionStatistics.getMissCount();
+            return requests == 0 ? Double.NaN : (double) regionStatistics.getHitCount() / requests;
+        };
+        Gauge.builder(HIT_RATIO_GAUGE, statistics, hitRatio::apply)
+                .tag("region", region)
+                .register(meterRegistry);
+    }
+
+    @FunctionalInterface
+    private interface RegionLookup {
+
+        CacheRegionStatistics find(Statistics statistics, String region);
+    }
+}
@@ -0,0 +1,68 @@
+package com.upgrade.challenge.api.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Records, from JVM start, when the application became ready ({@code booking.startup.ready}) and when the first
+ * API request was answered ({@code booking.startup.first_request}). Health checks and scrapes do not count as
+ * the first request.
+ */
+@Slf4j
+@Component
+public class StartupMetrics extends OncePerRequestFilter {
+
+    public static final String READY_GAUGE = "booking.startup.ready";
+
+    public static final String FIRST_REQUEST_GAUGE = "booking.startup.first_request";
+
+    private final MeterRegistry meterRegistry;
+
+    private final AtomicBoolean firstRequestServed = new AtomicBoolean();
+
+    public StartupMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ready() {
+        this.record(READY_GAUGE, "Ready");
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return this.firstRequestServed.get() || !request.getRequestURI().startsWith("/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            if (this.firstRequestServed.compareAndSet(false, true)) {
+                this.record(FIRST_REQUEST_GAUGE, "First request served");
+            }
+        }
+    }
+
+    private void record(String name, String event) {
+        long uptime = ManagementFactory.getRuntimeMXBean().getUptime();
+        log.info("{} {} ms after JVM start", event, uptime);
+        TimeGauge.builder(name, this, TimeUnit.MILLISECONDS, metrics -> uptime).register(this.meterRegistry);
+    }
+}
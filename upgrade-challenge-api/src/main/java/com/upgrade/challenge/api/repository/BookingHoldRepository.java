@@ -0,0 +1,18 @@
+package com.upgrade.challenge.api.repository;
+
+import com.upgrade.challenge.api.entity.BookingHold;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+
+@Repository
+public interface BookingHoldRepository extends CrudRepository<BookingHold, String> {
+
+    @Modifying
+    @Query("DELETE FROM BookingHold h WHERE h.id IN :holdIds")
+    int deleteHolds(@Param("holdIds") Collection<String> holdIds);
+}
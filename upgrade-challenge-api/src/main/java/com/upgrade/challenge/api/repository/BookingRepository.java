@@ -1,9 +1,67 @@
 package com.upgrade.challenge.api.repository;
 
 import com.upgrade.challenge.api.entity.Booking;
+import com.upgrade.challenge.api.service.BookingValidator;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Exposes only what the JPA and the journal stores both implement: the CRUD methods, plus flushing, which optimistic
+ * locking needs to fail inside the service.
+ */
 @Repository
 public interface BookingRepository extends CrudRepository<Booking, Long> {
+
+    <S extends Booking> S saveAndFlush(S entity);
+
+    void flush();
+
+    /**
+     * Read-write so that it runs on the primary: the availability index and the reservation engine are loaded with it
+     * and must not miss a booking a replica has not applied yet.
+     */
+    @Transactional
+    default List<BookingStay> findOverlapping(LocalDate fromDate, LocalDate toDate) {
+        return this.findStaysOverlapping(fromDate.minusDays(BookingValidator.MAX_NIGHTS), fromDate, toDate);
+    }
+
+    @Transactional
+    @Query("SELECT new com.upgrade.challenge.api.repository.BookingStay(b.campsiteId, b.checkInDate, b.checkOutDate) "
+            + "FROM Booking b WHERE b.checkInDate >= :earliestCheckIn AND b.checkInDate < :toDate "
+            + "AND b.checkOutDate > :fromDate")
+    List<BookingStay> findStaysOverlapping(@Param("earliestCheckIn") LocalDate earliestCheckIn,
+                                           @Param("fromDate") LocalDate fromDate, @Param("toDate") LocalDate toDate);
+
+    // seeks past the previous page along idx_booking_email instead of skipping an offset
+    @Transactional(readOnly = true)
+    @Query("SELECT new com.upgrade.challenge.api.repository.BookingSummary("
+            + "b.id, b.campsiteId, b.email, b.fullName, b.checkInDate, b.checkOutDate) FROM Booking b "
+            + "WHERE b.email = :email AND b.checkInDate >= :afterCheckIn "
+            + "AND (b.checkInDate > :afterCheckIn OR b.id > :afterId) "
+            + "ORDER BY b.checkInDate, b.id")
+    List<BookingSummary> findByEmailAfter(@Param("email") String email, @Param("afterCheckIn") LocalDate afterCheckIn,
+                                          @Param("afterId") long afterId, Pageable page);
+
+    @Transactional(readOnly = true)
+    @Query("SELECT new com.upgrade.challenge.api.repository.BookingSummary("
+            + "b.id, b.campsiteId, b.email, b.fullName, b.checkInDate, b.checkOutDate) FROM Booking b "
+            + "WHERE b.checkInDate <= :lastCheckIn AND b.checkInDate >= :afterCheckIn "
+            + "AND (b.checkInDate > :afterCheckIn OR b.id > :afterId) "
+            + "ORDER BY b.checkInDate, b.id")
+    List<BookingSummary> findByCheckInAfter(@Param("afterCheckIn") LocalDate afterCheckIn,
+                                            @Param("afterId") long afterId,
+                                            @Param("lastCheckIn") LocalDate lastCheckIn, Pageable page);
+
+    @Modifying
+    @Query("DELETE FROM Booking b WHERE b.id IN :bookingIds")
+    int deleteBookings(@Param("bookingIds") Collection<Long> bookingIds);
 }
@@ -0,0 +1,18 @@
+package com.upgrade.challenge.api.repository;
+
+import lombok.Value;
+
+import java.time.LocalDate;
+
+/**
+ * Where and when a booking stays, all the availability views need of it.
+ */
+@Value
+public class BookingStay {
+
+    Long campsiteId;
+
+    LocalDate checkInDate;
+
+    LocalDate checkOutDate;
+}
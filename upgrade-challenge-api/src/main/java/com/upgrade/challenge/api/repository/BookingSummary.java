@@ -0,0 +1,24 @@
+package com.upgrade.challenge.api.repository;
+
+import lombok.Value;
+
+import java.time.LocalDate;
+
+/**
+ * The columns of a booking listed by the lookups, read without loading the entity, its version or its nights.
+ */
+@Value
+public class BookingSummary {
+
+    Long id;
+
+    Long campsiteId;
+
+    String email;
+
+    String fullName;
+
+    LocalDate checkInDate;
+
+    LocalDate checkOutDate;
+}
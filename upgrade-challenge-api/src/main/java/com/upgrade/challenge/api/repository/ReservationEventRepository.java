@@ -0,0 +1,32 @@
+package com.upgrade.challenge.api.repository;
+
+import com.upgrade.challenge.api.entity.ReservationEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface ReservationEventRepository extends CrudRepository<ReservationEvent, Long> {
+
+    /**
+     * Read-write so that it runs on the primary: a replica would hold events back for as long as it lags.
+     */
+    @Transactional
+    @Query("SELECT e FROM ReservationEvent e WHERE e.id > :afterId ORDER BY e.id")
+    List<ReservationEvent> findAfter(@Param("afterId") long afterId, Pageable pageable);
+
+    @Transactional
+    @Query("SELECT COALESCE(MAX(e.id), 0) FROM ReservationEvent e")
+    long findLastId();
+
+    @Modifying
+    @Query("DELETE FROM ReservationEvent e WHERE e.createdAt < :before")
+    int deleteCreatedBefore(@Param("before") Instant before);
+}
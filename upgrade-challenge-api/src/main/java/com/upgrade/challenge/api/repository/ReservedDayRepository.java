@@ -1,22 +1,73 @@
 package com.upgrade.challenge.api.repository;
 
 
+import com.upgrade.challenge.api.availability.Campsites;
 import com.upgrade.challenge.api.entity.ReservedDay;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.QueryHint;
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface ReservedDayRepository extends CrudRepository<ReservedDay, Long> {
 
+    /**
+     * Query cache region of the date queries. Any write to reserved_day invalidates it as a whole.
+     */
+    String RANGE_CACHE_REGION = "reserved-day-ranges";
+
+    @QueryHints({
+            @QueryHint(name = "org.hibernate.cacheable", value = "true"),
+            @QueryHint(name = "org.hibernate.cacheRegion", value = RANGE_CACHE_REGION)
+    })
     @Query("SELECT r FROM ReservedDay r WHERE r.date BETWEEN :initialDate AND :endDate")
     List<ReservedDay> findReservedDaysBetweenDates(@Param("initialDate") LocalDate initialDate, @Param("endDate") LocalDate endDate);
 
-    @Query("SELECT r FROM ReservedDay r WHERE r.date = :date")
-    Optional<ReservedDay> findByDate(@Param("date") LocalDate date);
+    @QueryHints({
+            @QueryHint(name = "org.hibernate.cacheable", value = "true"),
+            @QueryHint(name = "org.hibernate.cacheRegion", value = RANGE_CACHE_REGION)
+    })
+    @Query("SELECT r FROM ReservedDay r WHERE r.campsiteId = :campsiteId AND r.date BETWEEN :initialDate AND :endDate")
+    List<ReservedDay> findReservedDaysBetweenDates(@Param("campsiteId") Long campsiteId,
+                                                   @Param("initialDate") LocalDate initialDate, @Param("endDate") LocalDate endDate);
+
+    @QueryHints({
+            @QueryHint(name = "org.hibernate.cacheable", value = "true"),
+            @QueryHint(name = "org.hibernate.cacheRegion", value = RANGE_CACHE_REGION)
+    })
+    @Query("SELECT r FROM ReservedDay r WHERE r.campsiteId = :campsiteId AND r.date = :date")
+    Optional<ReservedDay> findByDate(@Param("campsiteId") Long campsiteId, @Param("date") LocalDate date);
+
+    /**
+     * The night on the default campsite, the only one there was before campsites were added.
+     *
+     * @deprecated use {@link #findByDate(Long, LocalDate)}
+     */
+    @Deprecated
+    @Transactional(readOnly = true)
+    default Optional<ReservedDay> findByDate(LocalDate date) {
+        return this.findByDate(Campsites.DEFAULT_ID, date);
+    }
+
+    @Modifying
+    @Query("DELETE FROM ReservedDay r WHERE r.booking.id = :bookingId")
+    int deleteBookingNights(@Param("bookingId") Long bookingId);
+
+    @Modifying
+    @Query("DELETE FROM ReservedDay r WHERE r.booking.id IN :bookingIds")
+    int deleteBookingsNights(@Param("bookingIds") Collection<Long> bookingIds);
+
+    @Modifying
+    @Query("DELETE FROM ReservedDay r WHERE r.booking.id = :bookingId AND (r.date < :keepFromDate OR r.date >= :keepToDate)")
+    int deleteBookingNightsOutside(@Param("bookingId") Long bookingId,
+                                   @Param("keepFromDate") LocalDate keepFromDate, @Param("keepToDate") LocalDate keepToDate);
 }
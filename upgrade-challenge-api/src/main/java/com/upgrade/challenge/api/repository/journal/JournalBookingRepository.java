@@ -0,0 +1,166 @@
+package com.upgrade.challenge.api.repository.journal;
+
+import com.upgrade.challenge.api.entity.Booking;
+import com.upgrade.challenge.api.journal.JournalStore;
+import com.upgrade.challenge.api.journal.JournalTransaction;
+import com.upgrade.challenge.api.repository.BookingRepository;
+import com.upgrade.challenge.api.repository.BookingStay;
+import com.upgrade.challenge.api.repository.BookingSummary;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * {@link BookingRepository} on the {@link JournalStore}, transactional like Spring Data's own implementation.
+ */
+@Transactional(readOnly = true)
+public class JournalBookingRepository implements BookingRepository {
+
+    private final JournalStore store;
+
+    public JournalBookingRepository(JournalStore store) {
+        this.store = store;
+    }
+
+    private JournalTransaction transaction() {
+        return this.store.currentTransaction();
+    }
+
+    @Override
+    public List<BookingStay> findStaysOverlapping(LocalDate earliestCheckIn, LocalDate fromDate, LocalDate toDate) {
+        return this.transaction().findBookings(booking -> !booking.getCheckInDate().isBefore(earliestCheckIn)
+                && booking.getCheckInDate().isBefore(toDate) && booking.getCheckOutDate().isAfter(fromDate))
+                .stream()
+                .map(booking -> new BookingStay(booking.getCampsiteId(), booking.getCheckInDate(),
+                        booking.getCheckOutDate()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Scans every booking: the journal store keeps no secondary index.
+     */
+    @Override
+    public List<BookingSummary> findByEmailAfter(String email, LocalDate afterCheckIn, long afterId, Pageable page) {
+        return this.findAfter(booking -> booking.getEmail().equals(email), afterCheckIn, afterId, page);
+    }
+
+    @Override
+    public List<BookingSummary> findByCheckInAfter(LocalDate afterCheckIn, long afterId, LocalDate lastCheckIn,
+                                                   Pageable page) {
+        return this.findAfter(booking -> !booking.getCheckInDate().isAfter(lastCheckIn), afterCheckIn, afterId, page);
+    }
+
+    private List<BookingSummary> findAfter(Predicate<Booking> filter, LocalDate afterCheckIn, long afterId,
+                                           Pageable page) {
+        return this.transaction().findBookings(booking -> filter.test(booking)
+                && (booking.getCheckInDate().isAfter(afterCheckIn)
+                || booking.getCheckInDate().isEqual(afterCheckIn) && booking.getId() > afterId))
+                .stream()
+                .sorted(Comparator.comparing(Booking::getCheckInDate).thenComparing(Booking::getId))
+                .limit(page.getPageSize())
+                .map(booking -> new BookingSummary(booking.getId(), booking.getCampsiteId(), booking.getEmail(),
+                        booking.getFullName(), booking.getCheckInDate(), booking.getCheckOutDate()))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    @Transactional
+    public int deleteBookings(Collection<Long> bookingIds) {
+        return this.transaction().deleteBookings(bookingIds);
+    }
+
+    @Override
+    public List<Booking> findAll() {
+        return this.transaction().findBookings(booking -> true);
+    }
+
+    @Override
+    public List<Booking> findAllById(Iterable<Long> ids) {
+        List<Booking> bookings = new ArrayList<>();
+        for (Long id : ids) {
+            this.findById(id).ifPresent(bookings::add);
+        }
+        return bookings;
+    }
+
+    @Override
+    public Optional<Booking> findById(Long id) {
+        return Optional.ofNullable(this.transaction().findBooking(id));
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        return this.findById(id).isPresent();
+    }
+
+    @Override
+    public long count() {
+        return this.transaction().countBookings();
+    }
+
+    @Override
+    @Transactional
+    public <S extends Booking> S save(S entity) {
+        return this.transaction().saveBooking(entity);
+    }
+
+    @Override
+    @Transactional
+    public <S extends Booking> List<S> saveAll(Iterable<S> entities) {
+        List<S> saved = new ArrayList<>();
+        for (S entity : entities) {
+            saved.add(this.save(entity));
+        }
+        return saved;
+    }
+
+    @Override
+    @Transactional
+    public <S extends Booking> S saveAndFlush(S entity) {
+        S saved = this.save(entity);
+        this.flush();
+        return saved;
+    }
+
+    @Override
+    @Transactional
+    public void flush() {
+        this.transaction().flush();
+    }
+
+    @Override
+    @Transactional
+    public void deleteById(Long id) {
+        this.delete(this.findById(id).orElseThrow(() -> new EmptyResultDataAccessException(
+                String.format("No %s entity with id %s exists!", Booking.class, id), 1)));
+    }
+
+    @Override
+    @Transactional
+    public void delete(Booking entity) {
+        this.transaction().deleteBooking(entity);
+    }
+
+    @Override
+    @Transactional
+    public void deleteAll(Iterable<? extends Booking> entities) {
+        for (Booking entity : entities) {
+            this.delete(entity);
+        }
+    }
+
+    @Override
+    @Transactional
+    public void deleteAll() {
+        this.deleteAll(this.findAll());
+    }
+}
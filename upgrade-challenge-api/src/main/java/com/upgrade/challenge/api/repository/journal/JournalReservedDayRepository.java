@@ -0,0 +1,146 @@
+package com.upgrade.challenge.api.repository.journal;
+
+import com.upgrade.challenge.api.entity.ReservedDay;
+import com.upgrade.challenge.api.journal.JournalStore;
+import com.upgrade.challenge.api.journal.JournalTransaction;
+import com.upgrade.challenge.api.repository.ReservedDayRepository;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * {@link ReservedDayRepository} on the {@link JournalStore}. Changes must keep the nights of every booking equal to
+ * its stay, which the booking service always does; commits that do not are refused.
+ */
+@Transactional(readOnly = true)
+public class JournalReservedDayRepository implements ReservedDayRepository {
+
+    private final JournalStore store;
+
+    public JournalReservedDayRepository(JournalStore store) {
+        this.store = store;
+    }
+
+    private JournalTransaction transaction() {
+        return this.store.currentTransaction();
+    }
+
+    @Override
+    public List<ReservedDay> findReservedDaysBetweenDates(LocalDate initialDate, LocalDate endDate) {
+        return this.transaction().findNights(null, initialDate, endDate);
+    }
+
+    @Override
+    public List<ReservedDay> findReservedDaysBetweenDates(Long campsiteId, LocalDate initialDate, LocalDate endDate) {
+        return this.transaction().findNights(campsiteId, initialDate, endDate);
+    }
+
+    @Override
+    public Optional<ReservedDay> findByDate(Long campsiteId, LocalDate date) {
+        return this.transaction().findNights(campsiteId, date, date).stream().findFirst();
+    }
+
+    @Override
+    @Transactional
+    public int deleteBookingNights(Long bookingId) {
+        return this.transaction().deleteNights(Collections.singleton(bookingId), null, null);
+    }
+
+    @Override
+    @Transactional
+    public int deleteBookingsNights(Collection<Long> bookingIds) {
+        return this.transaction().deleteNights(bookingIds, null, null);
+    }
+
+    @Override
+    @Transactional
+    public int deleteBookingNightsOutside(Long bookingId, LocalDate keepFromDate, LocalDate keepToDate) {
+        return this.transaction().deleteNights(Collections.singleton(bookingId), keepFromDate, keepToDate);
+    }
+
+    @Override
+    @Transactional
+    public <S extends ReservedDay> S save(S entity) {
+        return this.transaction().saveNight(entity);
+    }
+
+    @Override
+    @Transactional
+    public <S extends ReservedDay> Iterable<S> saveAll(Iterable<S> entities) {
+        List<S> saved = new ArrayList<>();
+        for (S entity : entities) {
+            saved.add(this.save(entity));
+        }
+        return saved;
+    }
+
+    @Override
+    public Optional<ReservedDay> findById(Long id) {
+        return this.findAll().stream().filter(night -> night.getId().equals(id)).findFirst();
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        return this.findById(id).isPresent();
+    }
+
+    @Override
+    public List<ReservedDay> findAll() {
+        return this.transaction().findNights(null, null, null);
+    }
+
+    @Override
+    public Iterable<ReservedDay> findAllById(Iterable<Long> ids) {
+        Set<Long> wanted = new HashSet<>();
+        ids.forEach(wanted::add);
+        List<ReservedDay> nights = new ArrayList<>();
+        for (ReservedDay night : this.findAll()) {
+            if (wanted.contains(night.getId())) {
+                nights.add(night);
+            }
+        }
+        return nights;
+    }
+
+    @Override
+    public long count() {
+        return this.findAll().size();
+    }
+
+    @Override
+    @Transactional
+    public void deleteById(Long id) {
+        if (this.transaction().deleteNights(night -> night.getId().equals(id)) == 0) {
+            throw new EmptyResultDataAccessException(
+                    String.format("No %s entity with id %s exists!", ReservedDay.class, id), 1);
+        }
+    }
+
+    @Override
+    @Transactional
+    public void delete(ReservedDay entity) {
+        this.transaction().deleteNights(night -> night.getId().equals(entity.getId()));
+    }
+
+    @Override
+    @Transactional
+    public void deleteAll(Iterable<? extends ReservedDay> entities) {
+        Set<Long> ids = new HashSet<>();
+        entities.forEach(entity -> ids.add(entity.getId()));
+        this.transaction().deleteNights(night -> ids.contains(night.getId()));
+    }
+
+    @Override
+    @Transactional
+    public void deleteAll() {
+        this.transaction().deleteNights(night -> true);
+    }
+}
@@ -0,0 +1,18 @@
+package com.upgrade.challenge.api.service;
+
+import lombok.Value;
+
+import java.time.LocalDate;
+
+/**
+ * A stay whose every night is free on the campsite.
+ */
+@Value
+public class AvailableStay {
+
+    long campsiteId;
+
+    LocalDate checkInDate;
+
+    LocalDate checkOutDate;
+}
@@ -0,0 +1,68 @@
+package com.upgrade.challenge.api.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.upgrade.challenge.api.datasource.ReplicaLagGuard;
+import com.upgrade.challenge.api.entity.Booking;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Detached snapshots of bookings by id, replaced once a write commits; the TTL only bounds how long a row changed
+ * on another node can be served.
+ */
+@Component
+public class BookingCache {
+
+    private final Cache<Long, Booking> cache;
+
+    private final ReplicaLagGuard replicaLagGuard;
+
+    public BookingCache(MeterRegistry meterRegistry, ReplicaLagGuard replicaLagGuard,
+                        @Value("${booking.cache.maximum-size:10000}") long maximumSize,
+                        @Value("${booking.cache.expire-after-write:10m}") Duration expireAfterWrite) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        this.replicaLagGuard = replicaLagGuard;
+        CaffeineCacheMetrics.monitor(meterRegistry, this.cache, "booking");
+    }
+
+    Optional<Booking> get(Long bookingId, Function<Long, Optional<Booking>> loader) {
+        Booking booking = this.cache.get(bookingId, id -> this.replicaLagGuard.read(id, loader)
+                .map(BookingCache::snapshot)
+                .orElse(null));
+        return Optional.ofNullable(booking).map(BookingCache::snapshot);
+    }
+
+    // so an older row read by a concurrent load cannot win
+    void put(Booking booking) {
+        this.replicaLagGuard.written(booking.getId());
+        this.cache.put(booking.getId(), snapshot(booking));
+    }
+
+    public void invalidate(Long bookingId) {
+        this.replicaLagGuard.written(bookingId);
+        this.cache.invalidate(bookingId);
+    }
+
+    private static Booking snapshot(Booking booking) {
+        return Booking.builder()
+                .id(booking.getId())
+                .campsiteId(booking.getCampsiteId())
+                .email(booking.getEmail())
+                .fullName(booking.getFullName())
+                .checkInDate(booking.getCheckInDate())
+                .checkOutDate(booking.getCheckOutDate())
+                .version(booking.getVersion())
+                .build();
+    }
+}
@@ -0,0 +1,18 @@
+package com.upgrade.challenge.api.service;
+
+import com.upgrade.challenge.api.repository.BookingSummary;
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * A page of a booking lookup. The next page is asked for with {@link #getNextCursor()}, which is null after the
+ * last one.
+ */
+@Value
+public class BookingListing {
+
+    List<BookingSummary> bookings;
+
+    String nextCursor;
+}
@@ -0,0 +1,31 @@
+package com.upgrade.challenge.api.service;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Outcome of one item of a bulk booking or cancellation.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class BookingResult {
+
+    public enum Status {
+        OK, REJECTED
+    }
+
+    private final Status status;
+
+    private final Long bookingId;
+
+    private final String message;
+
+    static BookingResult ok(Long bookingId) {
+        return new BookingResult(Status.OK, bookingId, null);
+    }
+
+    static BookingResult rejected(Long bookingId, String message) {
+        return new BookingResult(Status.REJECTED, bookingId, message);
+    }
+}
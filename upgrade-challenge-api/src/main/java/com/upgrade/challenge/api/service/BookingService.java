@@ -1,16 +1,78 @@
 package com.upgrade.challenge.api.service;
 
+import com.upgrade.challenge.api.availability.AvailableRangeVisitor;
+import com.upgrade.challenge.api.availability.Campsites;
 import com.upgrade.challenge.api.entity.Booking;
+import com.upgrade.challenge.api.hold.Hold;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
 import java.time.LocalDate;
+import java.util.List;
 import java.util.Set;
 
 public interface BookingService {
 
-    Set<LocalDate> findAvailableDates(LocalDate initialDate, LocalDate endDate);
+    default Set<LocalDate> findAvailableDates(LocalDate initialDate, LocalDate endDate) {
+        return this.findAvailableDates(Campsites.DEFAULT_ID, initialDate, endDate);
+    }
+
+    Set<LocalDate> findAvailableDates(Long campsiteId, LocalDate initialDate, LocalDate endDate);
+
+    void findAvailableRanges(Long campsiteId, LocalDate initialDate, LocalDate endDate, AvailableRangeVisitor visitor);
+
+    SseEmitter subscribeAvailability(Long campsiteId, LocalDate initialDate, LocalDate endDate) throws IOException;
+
+    List<Long> findAvailableCampsites(LocalDate checkIn, LocalDate checkOut);
+
+    /**
+     * On every campsite when campsiteId is null.
+     */
+    Page<AvailableStay> findAvailableStays(Long campsiteId, int nights, LocalDate initialDate, LocalDate endDate,
+                                           Pageable pageable);
+
+    /**
+     * Served from {@link BookingCache}; only a miss reads the database.
+     */
+    Booking findBooking(Long bookingId);
+
+    BookingListing findBookingsByEmail(String email, String cursor, int size);
+
+    BookingListing findBookingsByCheckIn(LocalDate initialDate, LocalDate endDate, String cursor, int size);
 
     Booking book(Booking booking);
 
+    /**
+     * Claims the nights of the booking and queues it for persistence, without waiting for the database.
+     */
+    PendingBooking bookAsync(Booking booking);
+
+    PendingBooking findPendingBooking(String token);
+
+    Hold hold(Long campsiteId, LocalDate checkIn, LocalDate checkOut);
+
+    Hold findHold(String holdId);
+
+    void releaseHold(String holdId);
+
+    /**
+     * The campsite and dates come from the hold, which is kept until its expiry if the booking fails.
+     */
+    Booking bookHold(String holdId, Booking booking);
+
+    /**
+     * Rejects invalid or colliding items without failing the others, in one transaction. A collision the database
+     * only finds on commit, such as with another node, fails the whole batch.
+     */
+    List<BookingResult> bookAll(List<Booking> bookings);
+
+    List<BookingResult> cancelAll(List<Long> bookingIds);
+
+    /**
+     * Applies the non-null fields; a version set must match the stored one.
+     */
     Booking update(Booking booking);
 
     void cancel(Long bookingId);
@@ -1,22 +1,57 @@
 package com.upgrade.challenge.api.service;
 
+import com.upgrade.challenge.api.availability.AvailabilityFeed;
+import com.upgrade.challenge.api.availability.AvailabilityIndex;
+import com.upgrade.challenge.api.availability.AvailableRangeVisitor;
+import com.upgrade.challenge.api.availability.Campsites;
+import com.upgrade.challenge.api.availability.ReservationEngine;
+import com.upgrade.challenge.api.cluster.ClusterSync;
+import com.upgrade.challenge.api.datasource.ReplicaLagGuard;
 import com.upgrade.challenge.api.entity.Booking;
 import com.upgrade.challenge.api.entity.ReservedDay;
 import com.upgrade.challenge.api.exceprions.BookingAlreadyFinishedException;
+import com.upgrade.challenge.api.exceprions.BookingDateUnavailableException;
+import com.upgrade.challenge.api.exceprions.BookingOverloadedException;
+import com.upgrade.challenge.api.exceprions.BookingValidationException;
+import com.upgrade.challenge.api.exceprions.BookingVersionMismatchException;
+import com.upgrade.challenge.api.exceprions.ErrorCode;
 import com.upgrade.challenge.api.exceprions.InvalidDateIntervalException;
+import com.upgrade.challenge.api.hold.Hold;
+import com.upgrade.challenge.api.hold.HoldManager;
 import com.upgrade.challenge.api.repository.BookingRepository;
+import com.upgrade.challenge.api.repository.BookingSummary;
 import com.upgrade.challenge.api.repository.ReservedDayRepository;
+import io.micrometer.core.annotation.Timed;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 @Service
 public class BookingServiceImplImpl implements BookingService {
@@ -25,48 +60,87 @@ public class BookingServiceImplImpl implements BookingService {
 
     private ReservedDayRepository reservedDayRepository;
 
-    public BookingServiceImplImpl(BookingRepository bookingRepository, ReservedDayRepository reservedDayRepository) {
+    private AvailabilityIndex availabilityIndex;
+
+    private ReservationEngine reservationEngine;
+
+    private Campsites campsites;
+
+    private BookingValidator bookingValidator;
+
+    private BookingWriteBehind bookingWriteBehind;
+
+    private BookingCache bookingCache;
+
+    private ReplicaLagGuard replicaLagGuard;
+
+    private AvailabilityFeed availabilityFeed;
+
+    private ObjectProvider<ClusterSync> clusterSync;
+
+    private HoldManager holdManager;
+
+    private int maxBulkSize;
+
+    private int maxListingSize;
+
+    public BookingServiceImplImpl(BookingRepository bookingRepository, ReservedDayRepository reservedDayRepository,
+                                  AvailabilityIndex availabilityIndex, ReservationEngine reservationEngine,
+                                  Campsites campsites, BookingValidator bookingValidator,
+                                  BookingWriteBehind bookingWriteBehind,
+                                  BookingCache bookingCache, ReplicaLagGuard replicaLagGuard,
+                                  AvailabilityFeed availabilityFeed,
+                                  ObjectProvider<ClusterSync> clusterSync, HoldManager holdManager,
+                                  @Value("${booking.bulk.max-size:500}") int maxBulkSize,
+                                  @Value("${booking.listing.max-size:100}") int maxListingSize) {
         this.bookingRepository = bookingRepository;
         this.reservedDayRepository = reservedDayRepository;
+        this.availabilityIndex = availabilityIndex;
+        this.reservationEngine = reservationEngine;
+        this.campsites = campsites;
+        this.bookingValidator = bookingValidator;
+        this.bookingWriteBehind = bookingWriteBehind;
+        this.bookingCache = bookingCache;
+        this.replicaLagGuard = replicaLagGuard;
+        this.availabilityFeed = availabilityFeed;
+        this.clusterSync = clusterSync;
+        this.holdManager = holdManager;
+        this.maxBulkSize = maxBulkSize;
+        this.maxListingSize = maxListingSize;
     }
 
-    private void validateDateRange(LocalDate checkIn, LocalDate checkOut) {
-        if (checkIn == null || checkOut == null) {
-            throw new IllegalArgumentException("Booking dates are required.");
+    private static void throwIfInvalid(ValidationError error) {
+        if (error != null) {
+            throw error.toException();
         }
+    }
 
-        if (!checkIn.isBefore(checkOut)) {
-            throw new InvalidDateIntervalException("Check In date should be before Check Out");
-        }
+    private void validateCampsite(Long campsiteId) {
+        throwIfInvalid(this.bookingValidator.checkCampsite(campsiteId));
+    }
 
-        if (ChronoUnit.DAYS.between(checkIn, checkOut) > 3) {
-            throw new InvalidDateIntervalException("The campsite can be reserved for max 3 days.");
-        }
+    private void validateDateRange(LocalDate checkIn, LocalDate checkOut) {
+        throwIfInvalid(this.bookingValidator.checkDateRange(checkIn, checkOut));
+    }
 
-        long daysBetweenNowAndCheckIn = ChronoUnit.DAYS.between(LocalDate.now(), checkIn);
-        if (daysBetweenNowAndCheckIn < 1 || daysBetweenNowAndCheckIn > 30) {
-            throw new InvalidDateIntervalException("The campsite can be reserved minimum 1 day ahead of arrival and up to 1 month in advance.");
+    private void validateBulkSize(int size) {
+        if (size > this.maxBulkSize) {
+            throw new BookingValidationException(ErrorCode.INVALID_REQUEST,
+                    "A bulk request is limited to " + this.maxBulkSize + " reservations.");
         }
     }
 
     private void validateBooking(Booking booking) {
-        this.validateDateRange(booking.getCheckInDate(), booking.getCheckOutDate());
-
-        if (booking.getEmail() == null || booking.getEmail().trim().isEmpty()) {
-            throw new IllegalArgumentException("The e-mail is required to complete the reservation.");
-        }
-
-        if (booking.getFullName() == null || booking.getFullName().trim().isEmpty()) {
-            throw new IllegalArgumentException("The full name is required to complete the reservation.");
-        }
+        throwIfInvalid(this.bookingValidator.checkBooking(booking));
     }
 
     private Booking getValidBookingById(Long bookingId) {
         if (bookingId == null) {
-            throw new IllegalArgumentException("An reservation Id is required to cancel!");
+            throw new BookingValidationException(ErrorCode.INVALID_REQUEST, "An reservation Id is required to cancel!");
         }
         Optional<Booking> booking = bookingRepository.findById(bookingId);
-        Booking elem = booking.orElseThrow(() -> new IllegalArgumentException("Invalid reservation Id!"));
+        Booking elem = booking.orElseThrow(() -> new BookingValidationException(ErrorCode.BOOKING_NOT_FOUND,
+                "Invalid reservation Id!"));
         if (elem.getCheckOutDate().isBefore(LocalDate.now())) {
             throw new BookingAlreadyFinishedException();
         }
@@ -74,46 +148,483 @@ public class BookingServiceImplImpl implements BookingService {
         return elem;
     }
 
-    @Override
-    public Set<LocalDate> findAvailableDates(LocalDate initialDate, LocalDate endDate) {
-        initialDate = initialDate == null || initialDate.isBefore(LocalDate.now()) ? LocalDate.now() : initialDate;
-        endDate = endDate == null ? LocalDate.now().plusMonths(1) : endDate;
-        long daysBetween = ChronoUnit.DAYS.between(initialDate, endDate) + 1;
-        Set<LocalDate> availableDates = Stream.iterate(initialDate, date -> date.plusDays(1))
-                .limit(daysBetween < 0? 0 : daysBetween)
-                .collect(Collectors.toSet());
+    private void afterCompletion(Runnable onCommit, Runnable onRollback) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            onCommit.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == TransactionSynchronization.STATUS_COMMITTED) {
+                    onCommit.run();
+                } else {
+                    onRollback.run();
+                }
+            }
+        });
+    }
+
+    private List<ReservedDay> reservedDays(Booking booking, LocalDate keepCheckIn, LocalDate keepCheckOut) {
+        List<ReservedDay> reservedDays = new ArrayList<>();
+        for (LocalDate date = booking.getCheckInDate(); date.isBefore(booking.getCheckOutDate()); date = date.plusDays(1)) {
+            if (keepCheckIn != null && !date.isBefore(keepCheckIn) && date.isBefore(keepCheckOut))
+                continue;
 
-        if (availableDates.isEmpty()) {
-            return availableDates;
+            reservedDays.add(ReservedDay.builder()
+                    .campsiteId(booking.getCampsiteId())
+                    .date(date)
+                    .booking(booking).build());
         }
+        return reservedDays;
+    }
+
+    private long countNightsOutside(long fromDay, long toDay, long keepFromDay, long keepToDay) {
+        long overlap = Math.max(0, Math.min(toDay, keepToDay) - Math.max(fromDay, keepFromDay));
+        return toDay - fromDay - overlap;
+    }
+
+    private void broadcast(Consumer<ClusterSync> change) {
+        this.clusterSync.ifAvailable(change);
+    }
+
+    private void afterCommit(Runnable action) {
+        this.afterCompletion(action, () -> {
+        });
+    }
 
-        List<ReservedDay> reservedDays = this.reservedDayRepository.findReservedDaysBetweenDates(initialDate, endDate);
-        for (ReservedDay reservedDay : reservedDays) {
-            availableDates.remove(reservedDay.getDate());
+    private LocalDate normalizeInitialDate(LocalDate initialDate) {
+        return initialDate == null || initialDate.isBefore(LocalDate.now()) ? LocalDate.now() : initialDate;
+    }
+
+    private LocalDate normalizeEndDate(LocalDate endDate) {
+        return endDate == null ? LocalDate.now().plusMonths(1) : endDate;
+    }
+
+    @Override
+    @Timed("booking.service")
+    public Set<LocalDate> findAvailableDates(Long campsiteId, LocalDate initialDate, LocalDate endDate) {
+        this.validateCampsite(campsiteId);
+        long firstDay = this.normalizeInitialDate(initialDate).toEpochDay();
+        long lastDay = this.normalizeEndDate(endDate).toEpochDay();
+        Set<LocalDate> availableDates = new LinkedHashSet<>();
+        for (long day = firstDay; day <= lastDay; day++) {
+            if (!this.availabilityIndex.isReserved(campsiteId, day)) {
+                availableDates.add(LocalDate.ofEpochDay(day));
+            }
         }
 
         return availableDates;
     }
 
     @Override
+    @Timed("booking.service")
+    public void findAvailableRanges(Long campsiteId, LocalDate initialDate, LocalDate endDate, AvailableRangeVisitor visitor) {
+        this.validateCampsite(campsiteId);
+        long firstDay = this.normalizeInitialDate(initialDate).toEpochDay();
+        long lastDay = this.normalizeEndDate(endDate).toEpochDay();
+
+        visitor.start(firstDay, lastDay);
+        this.availabilityIndex.forEachAvailableRange(campsiteId, firstDay, lastDay, visitor);
+    }
+
+    @Override
+    public SseEmitter subscribeAvailability(Long campsiteId, LocalDate initialDate, LocalDate endDate) throws IOException {
+        this.validateCampsite(campsiteId);
+        long firstDay = this.normalizeInitialDate(initialDate).toEpochDay();
+        long lastDay = this.normalizeEndDate(endDate).toEpochDay();
+        if (lastDay < firstDay) {
+            throw new InvalidDateIntervalException("The start date should not be after the end date.");
+        }
+
+        return this.availabilityFeed.subscribe(campsiteId, firstDay, lastDay);
+    }
+
+    @Override
+    @Timed("booking.service")
+    public List<Long> findAvailableCampsites(LocalDate checkIn, LocalDate checkOut) {
+        this.validateDateRange(checkIn, checkOut);
+
+        long fromDay = checkIn.toEpochDay();
+        long toDay = checkOut.toEpochDay();
+        List<Long> availableCampsites = new ArrayList<>();
+        for (long campsiteId = 1; campsiteId <= this.campsites.count(); campsiteId++) {
+            if (this.availabilityIndex.isAvailable(campsiteId, fromDay, toDay)) {
+                availableCampsites.add(campsiteId);
+            }
+        }
+
+        return availableCampsites;
+    }
+
+    @Override
+    @Timed("booking.service")
+    public Page<AvailableStay> findAvailableStays(Long campsiteId, int nights, LocalDate initialDate, LocalDate endDate,
+                                                  Pageable pageable) {
+        throwIfInvalid(this.bookingValidator.checkStayLength(nights));
+        if (campsiteId != null) {
+            this.validateCampsite(campsiteId);
+        }
+        if (initialDate != null && endDate != null && endDate.isBefore(initialDate)) {
+            throw new InvalidDateIntervalException("The start date should not be after the end date.");
+        }
+
+        // check-ins outside of the booking window are never valid, so the window bounds the search
+        LocalDate today = LocalDate.now();
+        long firstDay = today.plusDays(BookingValidator.MIN_DAYS_AHEAD).toEpochDay();
+        long lastDay = today.plusDays(BookingValidator.MAX_DAYS_AHEAD).toEpochDay();
+        if (initialDate != null) {
+            firstDay = Math.max(firstDay, initialDate.toEpochDay());
+        }
+        if (endDate != null) {
+            lastDay = Math.min(lastDay, endDate.toEpochDay());
+        }
+        if (lastDay < firstDay) {
+            return Page.empty(pageable);
+        }
+
+        int days = (int) (lastDay - firstDay + 1);
+        long fromCampsite = campsiteId != null ? campsiteId : 1;
+        long toCampsite = campsiteId != null ? campsiteId : this.campsites.count();
+        long[] starts = new long[(int) (toCampsite - fromCampsite + 1)];
+        int[] startsPerDay = new int[days];
+        long total = 0;
+        for (int i = 0; i < starts.length; i++) {
+            starts[i] = this.availabilityIndex.availableStarts(fromCampsite + i, firstDay, days, nights);
+            for (long mask = starts[i]; mask != 0; mask &= mask - 1) {
+                startsPerDay[Long.numberOfTrailingZeros(mask)]++;
+            }
+            total += Long.bitCount(starts[i]);
+        }
+
+        // whole days before the page are skipped by their count
+        List<AvailableStay> stays = new ArrayList<>();
+        long skip = pageable.getOffset();
+        for (int offset = 0; offset < days && stays.size() < pageable.getPageSize(); offset++) {
+            if (skip >= startsPerDay[offset]) {
+                skip -= startsPerDay[offset];
+                continue;
+            }
+            LocalDate checkIn = LocalDate.ofEpochDay(firstDay + offset);
+            for (int i = 0; i < starts.length && stays.size() < pageable.getPageSize(); i++) {
+                if ((starts[i] & 1L << offset) == 0) {
+                    continue;
+                }
+                if (skip > 0) {
+                    skip--;
+                    continue;
+                }
+                stays.add(new AvailableStay(fromCampsite + i, checkIn, checkIn.plusDays(nights)));
+            }
+        }
+        return new PageImpl<>(stays, pageable, total);
+    }
+
+    private ValidationError validateNewBooking(Booking booking) {
+        if (booking != null && booking.getCampsiteId() == null) {
+            booking.setCampsiteId(Campsites.DEFAULT_ID);
+        }
+        return this.bookingValidator.checkBooking(booking);
+    }
+
+    private long tryClaim(Booking booking) {
+        return this.reservationEngine.claim(booking.getCampsiteId(),
+                booking.getCheckInDate().toEpochDay(), booking.getCheckOutDate().toEpochDay());
+    }
+
+    private long claim(Booking booking) {
+        throwIfInvalid(this.validateNewBooking(booking));
+
+        long token = this.tryClaim(booking);
+        if (token == ReservationEngine.FREE) {
+            throw new BookingDateUnavailableException();
+        }
+        return token;
+    }
+
+    @Override
+    @Timed("booking.service")
     @Transactional
     public Booking book(Booking booking) {
+        long token = this.claim(booking);
+
+        long campsiteId = booking.getCampsiteId();
+        long checkIn = booking.getCheckInDate().toEpochDay();
+        long checkOut = booking.getCheckOutDate().toEpochDay();
+        this.afterCompletion(
+                () -> {
+                    this.availabilityIndex.reserve(campsiteId, checkIn, checkOut);
+                    this.bookingCache.put(booking);
+                },
+                () -> this.reservationEngine.release(campsiteId, checkIn, checkOut, 0, 0, token));
+
+        Booking savedBooking = bookingRepository.save(booking);
+        reservedDayRepository.saveAll(this.reservedDays(booking, null, null));
+        this.broadcast(sync -> sync.reserved(savedBooking));
+
+        return savedBooking;
+    }
 
-        this.validateBooking(booking);
+    @Override
+    @Timed("booking.service")
+    public PendingBooking bookAsync(Booking booking) {
+        long token = this.claim(booking);
+
+        PendingBooking pendingBooking = new PendingBooking(UUID.randomUUID().toString(), booking,
+                this.reservedDays(booking, null, null), token);
+        if (!this.bookingWriteBehind.submit(pendingBooking)) {
+            this.reservationEngine.release(booking.getCampsiteId(),
+                    booking.getCheckInDate().toEpochDay(), booking.getCheckOutDate().toEpochDay(), 0, 0, token);
+            throw new BookingOverloadedException("Too many pending reservations, please try again later.");
+        }
+        return pendingBooking;
+    }
 
-        for (LocalDate date = booking.getCheckInDate(); date.isBefore(booking.getCheckOutDate()); date = date.plusDays(1)) {
-            reservedDayRepository.save(ReservedDay.builder()
-                    .date(date).build());
+    @Override
+    @Timed("booking.service")
+    @Transactional
+    public List<BookingResult> bookAll(List<Booking> bookings) {
+        this.validateBulkSize(bookings.size());
+
+        BookingResult[] results = new BookingResult[bookings.size()];
+        List<Booking> accepted = new ArrayList<>();
+        List<Long> tokens = new ArrayList<>();
+        List<ReservedDay> reservedDays = new ArrayList<>();
+        try {
+            for (int i = 0; i < bookings.size(); i++) {
+                Booking booking = bookings.get(i);
+                ValidationError error = this.validateNewBooking(booking);
+                if (error != null) {
+                    results[i] = BookingResult.rejected(null, error.getMessage());
+                    continue;
+                }
+                long token = this.tryClaim(booking);
+                if (token == ReservationEngine.FREE) {
+                    results[i] = BookingResult.rejected(null, BookingDateUnavailableException.MESSAGE);
+                    continue;
+                }
+                tokens.add(token);
+                accepted.add(booking);
+                reservedDays.addAll(this.reservedDays(booking, null, null));
+            }
+        } catch (RuntimeException ex) {
+            // the transaction hooks are not registered yet, so the nights claimed so far are given back here
+            this.releaseClaims(accepted, tokens);
+            throw ex;
+        }
+
+        this.afterCompletion(
+                () -> accepted.forEach(booking -> {
+                    this.availabilityIndex.reserve(booking.getCampsiteId(),
+                            booking.getCheckInDate().toEpochDay(), booking.getCheckOutDate().toEpochDay());
+                    this.bookingCache.put(booking);
+                }),
+                () -> this.releaseClaims(accepted, tokens));
+
+        bookingRepository.saveAll(accepted);
+        reservedDayRepository.saveAll(reservedDays);
+        this.broadcast(sync -> accepted.forEach(sync::reserved));
+
+        for (int i = 0, j = 0; i < results.length; i++) {
+            if (results[i] == null) {
+                results[i] = BookingResult.ok(accepted.get(j++).getId());
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    private void releaseClaims(List<Booking> bookings, List<Long> tokens) {
+        for (int i = 0; i < bookings.size(); i++) {
+            Booking booking = bookings.get(i);
+            this.reservationEngine.release(booking.getCampsiteId(), booking.getCheckInDate().toEpochDay(),
+                    booking.getCheckOutDate().toEpochDay(), 0, 0, tokens.get(i));
+        }
+    }
+
+    @Override
+    @Timed("booking.service")
+    @Transactional
+    public List<BookingResult> cancelAll(List<Long> bookingIds) {
+        this.validateBulkSize(bookingIds.size());
+
+        Map<Long, Booking> bookings = new HashMap<>();
+        bookingRepository.findAllById(bookingIds.stream().filter(Objects::nonNull).collect(Collectors.toSet()))
+                .forEach(booking -> bookings.put(booking.getId(), booking));
+
+        BookingResult[] results = new BookingResult[bookingIds.size()];
+        Map<Long, Booking> cancelled = new LinkedHashMap<>();
+        long nights = 0;
+        for (int i = 0; i < results.length; i++) {
+            Long bookingId = bookingIds.get(i);
+            Booking booking = bookingId == null ? null : bookings.get(bookingId);
+            if (booking == null) {
+                results[i] = BookingResult.rejected(bookingId, "Invalid reservation Id!");
+            } else if (cancelled.containsKey(bookingId)) {
+                results[i] = BookingResult.rejected(bookingId, "Duplicate reservation Id!");
+            } else if (booking.getCheckOutDate().isBefore(LocalDate.now())) {
+                results[i] = BookingResult.rejected(bookingId, new BookingAlreadyFinishedException().getMessage());
+            } else {
+                cancelled.put(bookingId, booking);
+                nights += ChronoUnit.DAYS.between(booking.getCheckInDate(), booking.getCheckOutDate());
+                results[i] = BookingResult.ok(bookingId);
+            }
+        }
+
+        if (!cancelled.isEmpty()) {
+            if (reservedDayRepository.deleteBookingsNights(cancelled.keySet()) != nights) {
+                throw new IllegalStateException("The reserved nights of bookings " + cancelled.keySet()
+                        + " do not match their dates");
+            }
+            bookingRepository.deleteBookings(cancelled.keySet());
+            this.broadcast(sync -> cancelled.values().forEach(sync::released));
+
+            this.afterCommit(() -> cancelled.values().forEach(booking -> {
+                long checkIn = booking.getCheckInDate().toEpochDay();
+                long checkOut = booking.getCheckOutDate().toEpochDay();
+                this.availabilityIndex.release(booking.getCampsiteId(), checkIn, checkOut);
+                this.reservationEngine.release(booking.getCampsiteId(), checkIn, checkOut);
+                this.bookingCache.invalidate(booking.getId());
+            }));
+        }
+        return Arrays.asList(results);
+    }
+
+    @Override
+    @Timed("booking.service")
+    public Booking findBooking(Long bookingId) {
+        if (bookingId == null) {
+            throw new BookingValidationException(ErrorCode.INVALID_REQUEST, "A reservation Id is required!");
+        }
+        return this.bookingCache.get(bookingId, bookingRepository::findById)
+                .orElseThrow(() -> new BookingValidationException(ErrorCode.BOOKING_NOT_FOUND, "Invalid reservation Id!"));
+    }
+
+    @Override
+    @Timed("booking.service")
+    public BookingListing findBookingsByEmail(String email, String cursor, int size) {
+        if (email == null || email.trim().isEmpty()) {
+            throw new BookingValidationException(ErrorCode.INVALID_REQUEST, "An e-mail is required!");
+        }
+        this.validateListingSize(size);
+
+        // every booking checks in after the epoch, so the first page seeks from there
+        ListingCursor after = cursor != null ? ListingCursor.parse(cursor) : new ListingCursor(LocalDate.EPOCH, 0);
+        // the listings follow writes the guard cannot key, possibly made on another node
+        return listing(this.replicaLagGuard.onPrimary(() -> bookingRepository.findByEmailAfter(email.trim(),
+                after.getCheckInDate(), after.getId(), PageRequest.of(0, size + 1))), size);
+    }
+
+    @Override
+    @Timed("booking.service")
+    public BookingListing findBookingsByCheckIn(LocalDate initialDate, LocalDate endDate, String cursor, int size) {
+        if (initialDate == null || endDate == null) {
+            throw new BookingValidationException(ErrorCode.INVALID_REQUEST, "A start and an end date are required!");
+        }
+        if (endDate.isBefore(initialDate)) {
+            throw new InvalidDateIntervalException("The start date should not be after the end date.");
         }
+        this.validateListingSize(size);
 
-        return bookingRepository.save(booking);
+        ListingCursor after = cursor != null ? ListingCursor.parse(cursor) : null;
+        if (after == null || after.getCheckInDate().isBefore(initialDate)) {
+            after = new ListingCursor(initialDate, 0);
+        }
+        ListingCursor from = after;
+        return listing(this.replicaLagGuard.onPrimary(() -> bookingRepository.findByCheckInAfter(
+                from.getCheckInDate(), from.getId(), endDate, PageRequest.of(0, size + 1))), size);
+    }
+
+    private void validateListingSize(int size) {
+        if (size < 1 || size > this.maxListingSize) {
+            throw new BookingValidationException(ErrorCode.INVALID_REQUEST,
+                    "A page holds 1 to " + this.maxListingSize + " reservations.");
+        }
+    }
+
+    private static BookingListing listing(List<BookingSummary> bookings, int size) {
+        if (bookings.size() <= size) {
+            return new BookingListing(bookings, null);
+        }
+        List<BookingSummary> page = new ArrayList<>(bookings.subList(0, size));
+        return new BookingListing(page, ListingCursor.after(page.get(size - 1)).encode());
     }
 
     @Override
+    public PendingBooking findPendingBooking(String token) {
+        return this.bookingWriteBehind.find(token)
+                .orElseThrow(() -> new BookingValidationException(ErrorCode.BOOKING_NOT_FOUND, "Invalid reservation token!"));
+    }
+
+    @Override
+    @Timed("booking.service")
+    public Hold hold(Long campsiteId, LocalDate checkIn, LocalDate checkOut) {
+        if (campsiteId == null) {
+            campsiteId = Campsites.DEFAULT_ID;
+        }
+        this.validateDateRange(checkIn, checkOut);
+        this.validateCampsite(campsiteId);
+
+        return this.holdManager.place(campsiteId, checkIn, checkOut);
+    }
+
+    @Override
+    public Hold findHold(String holdId) {
+        return this.holdManager.find(holdId)
+                .orElseThrow(() -> new BookingValidationException(ErrorCode.HOLD_NOT_FOUND, "Invalid hold Id!"));
+    }
+
+    @Override
+    public void releaseHold(String holdId) {
+        if (!this.holdManager.release(holdId)) {
+            throw new BookingValidationException(ErrorCode.HOLD_NOT_FOUND, "Invalid hold Id!");
+        }
+    }
+
+    // the nights stay claimed under the hold's token, which the booking takes over
+    @Override
+    @Timed("booking.service")
+    @Transactional
+    public Booking bookHold(String holdId, Booking booking) {
+        Hold hold = this.holdManager.take(holdId)
+                .orElseThrow(() -> new BookingValidationException(ErrorCode.HOLD_NOT_FOUND, "Invalid hold Id!"));
+        booking.setCampsiteId(hold.getCampsiteId());
+        booking.setCheckInDate(hold.getCheckInDate());
+        booking.setCheckOutDate(hold.getCheckOutDate());
+
+        ValidationError error = this.bookingValidator.checkBooking(booking);
+        if (error != null) {
+            this.holdManager.restore(hold);
+            throw error.toException();
+        }
+
+        this.afterCompletion(
+                () -> {
+                    this.bookingCache.put(booking);
+                    this.holdManager.converted(hold);
+                },
+                () -> this.holdManager.restore(hold));
+
+        Booking savedBooking = bookingRepository.save(booking);
+        reservedDayRepository.saveAll(this.reservedDays(booking, null, null));
+        this.broadcast(sync -> sync.reserved(savedBooking));
+
+        return savedBooking;
+    }
+
+    @Override
+    @Timed("booking.service")
     @Transactional
     public Booking update(Booking booking) {
         Booking currentBooking = this.getValidBookingById(booking.getId());
 
+        if (booking.getVersion() != null && !booking.getVersion().equals(currentBooking.getVersion())) {
+            throw new BookingVersionMismatchException();
+        }
+
+        if (booking.getCampsiteId() != null && !booking.getCampsiteId().equals(currentBooking.getCampsiteId())) {
+            throw new BookingValidationException(ErrorCode.INVALID_REQUEST, "The campsite of a reservation cannot be changed.");
+        }
+
         if (booking.getEmail() != null) {
             currentBooking.setEmail(booking.getEmail());
         }
@@ -133,44 +644,66 @@ public class BookingServiceImplImpl implements BookingService {
 
             this.validateBooking(currentBooking);
 
-            Optional<ReservedDay> reservedDay;
-            ReservedDay reserved;
-            for (LocalDate date = currentCheckIn; date.isBefore(currentCheckOut); date = date.plusDays(1)) {
-                if (!date.isBefore(currentBooking.getCheckInDate()) && date.isBefore(currentBooking.getCheckOutDate()))
-                    continue;
-
-                reservedDay = reservedDayRepository.findByDate(date);
-                reserved = reservedDay.orElseThrow(() -> new IllegalArgumentException("Invalid Date"));
-                reservedDayRepository.delete(reserved);
+            long campsiteId = currentBooking.getCampsiteId();
+            long oldCheckIn = currentCheckIn.toEpochDay();
+            long oldCheckOut = currentCheckOut.toEpochDay();
+            long newCheckIn = currentBooking.getCheckInDate().toEpochDay();
+            long newCheckOut = currentBooking.getCheckOutDate().toEpochDay();
+            long token = this.reservationEngine.newToken();
+            if (!this.reservationEngine.claim(campsiteId, newCheckIn, newCheckOut, oldCheckIn, oldCheckOut, token)) {
+                throw new BookingDateUnavailableException();
             }
-
-            for (LocalDate date = currentBooking.getCheckInDate(); date.isBefore(currentBooking.getCheckOutDate()); date = date.plusDays(1)) {
-                if (!date.isBefore(currentCheckIn) && date.isBefore(currentCheckOut))
-                    continue;
-
-                reservedDayRepository.save(ReservedDay.builder()
-                        .date(date).build());
+            this.afterCompletion(
+                    () -> {
+                        this.availabilityIndex.move(campsiteId, oldCheckIn, oldCheckOut, newCheckIn, newCheckOut);
+                        this.reservationEngine.move(campsiteId, oldCheckIn, oldCheckOut, newCheckIn, newCheckOut);
+                    },
+                    () -> this.reservationEngine.release(campsiteId, newCheckIn, newCheckOut, oldCheckIn, oldCheckOut, token));
+
+            // the versioned update locks the booking row first, so a concurrent change of the same booking waits here
+            // and then fails on the version instead of on its nights
+            bookingRepository.saveAndFlush(currentBooking);
+
+            long releasedNights = this.countNightsOutside(oldCheckIn, oldCheckOut, newCheckIn, newCheckOut);
+            if (releasedNights > 0 && reservedDayRepository.deleteBookingNightsOutside(currentBooking.getId(),
+                    currentBooking.getCheckInDate(), currentBooking.getCheckOutDate()) != releasedNights) {
+                throw new IllegalStateException("The reserved nights of booking " + currentBooking.getId()
+                        + " do not match its dates");
             }
+
+            reservedDayRepository.saveAll(this.reservedDays(currentBooking, currentCheckIn, currentCheckOut));
+            this.broadcast(sync -> sync.moved(currentBooking, currentCheckIn, currentCheckOut));
         } else {
             this.validateBooking(currentBooking);
+            this.broadcast(sync -> sync.changed(currentBooking));
         }
+        this.afterCommit(() -> this.bookingCache.put(currentBooking));
 
         return bookingRepository.save(currentBooking);
     }
 
     @Override
+    @Timed("booking.service")
     @Transactional(propagation = Propagation.REQUIRED)
     public void cancel(Long bookingId) {
         Booking booking = this.getValidBookingById(bookingId);
 
-        Optional<ReservedDay> reservedDay;
-        ReservedDay reserved;
-        for (LocalDate date = booking.getCheckInDate(); date.isBefore(booking.getCheckOutDate()); date = date.plusDays(1)) {
-            reservedDay = reservedDayRepository.findByDate(date);
-            reserved = reservedDay.orElseThrow(() -> new IllegalArgumentException("Invalid Date"));
-            reservedDayRepository.delete(reserved);
+        long nights = ChronoUnit.DAYS.between(booking.getCheckInDate(), booking.getCheckOutDate());
+        if (reservedDayRepository.deleteBookingNights(booking.getId()) != nights) {
+            throw new IllegalStateException("The reserved nights of booking " + booking.getId()
+                    + " do not match its dates");
         }
 
         bookingRepository.delete(booking);
+        this.broadcast(sync -> sync.released(booking));
+
+        long campsiteId = booking.getCampsiteId();
+        long checkIn = booking.getCheckInDate().toEpochDay();
+        long checkOut = booking.getCheckOutDate().toEpochDay();
+        this.afterCommit(() -> {
+            this.availabilityIndex.release(campsiteId, checkIn, checkOut);
+            this.reservationEngine.release(campsiteId, checkIn, checkOut);
+            this.bookingCache.invalidate(bookingId);
+        });
     }
 }
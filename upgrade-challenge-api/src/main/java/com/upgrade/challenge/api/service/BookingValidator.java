@@ -0,0 +1,105 @@
+package com.upgrade.challenge.api.service;
+
+import com.upgrade.challenge.api.availability.Campsites;
+import com.upgrade.challenge.api.entity.Booking;
+import com.upgrade.challenge.api.exceprions.ErrorCode;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * The booking rules. Each check returns the first rule broken, or null when there is none.
+ */
+@Component
+public class BookingValidator {
+
+    public static final int MAX_NIGHTS = 3;
+
+    public static final int MIN_DAYS_AHEAD = 1;
+
+    public static final int MAX_DAYS_AHEAD = 30;
+
+    private static final ValidationError INVALID_CAMPSITE =
+            new ValidationError(ErrorCode.INVALID_CAMPSITE, "Invalid campsite.");
+
+    private static final ValidationError MISSING_BOOKING =
+            new ValidationError(ErrorCode.INVALID_REQUEST, "A reservation is required.");
+
+    private static final ValidationError MISSING_DATES =
+            new ValidationError(ErrorCode.INVALID_REQUEST, "Booking dates are required.");
+
+    private static final ValidationError CHECK_OUT_BEFORE_CHECK_IN =
+            new ValidationError(ErrorCode.INVALID_DATE_INTERVAL, "Check In date should be before Check Out");
+
+    private static final ValidationError STAY_TOO_LONG =
+            new ValidationError(ErrorCode.INVALID_DATE_INTERVAL, "The campsite can be reserved for max 3 days.");
+
+    private static final ValidationError INVALID_STAY_LENGTH =
+            new ValidationError(ErrorCode.INVALID_DATE_INTERVAL, "A stay is 1 to 3 nights long.");
+
+    private static final ValidationError CHECK_IN_OUT_OF_WINDOW =
+            new ValidationError(ErrorCode.INVALID_DATE_INTERVAL,
+                    "The campsite can be reserved minimum 1 day ahead of arrival and up to 1 month in advance.");
+
+    private static final ValidationError MISSING_EMAIL =
+            new ValidationError(ErrorCode.INVALID_REQUEST, "The e-mail is required to complete the reservation.");
+
+    private static final ValidationError MISSING_FULL_NAME =
+            new ValidationError(ErrorCode.INVALID_REQUEST, "The full name is required to complete the reservation.");
+
+    private final Campsites campsites;
+
+    public BookingValidator(Campsites campsites) {
+        this.campsites = campsites;
+    }
+
+    public ValidationError checkCampsite(Long campsiteId) {
+        return this.campsites.exists(campsiteId) ? null : INVALID_CAMPSITE;
+    }
+
+    public ValidationError checkDateRange(LocalDate checkIn, LocalDate checkOut) {
+        if (checkIn == null || checkOut == null) {
+            return MISSING_DATES;
+        }
+
+        if (!checkIn.isBefore(checkOut)) {
+            return CHECK_OUT_BEFORE_CHECK_IN;
+        }
+
+        if (ChronoUnit.DAYS.between(checkIn, checkOut) > MAX_NIGHTS) {
+            return STAY_TOO_LONG;
+        }
+
+        long daysBetweenNowAndCheckIn = ChronoUnit.DAYS.between(LocalDate.now(), checkIn);
+        if (daysBetweenNowAndCheckIn < MIN_DAYS_AHEAD || daysBetweenNowAndCheckIn > MAX_DAYS_AHEAD) {
+            return CHECK_IN_OUT_OF_WINDOW;
+        }
+        return null;
+    }
+
+    public ValidationError checkStayLength(int nights) {
+        return nights >= 1 && nights <= MAX_NIGHTS ? null : INVALID_STAY_LENGTH;
+    }
+
+    public ValidationError checkBooking(Booking booking) {
+        if (booking == null) {
+            return MISSING_BOOKING;
+        }
+        ValidationError error = this.checkDateRange(booking.getCheckInDate(), booking.getCheckOutDate());
+        if (error == null) {
+            error = this.checkCampsite(booking.getCampsiteId());
+        }
+        if (error == null && isBlank(booking.getEmail())) {
+            error = MISSING_EMAIL;
+        }
+        if (error == null && isBlank(booking.getFullName())) {
+            error = MISSING_FULL_NAME;
+        }
+        return error;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+}
@@ -0,0 +1,221 @@
+package com.upgrade.challenge.api.service;
+
+import com.upgrade.challenge.api.availability.AvailabilityIndex;
+import com.upgrade.challenge.api.availability.ReservationEngine;
+import com.upgrade.challenge.api.cluster.ClusterSync;
+import com.upgrade.challenge.api.entity.Booking;
+import com.upgrade.challenge.api.exceprions.BookingDateUnavailableException;
+import com.upgrade.challenge.api.metrics.BookingMetricsAspect;
+import com.upgrade.challenge.api.repository.BookingRepository;
+import com.upgrade.challenge.api.repository.ReservedDayRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persists {@link PendingBooking}s on a single background thread, many per transaction. A batch the database
+ * rejects is replayed one booking per transaction, so only the conflicting bookings are rejected.
+ * <p>
+ * Accepted bookings and their status live only in the memory of this node until their batch commits: polling
+ * needs sticky sessions, and a crash loses what was not flushed.
+ */
+@Component
+@Lazy(false)
+public class BookingWriteBehind {
+
+    private final BookingRepository bookingRepository;
+
+    private final ReservedDayRepository reservedDayRepository;
+
+    private final AvailabilityIndex availabilityIndex;
+
+    private final ReservationEngine reservationEngine;
+
+    private final BookingCache bookingCache;
+
+    private final ObjectProvider<ClusterSync> clusterSync;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final MeterRegistry meterRegistry;
+
+    private final BlockingQueue<PendingBooking> queue;
+
+    private final Map<String, PendingBooking> pendingBookings = new ConcurrentHashMap<>();
+
+    private final int batchSize;
+
+    private final long lingerNanos;
+
+    private final long retentionMillis;
+
+    private volatile boolean running = true;
+
+    private Thread writer;
+
+    private long lastEviction;
+
+    public BookingWriteBehind(BookingRepository bookingRepository, ReservedDayRepository reservedDayRepository,
+                              AvailabilityIndex availabilityIndex, ReservationEngine reservationEngine,
+                              BookingCache bookingCache, ObjectProvider<ClusterSync> clusterSync,
+                              PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                              @Value("${booking.write-behind.queue-capacity:10000}") int queueCapacity,
+                              @Value("${booking.write-behind.batch-size:200}") int batchSize,
+                              @Value("${booking.write-behind.linger:5ms}") Duration linger,
+                              @Value("${booking.write-behind.retention:10m}") Duration retention) {
+        this.bookingRepository = bookingRepository;
+        this.reservedDayRepository = reservedDayRepository;
+        this.availabilityIndex = availabilityIndex;
+        this.reservationEngine = reservationEngine;
+        this.bookingCache = bookingCache;
+        this.clusterSync = clusterSync;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.meterRegistry = meterRegistry;
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.lingerNanos = linger.toNanos();
+        this.retentionMillis = retention.toMillis();
+    }
+
+    @PostConstruct
+    public void start() {
+        Gauge.builder("booking.write_behind.queue", this.queue, Collection::size).register(this.meterRegistry);
+        this.writer = new Thread(this::run, "booking-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        this.running = false;
+        this.writer.join(TimeUnit.SECONDS.toMillis(30));
+    }
+
+    boolean submit(PendingBooking pendingBooking) {
+        this.pendingBookings.put(pendingBooking.getToken(), pendingBooking);
+        if (this.running && this.queue.offer(pendingBooking)) {
+            return true;
+        }
+        this.pendingBookings.remove(pendingBooking.getToken());
+        return false;
+    }
+
+    Optional<PendingBooking> find(String token) {
+        return Optional.ofNullable(this.pendingBookings.get(token));
+    }
+
+    private void run() {
+        List<PendingBooking> batch = new ArrayList<>(this.batchSize);
+        while (this.running || !this.queue.isEmpty()) {
+            try {
+                PendingBooking first = this.queue.poll(1, TimeUnit.SECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    this.fill(batch);
+                }
+            } catch (InterruptedException ex) {
+                this.running = false;
+            }
+
+            if (!batch.isEmpty()) {
+                this.write(batch);
+                batch.clear();
+            }
+            this.evictCompleted();
+        }
+    }
+
+    private void fill(List<PendingBooking> batch) throws InterruptedException {
+        this.queue.drainTo(batch, this.batchSize - batch.size());
+        long deadline = System.nanoTime() + this.lingerNanos;
+        while (batch.size() < this.batchSize) {
+            long remaining = deadline - System.nanoTime();
+            PendingBooking next = remaining > 0 ? this.queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+            this.queue.drainTo(batch, this.batchSize - batch.size());
+        }
+    }
+
+    private void write(List<PendingBooking> batch) {
+        try {
+            this.transactionTemplate.executeWithoutResult(status -> batch.forEach(this::persist));
+        } catch (RuntimeException ex) {
+            if (batch.size() == 1) {
+                this.reject(batch.get(0), ex);
+            } else {
+                batch.forEach(pendingBooking -> this.write(Collections.singletonList(pendingBooking)));
+            }
+            return;
+        }
+        batch.forEach(this::confirm);
+    }
+
+    // a failed batch leaves the ids and versions of its rolled back inserts behind
+    private void persist(PendingBooking pendingBooking) {
+        Booking booking = pendingBooking.getBooking();
+        booking.setId(null);
+        booking.setVersion(null);
+        pendingBooking.getReservedDays().forEach(reservedDay -> reservedDay.setId(null));
+
+        this.bookingRepository.save(booking);
+        this.reservedDayRepository.saveAll(pendingBooking.getReservedDays());
+        this.clusterSync.ifAvailable(sync -> sync.reserved(booking));
+    }
+
+    private void confirm(PendingBooking pendingBooking) {
+        Booking booking = pendingBooking.getBooking();
+        this.availabilityIndex.reserve(booking.getCampsiteId(),
+                booking.getCheckInDate().toEpochDay(), booking.getCheckOutDate().toEpochDay());
+        this.bookingCache.put(booking);
+        pendingBooking.confirm(booking.getId());
+    }
+
+    private void reject(PendingBooking pendingBooking, RuntimeException ex) {
+        Booking booking = pendingBooking.getBooking();
+        this.reservationEngine.release(booking.getCampsiteId(),
+                booking.getCheckInDate().toEpochDay(), booking.getCheckOutDate().toEpochDay(),
+                0, 0, pendingBooking.getClaimToken());
+
+        if (ex instanceof DataIntegrityViolationException) {
+            this.meterRegistry.counter(BookingMetricsAspect.CONFLICT_COUNTER,
+                    "operation", "bookAsync", "source", "constraint").increment();
+            pendingBooking.reject(new BookingDateUnavailableException().getMessage());
+        } else {
+            pendingBooking.reject("The reservation could not be saved.");
+        }
+    }
+
+    private void evictCompleted() {
+        long now = System.currentTimeMillis();
+        if (now - this.lastEviction < 1000) {
+            return;
+        }
+        this.lastEviction = now;
+        this.pendingBookings.values().removeIf(pendingBooking ->
+                pendingBooking.getStatus() != PendingBooking.Status.PENDING
+                        && now - pendingBooking.getCompletedAt() > this.retentionMillis);
+    }
+}
@@ -0,0 +1,39 @@
+package com.upgrade.challenge.api.service;
+
+import com.upgrade.challenge.api.exceprions.BookingValidationException;
+import com.upgrade.challenge.api.exceprions.ErrorCode;
+import com.upgrade.challenge.api.repository.BookingSummary;
+import lombok.Value;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Position of the last booking of a listing page, by check-in date then id, handed to clients as
+ * {@code <check-in date>_<id>}.
+ */
+@Value
+class ListingCursor {
+
+    LocalDate checkInDate;
+
+    long id;
+
+    static ListingCursor after(BookingSummary booking) {
+        return new ListingCursor(booking.getCheckInDate(), booking.getId());
+    }
+
+    static ListingCursor parse(String cursor) {
+        int separator = cursor.indexOf('_');
+        try {
+            return new ListingCursor(LocalDate.parse(cursor.substring(0, Math.max(separator, 0))),
+                    Long.parseLong(cursor.substring(separator + 1)));
+        } catch (DateTimeParseException | NumberFormatException ex) {
+            throw new BookingValidationException(ErrorCode.INVALID_REQUEST, "Invalid cursor!");
+        }
+    }
+
+    String encode() {
+        return this.checkInDate + "_" + this.id;
+    }
+}
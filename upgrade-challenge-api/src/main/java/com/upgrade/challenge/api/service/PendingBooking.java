@@ -0,0 +1,58 @@
+package com.upgrade.challenge.api.service;
+
+import com.upgrade.challenge.api.entity.Booking;
+import com.upgrade.challenge.api.entity.ReservedDay;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * A booking whose nights are already claimed in memory and that waits for {@link BookingWriteBehind} to persist it.
+ */
+@Getter
+public class PendingBooking {
+
+    public enum Status {
+        PENDING, CONFIRMED, REJECTED
+    }
+
+    private final String token;
+
+    @Getter(AccessLevel.PACKAGE)
+    private final Booking booking;
+
+    @Getter(AccessLevel.PACKAGE)
+    private final List<ReservedDay> reservedDays;
+
+    @Getter(AccessLevel.PACKAGE)
+    private final long claimToken;
+
+    private volatile Status status = Status.PENDING;
+
+    private volatile Long bookingId;
+
+    private volatile String message;
+
+    @Getter(AccessLevel.PACKAGE)
+    private volatile long completedAt;
+
+    PendingBooking(String token, Booking booking, List<ReservedDay> reservedDays, long claimToken) {
+        this.token = token;
+        this.booking = booking;
+        this.reservedDays = reservedDays;
+        this.claimToken = claimToken;
+    }
+
+    void confirm(Long bookingId) {
+        this.bookingId = bookingId;
+        this.completedAt = System.currentTimeMillis();
+        this.status = Status.CONFIRMED;
+    }
+
+    void reject(String message) {
+        this.message = message;
+        this.completedAt = System.currentTimeMillis();
+        this.status = Status.REJECTED;
+    }
+}
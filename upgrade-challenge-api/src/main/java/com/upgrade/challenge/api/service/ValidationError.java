@@ -0,0 +1,24 @@
+package com.upgrade.challenge.api.service;
+
+import com.upgrade.challenge.api.exceprions.BookingValidationException;
+import com.upgrade.challenge.api.exceprions.ErrorCode;
+import com.upgrade.challenge.api.exceprions.InvalidDateIntervalException;
+import lombok.Value;
+
+/**
+ * Why a request failed validation, returned rather than thrown so that bulk requests can reject items without
+ * exceptions.
+ */
+@Value
+public class ValidationError {
+
+    ErrorCode errorCode;
+
+    String message;
+
+    public BookingValidationException toException() {
+        return this.errorCode == ErrorCode.INVALID_DATE_INTERVAL
+                ? new InvalidDateIntervalException(this.message)
+                : new BookingValidationException(this.errorCode, this.message);
+    }
+}
@@ -0,0 +1,196 @@
+package com.upgrade.challenge.api.startup;
+
+import com.upgrade.challenge.api.availability.Campsites;
+import com.upgrade.challenge.api.cluster.ClusterSync;
+import com.upgrade.challenge.api.entity.Booking;
+import com.upgrade.challenge.api.hold.HoldManager;
+import com.upgrade.challenge.api.metrics.BookingMetricsAspect;
+import com.upgrade.challenge.api.repository.BookingRepository;
+import com.upgrade.challenge.api.service.BookingService;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.config.MeterFilter;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs dry-run availability queries and bookings before the web server starts, so the first requests find the JIT,
+ * the pool and Hibernate's statement caches warm. Each booking is rolled back, which gives its claims back, and
+ * writes no cluster event. The warm-up leaves no trace in the booking meters or the Hibernate statistics.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "booking.warm-up.enabled", havingValue = "true")
+public class WarmUp implements SmartLifecycle, ApplicationRunner, HealthIndicator {
+
+    public static final String METER_PREFIX = "warm-up.";
+
+    public static final int PHASE = HoldManager.PHASE + 1;
+
+    private static final List<String> METERED_CALLS = Arrays.asList("booking.service",
+            BookingMetricsAspect.REPOSITORY_TIMER, BookingMetricsAspect.TRANSACTION_TIMER,
+            BookingMetricsAspect.CONFLICT_COUNTER);
+
+    private final BookingService bookingService;
+
+    private final BookingRepository bookingRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ApplicationContext applicationContext;
+
+    private final MeterRegistry meterRegistry;
+
+    private final ObjectProvider<EntityManagerFactory> entityManagerFactory;
+
+    private final ObjectProvider<ClusterSync> clusterSync;
+
+    private final int iterations;
+
+    private final boolean exit;
+
+    private volatile Health health = Health.outOfService().build();
+
+    private volatile Thread warmingUp;
+
+    private volatile boolean running;
+
+    public WarmUp(BookingService bookingService, BookingRepository bookingRepository,
+                  PlatformTransactionManager transactionManager, ApplicationContext applicationContext,
+                  MeterRegistry meterRegistry, ObjectProvider<EntityManagerFactory> entityManagerFactory,
+                  ObjectProvider<ClusterSync> clusterSync,
+                  @Value("${booking.warm-up.iterations:200}") int iterations,
+                  @Value("${booking.warm-up.exit:false}") boolean exit) {
+        this.bookingService = bookingService;
+        this.bookingRepository = bookingRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.applicationContext = applicationContext;
+        this.meterRegistry = meterRegistry;
+        this.entityManagerFactory = entityManagerFactory;
+        this.clusterSync = clusterSync;
+        this.iterations = iterations;
+        this.exit = exit;
+
+        meterRegistry.config().meterFilter(new MeterFilter() {
+            @Override
+            public Meter.Id map(Meter.Id id) {
+                return Thread.currentThread() == warmingUp && METERED_CALLS.contains(id.getName())
+                        ? id.withName(METER_PREFIX + id.getName()) : id;
+            }
+        });
+    }
+
+    @Override
+    public void start() {
+        this.running = true;
+        long start = System.nanoTime();
+        int booked = 0;
+        this.warmingUp = Thread.currentThread();
+        try {
+            for (int i = 0; i < this.iterations; i++) {
+                LocalDate today = LocalDate.now();
+                Iterator<LocalDate> availableDates = this.bookingService
+                        .findAvailableDates(today.plusDays(1), today.plusDays(30)).iterator();
+                if (availableDates.hasNext() && this.dryRunBook(availableDates.next())) {
+                    booked++;
+                }
+            }
+            this.forgetMetrics();
+            long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            log.info("Warm-up ran {} iterations ({} dry-run bookings) in {} ms", this.iterations, booked, millis);
+            this.health = Health.up()
+                    .withDetail("iterations", this.iterations)
+                    .withDetail("durationMs", millis)
+                    .build();
+        } catch (RuntimeException ex) {
+            log.warn("Warm-up failed, serving traffic cold", ex);
+            this.forgetMetrics();
+            this.health = Health.up().withDetail("error", ex.getMessage()).build();
+        }
+    }
+
+    @Override
+    public void stop() {
+        this.running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return this.running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+    /**
+     * Used by the class-data-sharing training run of the build.
+     */
+    @Override
+    public void run(ApplicationArguments args) {
+        if (this.exit) {
+            System.exit(SpringApplication.exit(this.applicationContext));
+        }
+    }
+
+    private void forgetMetrics() {
+        this.warmingUp = null;
+        this.meterRegistry.getMeters().stream()
+                .filter(meter -> meter.getId().getName().startsWith(METER_PREFIX))
+                .forEach(this.meterRegistry::remove);
+
+        EntityManagerFactory factory = this.entityManagerFactory.getIfAvailable();
+        if (factory != null) {
+            factory.unwrap(SessionFactory.class).getStatistics().clear();
+        }
+    }
+
+    private boolean dryRunBook(LocalDate checkIn) {
+        Booking booking = Booking.builder()
+                .campsiteId(Campsites.DEFAULT_ID)
+                .email("warm-up@localhost")
+                .fullName("Warm Up")
+                .checkInDate(checkIn)
+                .checkOutDate(checkIn.plusDays(1))
+                .build();
+
+        Runnable book = () -> this.transactionTemplate.executeWithoutResult(status -> {
+            status.setRollbackOnly();
+            this.bookingService.book(booking);
+            this.bookingRepository.flush();
+        });
+        ClusterSync sync = this.clusterSync.getIfAvailable();
+        if (sync != null) {
+            sync.unpublished(book);
+        } else {
+            book.run();
+        }
+        return true;
+    }
+
+    @Override
+    public Health health() {
+        return this.health;
+    }
+}
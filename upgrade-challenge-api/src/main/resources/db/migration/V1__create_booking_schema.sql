@@ -0,0 +1,28 @@
+CREATE SEQUENCE booking_seq START WITH 1 INCREMENT BY 50;
+
+CREATE SEQUENCE reserved_day_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE booking (
+    id             BIGINT       NOT NULL,
+    campsite_id    BIGINT       NOT NULL,
+    email          VARCHAR(255) NOT NULL,
+    full_name      VARCHAR(255) NOT NULL,
+    check_in_date  DATE         NOT NULL,
+    check_out_date DATE         NOT NULL,
+    version        BIGINT,
+    PRIMARY KEY (id)
+);
+
+CREATE INDEX idx_booking_stay ON booking (campsite_id, check_in_date, check_out_date);
+
+CREATE TABLE reserved_day (
+    id          BIGINT NOT NULL,
+    campsite_id BIGINT NOT NULL,
+    date        DATE,
+    booking_id  BIGINT NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_reserved_day_campsite_date UNIQUE (campsite_id, date),
+    CONSTRAINT fk_reserved_day_booking FOREIGN KEY (booking_id) REFERENCES booking (id)
+);
+
+CREATE INDEX idx_reserved_day_booking ON reserved_day (booking_id);
@@ -0,0 +1,16 @@
+CREATE SEQUENCE reservation_event_seq START WITH 1 INCREMENT BY 1;
+
+CREATE TABLE reservation_event (
+    id            BIGINT      NOT NULL,
+    node_id       VARCHAR(64) NOT NULL,
+    booking_id    BIGINT      NOT NULL,
+    campsite_id   BIGINT      NOT NULL,
+    released_from DATE,
+    released_to   DATE,
+    reserved_from DATE,
+    reserved_to   DATE,
+    created_at    TIMESTAMP   NOT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE INDEX idx_reservation_event_created_at ON reservation_event (created_at);
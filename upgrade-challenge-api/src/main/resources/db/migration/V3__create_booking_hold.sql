@@ -0,0 +1,8 @@
+CREATE TABLE booking_hold (
+    id             VARCHAR(36) NOT NULL,
+    campsite_id    BIGINT      NOT NULL,
+    check_in_date  DATE        NOT NULL,
+    check_out_date DATE        NOT NULL,
+    expires_at     TIMESTAMP   NOT NULL,
+    PRIMARY KEY (id)
+);
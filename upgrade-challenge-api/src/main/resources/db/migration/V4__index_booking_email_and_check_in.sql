@@ -0,0 +1,3 @@
+CREATE INDEX idx_booking_email ON booking (email, check_in_date, id);
+
+CREATE INDEX idx_booking_check_in ON booking (check_in_date, id);
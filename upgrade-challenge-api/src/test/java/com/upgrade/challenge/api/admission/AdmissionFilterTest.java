@@ -0,0 +1,129 @@
+package com.upgrade.challenge.api.admission;
+
+import com.upgrade.challenge.api.availability.ReservationEngine;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.time.LocalDate;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+        "booking.admission.rate=1",
+        "booking.admission.burst=2",
+        "booking.admission.max-in-flight=1",
+        "booking.admission.client-header=X-Forwarded-For"
+})
+public class AdmissionFilterTest {
+
+    MockMvc mockMvc;
+
+    @Autowired
+    WebApplicationContext context;
+
+    @Autowired
+    AdmissionFilter admissionFilter;
+
+    @Autowired
+    ReservationEngine reservationEngine;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Before
+    public void setup() {
+        this.mockMvc = MockMvcBuilders.webAppContextSetup(context)
+                .addFilters(admissionFilter)
+                .build();
+    }
+
+    private double count(String outcome) {
+        return meterRegistry.counter(AdmissionControl.ADMISSION_COUNTER, "outcome", outcome).count();
+    }
+
+    @Test
+    public void clients_over_their_rate_should_get_429() throws Exception {
+        // the entries before the one the proxy appended are the client's own, so rotating them changes nothing
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(post("/api/booking/bulk/cancel").header("X-Forwarded-For", "192.168.0." + i + ", 10.0.0.1")
+                    .contentType(MediaType.APPLICATION_JSON).content("[]"))
+                    .andExpect(status().isOk());
+        }
+
+        double rateLimited = this.count("rate_limited");
+        mockMvc.perform(post("/api/booking/bulk/cancel").header("X-Forwarded-For", "10.0.0.1")
+                .contentType(MediaType.APPLICATION_JSON).content("[]"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"));
+        Assert.assertEquals(rateLimited + 1, this.count("rate_limited"), 0);
+
+        mockMvc.perform(post("/api/booking/bulk/cancel").header("X-Forwarded-For", "10.0.0.2")
+                .contentType(MediaType.APPLICATION_JSON).content("[]"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/booking/available/campsites").header("X-Forwarded-For", "10.0.0.1")
+                .param("checkInDate", LocalDate.now().plusDays(2).toString())
+                .param("checkOutDate", LocalDate.now().plusDays(3).toString()))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    public void writes_over_the_in_flight_cap_should_get_503() throws Exception {
+        MockHttpServletResponse nested = new MockHttpServletResponse();
+        MockHttpServletRequest outer = new MockHttpServletRequest("DELETE", "/api/booking/1");
+        outer.addHeader("X-Forwarded-For", "10.0.0.3");
+
+        admissionFilter.doFilter(outer, new MockHttpServletResponse(), (request, response) -> {
+            MockHttpServletRequest inner = new MockHttpServletRequest("DELETE", "/api/booking/2");
+            inner.addHeader("X-Forwarded-For", "10.0.0.4");
+            admissionFilter.doFilter(inner, nested, (innerRequest, innerResponse) -> Assert.fail());
+        });
+
+        Assert.assertEquals(503, nested.getStatus());
+        Assert.assertEquals("1", nested.getHeader(HttpHeaders.RETRY_AFTER));
+    }
+
+    @Test
+    public void taken_nights_should_be_refused_before_the_service() throws Exception {
+        LocalDate checkIn = LocalDate.now().plusDays(12);
+        long token = reservationEngine.claim(2L, checkIn.toEpochDay(), checkIn.plusDays(2).toEpochDay());
+        try {
+            double taken = this.count("taken");
+            mockMvc.perform(post("/api/booking").header("X-Forwarded-For", "10.0.0.5")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"campsiteId\":2,\"email\":\"a@b.c\",\"fullName\":\"John Doe\",\"checkInDate\":\""
+                            + checkIn.plusDays(1) + "\",\"checkOutDate\":\"" + checkIn.plusDays(3) + "\"}"))
+                    .andExpect(status().isConflict());
+            Assert.assertEquals(taken + 1, this.count("taken"), 0);
+        } finally {
+            reservationEngine.release(2L, checkIn.toEpochDay(), checkIn.plusDays(2).toEpochDay(), 0, 0, token);
+        }
+    }
+
+    @Test
+    public void stays_the_rules_refuse_should_be_rejected_before_their_nights_are_checked() throws Exception {
+        double taken = this.count("taken");
+        mockMvc.perform(post("/api/booking").header("X-Forwarded-For", "10.0.0.6")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"campsiteId\":2,\"email\":\"a@b.c\",\"fullName\":\"John Doe\",\"checkInDate\":\""
+                        + LocalDate.now().plusDays(2) + "\",\"checkOutDate\":\"" + LocalDate.now().plusYears(5000) + "\"}"))
+                .andExpect(status().isBadRequest());
+        Assert.assertEquals(taken, this.count("taken"), 0);
+    }
+}
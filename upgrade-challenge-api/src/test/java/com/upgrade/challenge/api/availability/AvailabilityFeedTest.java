@@ -0,0 +1,172 @@
+package com.upgrade.challenge.api.availability;
+
+import com.upgrade.challenge.api.entity.Booking;
+import com.upgrade.challenge.api.repository.BookingRepository;
+import com.upgrade.challenge.api.repository.ReservedDayRepository;
+import com.upgrade.challenge.api.service.BookingService;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class AvailabilityFeedTest {
+
+    @Autowired
+    WebApplicationContext webApplicationContext;
+
+    @Autowired
+    BookingService bookingService;
+
+    @Autowired
+    BookingRepository bookingRepository;
+
+    @Autowired
+    ReservedDayRepository reservedDayRepository;
+
+    @Autowired
+    AvailabilityIndex availabilityIndex;
+
+    @Autowired
+    ReservationEngine reservationEngine;
+
+    @Autowired
+    Campsites campsites;
+
+    MockMvc mockMvc;
+
+    @Before
+    @After
+    public void cleanUp() {
+        reservedDayRepository.deleteAll();
+        bookingRepository.deleteAll();
+        availabilityIndex.load();
+        reservationEngine.load();
+        mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+    }
+
+    private void awaitContent(MockHttpServletResponse response, String expected) throws Exception {
+        for (int attempt = 0; attempt < 100; attempt++) {
+            if (response.getContentAsString().contains(expected)) {
+                return;
+            }
+            Thread.sleep(50);
+        }
+        Assert.assertThat(response.getContentAsString(), containsString(expected));
+    }
+
+    @Test
+    public void subscriber_should_get_snapshot_then_deltas() throws Exception {
+        LocalDate startDate = LocalDate.now().plusDays(1);
+        LocalDate checkIn = LocalDate.now().plusDays(3);
+
+        MockHttpServletResponse response = mockMvc.perform(get("/api/booking/available/stream")
+                .param("campsiteId", "3")
+                .param("startDate", startDate.toString())
+                .param("endDate", startDate.plusDays(9).toString()))
+                .andExpect(request().asyncStarted())
+                .andReturn().getResponse();
+
+        this.awaitContent(response, "event:snapshot\ndata:{\"startDate\":\"" + startDate + "\",\"days\":10,\"free\":[[0,10]]}");
+
+        Booking booking = bookingService.book(Booking.builder()
+                .campsiteId(3L)
+                .email("a@b.c")
+                .fullName("John Doe")
+                .checkInDate(checkIn)
+                .checkOutDate(checkIn.plusDays(2))
+                .build());
+
+        this.awaitContent(response, "event:delta\ndata:{\"campsiteId\":3,\"reserved\":[\""
+                + checkIn + "\",\"" + checkIn.plusDays(1) + "\"],\"released\":[]}");
+
+        bookingService.cancel(booking.getId());
+
+        this.awaitContent(response, "\"reserved\":[],\"released\":[\"" + checkIn + "\",\"" + checkIn.plusDays(1) + "\"]}");
+    }
+
+    @Test
+    public void stalled_subscriber_should_be_evicted_without_holding_up_the_others() throws Exception {
+        CountDownLatch stalled = new CountDownLatch(1);
+        CountDownLatch resumed = new CountDownLatch(1);
+        BlockingQueue<String> received = new LinkedBlockingQueue<>();
+        AtomicInteger emitters = new AtomicInteger();
+        // a single sender thread, which the stalled subscriber blocks
+        AvailabilityFeed feed = new AvailabilityFeed(availabilityIndex, campsites, 10, 1, Duration.ofMinutes(1),
+                Duration.ofMillis(200), 4) {
+            @Override
+            SseEmitter newEmitter(long timeoutMillis) {
+                if (emitters.getAndIncrement() == 0) {
+                    return new SseEmitter(timeoutMillis) {
+                        private int sent;
+
+                        @Override
+                        public void send(SseEventBuilder builder) throws InterruptedIOException {
+                            // stops reading after the snapshot
+                            if (this.sent++ > 0) {
+                                stalled.countDown();
+                                try {
+                                    resumed.await();
+                                } catch (InterruptedException ex) {
+                                    throw new InterruptedIOException();
+                                }
+                            }
+                        }
+                    };
+                }
+                return new SseEmitter(timeoutMillis) {
+                    @Override
+                    public void send(SseEventBuilder builder) {
+                        received.add(builder.build().stream()
+                                .map(data -> data.getData().toString())
+                                .collect(Collectors.joining()));
+                    }
+                };
+            }
+        };
+        feed.start();
+        try {
+            long day = LocalDate.now().plusDays(3).toEpochDay();
+            feed.subscribe(1L, day, day + 9);
+            feed.changed(1L, day, day + 1);
+            Assert.assertTrue(stalled.await(5, TimeUnit.SECONDS));
+
+            feed.subscribe(1L, day, day + 9);
+            feed.changed(1L, day + 1, day + 2);
+            String event;
+            do {
+                event = received.poll(5, TimeUnit.SECONDS);
+                Assert.assertNotNull("The delta was held up by the stalled subscriber.", event);
+            } while (!event.contains("event:delta"));
+
+            Assert.assertEquals(1, feed.subscriberCount());
+        } finally {
+            resumed.countDown();
+            feed.stop();
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.upgrade.challenge.api.cluster;
+
+import com.upgrade.challenge.api.ChallengeApiApplication;
+import com.upgrade.challenge.api.entity.Booking;
+import com.upgrade.challenge.api.exceprions.BookingDateUnavailableException;
+import com.upgrade.challenge.api.hold.Hold;
+import com.upgrade.challenge.api.repository.BookingHoldRepository;
+import com.upgrade.challenge.api.service.BookingService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Two nodes in one JVM sharing one H2 database, as two instances behind a load balancer would.
+ */
+public class ClusterSyncTest {
+
+    private static final String DATABASE_URL = "jdbc:h2:mem:cluster;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE";
+
+    private static ConfigurableApplicationContext nodeA;
+
+    private static ConfigurableApplicationContext nodeB;
+
+    @BeforeClass
+    public static void startNodes() {
+        nodeA = startNode("a");
+        nodeB = startNode("b");
+    }
+
+    @AfterClass
+    public static void stopNodes() {
+        nodeB.close();
+        nodeA.close();
+    }
+
+    /**
+     * Passed as arguments to override the test configuration, which would otherwise have each node drop and create
+     * the schema under the other.
+     */
+    private static ConfigurableApplicationContext startNode(String nodeId) {
+        return new SpringApplicationBuilder(ChallengeApiApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(
+                        "--spring.datasource.url=" + DATABASE_URL,
+                        "--spring.flyway.enabled=true",
+                        "--spring.jpa.hibernate.ddl-auto=validate",
+                        "--spring.jmx.enabled=false",
+                        "--booking.cluster.enabled=true",
+                        "--booking.cluster.node-id=" + nodeId,
+                        "--booking.cluster.poll-interval=10ms");
+    }
+
+    private static BookingService bookingService(ConfigurableApplicationContext node) {
+        return node.getBean(BookingService.class);
+    }
+
+    private static Booking booking(long campsiteId, int checkIn, int checkOut) {
+        return Booking.builder()
+                .campsiteId(campsiteId)
+                .email("a@b.c")
+                .fullName("John Doe")
+                .checkInDate(LocalDate.now().plusDays(checkIn))
+                .checkOutDate(LocalDate.now().plusDays(checkOut))
+                .build();
+    }
+
+    private static Set<LocalDate> availableDates(ConfigurableApplicationContext node, long campsiteId) {
+        return bookingService(node).findAvailableDates(campsiteId, LocalDate.now(), LocalDate.now().plusDays(20));
+    }
+
+    private static void await(String description, BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() - deadline > 0) {
+                Assert.fail("Timed out waiting until " + description);
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    public void changes_on_one_node_should_be_applied_by_the_other() throws InterruptedException {
+        LocalDate today = LocalDate.now();
+        Booking booking = bookingService(nodeA).book(booking(1L, 3, 5));
+
+        await("node b sees the booking", () -> !availableDates(nodeB, 1L).contains(today.plusDays(3)));
+        Assert.assertFalse(availableDates(nodeB, 1L).contains(today.plusDays(4)));
+        try {
+            bookingService(nodeB).book(booking(1L, 4, 6));
+            Assert.fail("The nights were taken on node a");
+        } catch (BookingDateUnavailableException ex) {
+            // refused by node b's own reservation engine
+        }
+        Assert.assertEquals("John Doe", bookingService(nodeB).findBooking(booking.getId()).getFullName());
+
+        bookingService(nodeA).update(Booking.builder()
+                .id(booking.getId())
+                .campsiteId(1L)
+                .fullName("Jane Doe")
+                .checkInDate(today.plusDays(6))
+                .checkOutDate(today.plusDays(8))
+                .build());
+
+        await("node b sees the move", () -> availableDates(nodeB, 1L).contains(today.plusDays(3)));
+        Assert.assertFalse(availableDates(nodeB, 1L).contains(today.plusDays(6)));
+        Assert.assertFalse(availableDates(nodeB, 1L).contains(today.plusDays(7)));
+        Assert.assertEquals("Jane Doe", bookingService(nodeB).findBooking(booking.getId()).getFullName());
+
+        bookingService(nodeB).cancel(booking.getId());
+
+        await("node a sees the cancellation", () -> availableDates(nodeA, 1L).contains(today.plusDays(6)));
+        Booking rebooked = bookingService(nodeA).book(booking(1L, 6, 8));
+        bookingService(nodeA).cancel(rebooked.getId());
+
+        Assert.assertTrue(nodeB.getBean(MeterRegistry.class).counter(ClusterSync.EVENT_COUNTER).count() >= 2);
+    }
+
+    @Test
+    public void a_node_starting_should_keep_the_stored_holds_claimed() throws InterruptedException {
+        LocalDate today = LocalDate.now();
+        Hold hold = bookingService(nodeA).hold(3L, today.plusDays(15), today.plusDays(17));
+        await("the hold is stored", () -> nodeA.getBean(BookingHoldRepository.class).existsById(hold.getId()));
+
+        ConfigurableApplicationContext nodeC = startNode("c");
+        try {
+            Assert.assertFalse(availableDates(nodeC, 3L).contains(today.plusDays(15)));
+            try {
+                bookingService(nodeC).book(booking(3L, 16, 17));
+                Assert.fail("The nights are on hold");
+            } catch (BookingDateUnavailableException ex) {
+                // claimed again by the restored hold after the cluster reload
+            }
+        } finally {
+            nodeC.close();
+            bookingService(nodeA).releaseHold(hold.getId());
+        }
+    }
+
+    @Test
+    public void the_same_nights_booked_on_both_nodes_should_go_to_one() throws Exception {
+        LocalDate today = LocalDate.now();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Booking>> attempts = new ArrayList<>();
+        for (ConfigurableApplicationContext node : new ConfigurableApplicationContext[]{nodeA, nodeB}) {
+            Callable<Booking> attempt = () -> {
+                start.await();
+                return bookingService(node).book(booking(2L, 10, 12));
+            };
+            attempts.add(executor.submit(attempt));
+        }
+        start.countDown();
+
+        List<Booking> booked = new ArrayList<>();
+        for (Future<Booking> attempt : attempts) {
+            try {
+                booked.add(attempt.get(10, TimeUnit.SECONDS));
+            } catch (ExecutionException ex) {
+                // refused by the node's engine, or by the unique key when both claims raced
+                Assert.assertTrue(ex.getCause() instanceof BookingDateUnavailableException
+                        || ex.getCause() instanceof DataIntegrityViolationException);
+            }
+        }
+        executor.shutdown();
+        Assert.assertEquals(1, booked.size());
+
+        for (ConfigurableApplicationContext node : new ConfigurableApplicationContext[]{nodeA, nodeB}) {
+            await("both nodes see the winner", () -> !availableDates(node, 2L).contains(today.plusDays(10)));
+            try {
+                bookingService(node).book(booking(2L, 11, 12));
+                Assert.fail("The nights were taken");
+            } catch (BookingDateUnavailableException ex) {
+                // the losing node released its own claim, and holds the winner's nights
+            }
+        }
+        bookingService(nodeA).cancel(booked.get(0).getId());
+    }
+}
@@ -3,8 +3,15 @@ package com.upgrade.challenge.api.controller;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.upgrade.challenge.api.availability.AvailabilityRangesWriter;
+import com.upgrade.challenge.api.availability.AvailableRangeVisitor;
 import com.upgrade.challenge.api.dto.BookingDto;
 import com.upgrade.challenge.api.entity.Booking;
+import com.upgrade.challenge.api.exceprions.BookingValidationException;
+import com.upgrade.challenge.api.exceprions.BookingVersionMismatchException;
+import com.upgrade.challenge.api.exceprions.ErrorCode;
+import com.upgrade.challenge.api.exceprions.InvalidDateIntervalException;
+import com.upgrade.challenge.api.service.BookingListing;
 import com.upgrade.challenge.api.service.BookingService;
 import org.junit.Before;
 import org.junit.Test;
@@ -13,7 +20,9 @@ import org.mockito.Mock;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
@@ -21,6 +30,7 @@ import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.time.LocalDate;
+import java.util.Collections;
 import java.util.Random;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -29,9 +39,20 @@ import java.util.stream.Stream;
 import static org.hamcrest.Matchers.*;
 import static org.hamcrest.Matchers.empty;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -44,12 +65,16 @@ public class BookingControllerTest {
     @Autowired
     BookingController bookingController;
 
+    @Autowired
+    BookingExceptionHandler bookingExceptionHandler;
+
     @MockBean
     BookingService bookingService;
 
     @Before
     public void setup() {
         this.mockMvc = MockMvcBuilders.standaloneSetup(bookingController)
+                .setControllerAdvice(bookingExceptionHandler)
                 .build();
     }
 
@@ -69,7 +94,7 @@ public class BookingControllerTest {
         Set<LocalDate> availableDates = Stream.iterate(startDate, date -> date.plusDays(1))
                 .limit(10)
                 .collect(Collectors.toSet());
-        when(bookingService.findAvailableDates(any(), any())).thenReturn(availableDates);
+        when(bookingService.findAvailableDates(any(), any(), any())).thenReturn(availableDates);
 
         mockMvc.perform(get("/api/booking/available")
 //                .param("startDate", "2020-07-26")
@@ -80,6 +105,150 @@ public class BookingControllerTest {
                 .andExpect(jsonPath("$", hasSize(10)));
     }
 
+    @Test
+    public void ranges_format_should_return_free_runs_as_offsets() throws Exception {
+        LocalDate startDate = LocalDate.now().plusDays(10);
+        long firstDay = startDate.toEpochDay();
+        doAnswer(invocation -> {
+            AvailableRangeVisitor visitor = invocation.getArgument(3);
+            visitor.start(firstDay, firstDay + 9);
+            visitor.range(firstDay, firstDay + 3);
+            visitor.range(firstDay + 5, firstDay + 10);
+            return null;
+        }).when(bookingService).findAvailableRanges(any(), any(), any(), any());
+
+        String expected = "{\"startDate\":\"" + startDate + "\",\"days\":10,\"free\":[[0,3],[5,10]]}";
+
+        mockMvc.perform(get("/api/booking/available")
+                .param("format", "ranges")
+                .param("startDate", startDate.toString())
+                .param("endDate", startDate.plusDays(9).toString()))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(AvailabilityRangesWriter.MEDIA_TYPE))
+                .andExpect(content().string(expected));
+
+        mockMvc.perform(get("/api/booking/available")
+                .accept(AvailabilityRangesWriter.MEDIA_TYPE)
+                .param("startDate", startDate.toString())
+                .param("endDate", startDate.plusDays(9).toString()))
+                .andExpect(status().isOk())
+                .andExpect(content().string(expected));
+    }
+
+    @Test
+    public void get_should_return_the_booking_with_its_version_as_etag() throws Exception {
+        when(bookingService.findBooking(7L)).thenReturn(Booking.builder().id(7L).campsiteId(2L).email("a@b.c")
+                .fullName("Jane Doe").checkInDate(LocalDate.now().plusDays(3)).checkOutDate(LocalDate.now().plusDays(4))
+                .version(4L).build());
+
+        mockMvc.perform(get("/api/booking/7"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"4\""))
+                .andExpect(jsonPath("$.id", is(7)))
+                .andExpect(jsonPath("$.campsiteId", is(2)))
+                .andExpect(jsonPath("$.fullName", is("Jane Doe")))
+                .andExpect(jsonPath("$.version").doesNotExist());
+    }
+
+    @Test
+    public void inconsistent_reserved_nights_should_be_a_server_error() throws Exception {
+        doThrow(new IllegalStateException("The reserved nights of booking 9 do not match its dates"))
+                .when(bookingService).cancel(9L);
+
+        mockMvc.perform(delete("/api/booking/9"))
+                .andExpect(status().isInternalServerError())
+                .andExpect(jsonPath("$.code", is(ErrorCode.INTERNAL_ERROR.name())));
+    }
+
+    @Test
+    public void listings_should_only_answer_the_staff_key() throws Exception {
+        when(bookingService.findBookingsByEmail(anyString(), isNull(), anyInt()))
+                .thenReturn(new BookingListing(Collections.emptyList(), null));
+
+        mockMvc.perform(get("/api/booking/by-email").param("email", "a@b.c"))
+                .andExpect(status().isForbidden())
+                .andExpect(jsonPath("$.code", is(ErrorCode.ACCESS_DENIED.name())));
+        mockMvc.perform(get("/api/booking/by-email").param("email", "a@b.c")
+                .header(BookingController.STAFF_KEY_HEADER, "guess"))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(get("/api/booking/by-check-in")
+                .param("startDate", "2020-01-01").param("endDate", "2020-01-31"))
+                .andExpect(status().isForbidden());
+        verify(bookingService, never()).findBookingsByEmail(anyString(), any(), anyInt());
+        verify(bookingService, never()).findBookingsByCheckIn(any(), any(), any(), anyInt());
+
+        mockMvc.perform(get("/api/booking/by-email").param("email", "a@b.c")
+                .header(BookingController.STAFF_KEY_HEADER, "test-staff-key"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.bookings", hasSize(0)));
+    }
+
+    @Test
+    public void update_should_honour_if_match_and_report_version_conflicts() throws Exception {
+        BookingDto bookingDto = BookingDto.builder().fullName("Jane Doe").build();
+        Booking updated = Booking.builder().id(7L).fullName("Jane Doe").version(4L).build();
+
+        when(bookingService.update(any())).thenAnswer(invocation -> {
+            Long version = invocation.<Booking>getArgument(0).getVersion();
+            if (version == null) {
+                throw new ObjectOptimisticLockingFailureException(Booking.class, 7L);
+            }
+            if (version != 3L) {
+                throw new BookingVersionMismatchException();
+            }
+            return updated;
+        });
+
+        mockMvc.perform(put("/api/booking/7")
+                .header(HttpHeaders.IF_MATCH, "\"3\"")
+                .content(this.convertObjectToJsonBytes(bookingDto))
+                .contentType(this.APPLICATION_JSON_UTF8))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"4\""));
+
+        mockMvc.perform(put("/api/booking/7")
+                .header(HttpHeaders.IF_MATCH, "\"2\"")
+                .content(this.convertObjectToJsonBytes(bookingDto))
+                .contentType(this.APPLICATION_JSON_UTF8))
+                .andExpect(status().isPreconditionFailed())
+                .andExpect(jsonPath("$.code", is("VERSION_MISMATCH")));
+
+        mockMvc.perform(put("/api/booking/7")
+                .content(this.convertObjectToJsonBytes(bookingDto))
+                .contentType(this.APPLICATION_JSON_UTF8))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    public void errors_should_be_answered_with_their_status_and_code() throws Exception {
+        when(bookingService.findBooking(1L)).thenThrow(new BookingValidationException(ErrorCode.BOOKING_NOT_FOUND,
+                "Invalid reservation Id!"));
+        when(bookingService.findBooking(2L)).thenThrow(new IllegalStateException("boom"));
+        when(bookingService.findAvailableCampsites(any(), any())).thenThrow(
+                new InvalidDateIntervalException("Check In date should be before Check Out"));
+
+        mockMvc.perform(get("/api/booking/1"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.code", is("BOOKING_NOT_FOUND")))
+                .andExpect(jsonPath("$.message", is("Invalid reservation Id!")));
+
+        mockMvc.perform(get("/api/booking/2"))
+                .andExpect(status().isInternalServerError())
+                .andExpect(jsonPath("$.code", is("INTERNAL_ERROR")));
+
+        mockMvc.perform(get("/api/booking/available/campsites")
+                .param("checkInDate", "2030-01-02")
+                .param("checkOutDate", "2030-01-01"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.code", is("INVALID_DATE_INTERVAL")));
+
+        mockMvc.perform(post("/api/booking")
+                .content("{not json")
+                .contentType(this.APPLICATION_JSON_UTF8))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.code", is("INVALID_REQUEST")));
+    }
+
     @Test
     public void givenValidInputShouldReturnBookingWhenBooking() throws Exception {
         //Arrange
@@ -0,0 +1,123 @@
+package com.upgrade.challenge.api.datasource;
+
+import com.upgrade.challenge.api.entity.Booking;
+import com.upgrade.challenge.api.repository.BookingRepository;
+import com.upgrade.challenge.api.service.BookingService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.io.File;
+import java.time.LocalDate;
+
+/**
+ * Two H2 databases, the replica being refreshed from a dump of the primary only when the test says so. The
+ * second-level cache is off so that reads reach the data sources.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+        "spring.datasource.url=" + ReplicaRoutingTest.PRIMARY_URL,
+        "booking.datasource.replicas=" + ReplicaRoutingTest.REPLICA_URL,
+        "booking.datasource.max-replica-lag=500ms",
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=false"
+})
+public class ReplicaRoutingTest {
+
+    static final String PRIMARY_URL = "jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE";
+
+    static final String REPLICA_URL = "jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE";
+
+    private final JdbcTemplate primary = new JdbcTemplate(new DriverManagerDataSource(PRIMARY_URL, "sa", ""));
+
+    private final JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", ""));
+
+    @Autowired
+    BookingService bookingService;
+
+    @Autowired
+    BookingRepository bookingRepository;
+
+    @Autowired
+    ReplicaLagGuard replicaLagGuard;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Before
+    public void replicate() throws Exception {
+        File dump = File.createTempFile("routing-primary", ".sql");
+        try {
+            primary.execute("SCRIPT TO '" + dump.getAbsolutePath() + "'");
+            replica.execute("DROP ALL OBJECTS");
+            replica.execute("RUNSCRIPT FROM '" + dump.getAbsolutePath() + "'");
+        } finally {
+            dump.delete();
+        }
+    }
+
+    private Booking book(int daysAhead) {
+        return bookingService.book(Booking.builder()
+                .campsiteId(2L)
+                .email("a@b.c")
+                .fullName("John Doe")
+                .checkInDate(LocalDate.now().plusDays(daysAhead))
+                .checkOutDate(LocalDate.now().plusDays(daysAhead + 1))
+                .build());
+    }
+
+    private double connections(String target) {
+        return meterRegistry.counter(ReplicaRoutingDataSource.CONNECTION_COUNTER, "target", target).count();
+    }
+
+    @Test
+    public void writes_should_go_to_the_primary_and_read_only_transactions_to_the_replica() throws Exception {
+        double primaryConnections = this.connections("primary");
+        double replicaConnections = this.connections("replica");
+        Booking booking = this.book(3);
+
+        Assert.assertEquals(Integer.valueOf(1), primary.queryForObject(
+                "SELECT COUNT(*) FROM booking WHERE id = ?", Integer.class, booking.getId()));
+        Assert.assertEquals(Integer.valueOf(0), replica.queryForObject(
+                "SELECT COUNT(*) FROM booking WHERE id = ?", Integer.class, booking.getId()));
+        Assert.assertEquals(primaryConnections + 1, this.connections("primary"), 0);
+        Assert.assertEquals(replicaConnections, this.connections("replica"), 0);
+
+        Assert.assertFalse(bookingRepository.findById(booking.getId()).isPresent());
+        Assert.assertEquals(replicaConnections + 1, this.connections("replica"), 0);
+
+        this.replicate();
+        Assert.assertTrue(bookingRepository.findById(booking.getId()).isPresent());
+    }
+
+    @Test
+    public void listings_should_be_read_from_the_primary() {
+        double replicaConnections = this.connections("replica");
+        Booking booking = this.book(7);
+
+        Assert.assertTrue(bookingService.findBookingsByEmail("a@b.c", null, 100).getBookings().stream()
+                .anyMatch(summary -> summary.getId().equals(booking.getId())));
+        Assert.assertTrue(bookingService.findBookingsByCheckIn(booking.getCheckInDate(), booking.getCheckInDate(),
+                null, 100).getBookings().stream()
+                .anyMatch(summary -> summary.getId().equals(booking.getId())));
+        Assert.assertEquals(replicaConnections, this.connections("replica"), 0);
+    }
+
+    @Test
+    public void recent_writes_should_be_read_from_the_primary() throws Exception {
+        Booking booking = this.book(5);
+        replicaLagGuard.written(booking.getId());
+
+        Assert.assertTrue(replicaLagGuard.read(booking.getId(), bookingRepository::findById).isPresent());
+
+        Thread.sleep(600);
+        Assert.assertFalse(replicaLagGuard.read(booking.getId(), bookingRepository::findById).isPresent());
+    }
+}
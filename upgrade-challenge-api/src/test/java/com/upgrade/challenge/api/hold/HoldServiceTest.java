@@ -0,0 +1,157 @@
+package com.upgrade.challenge.api.hold;
+
+import com.upgrade.challenge.api.availability.AvailabilityIndex;
+import com.upgrade.challenge.api.availability.ReservationEngine;
+import com.upgrade.challenge.api.entity.Booking;
+import com.upgrade.challenge.api.exceprions.BookingDateUnavailableException;
+import com.upgrade.challenge.api.exceprions.BookingValidationException;
+import com.upgrade.challenge.api.exceprions.ErrorCode;
+import com.upgrade.challenge.api.repository.BookingHoldRepository;
+import com.upgrade.challenge.api.service.BookingService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+        "booking.hold.ttl=1s",
+        "booking.hold.tick=10ms",
+        "booking.hold.flush-interval=10ms"})
+public class HoldServiceTest {
+
+    private static final long CAMPSITE_ID = 3L;
+
+    @Autowired
+    BookingService bookingService;
+
+    @Autowired
+    HoldManager holdManager;
+
+    @Autowired
+    BookingHoldRepository bookingHoldRepository;
+
+    @Autowired
+    AvailabilityIndex availabilityIndex;
+
+    @Autowired
+    ReservationEngine reservationEngine;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    ApplicationContext applicationContext;
+
+    private Set<LocalDate> availableDates(LocalDate from, LocalDate to) {
+        return bookingService.findAvailableDates(CAMPSITE_ID, from, to);
+    }
+
+    private static void await(String description, BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() - deadline > 0) {
+                Assert.fail("Timed out waiting until " + description);
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    public void held_nights_should_be_unavailable_until_the_hold_lapses() throws InterruptedException {
+        LocalDate checkIn = LocalDate.now().plusDays(20);
+        LocalDate checkOut = checkIn.plusDays(2);
+        Hold hold = bookingService.hold(CAMPSITE_ID, checkIn, checkOut);
+
+        Assert.assertFalse(availableDates(checkIn, checkOut).contains(checkIn));
+        Assert.assertFalse(availableDates(checkIn, checkOut).contains(checkIn.plusDays(1)));
+        try {
+            bookingService.book(Booking.builder()
+                    .campsiteId(CAMPSITE_ID)
+                    .email("a@b.c")
+                    .fullName("John Doe")
+                    .checkInDate(checkIn.plusDays(1))
+                    .checkOutDate(checkOut)
+                    .build());
+            Assert.fail("The nights are held");
+        } catch (BookingDateUnavailableException ex) {
+            // claimed by the hold
+        }
+        await("the hold is stored", () -> bookingHoldRepository.existsById(hold.getId()));
+
+        await("the hold lapses", () -> availableDates(checkIn, checkOut).contains(checkIn));
+        Assert.assertTrue(availableDates(checkIn, checkOut).contains(checkIn.plusDays(1)));
+        try {
+            bookingService.findHold(hold.getId());
+            Assert.fail("The hold lapsed");
+        } catch (BookingValidationException ex) {
+            Assert.assertEquals(ErrorCode.HOLD_NOT_FOUND, ex.getErrorCode());
+        }
+        await("the hold is deleted", () -> !bookingHoldRepository.existsById(hold.getId()));
+        Assert.assertTrue(meterRegistry.counter(HoldManager.HOLD_COUNTER, "outcome", "expired").count() >= 1);
+    }
+
+    @Test
+    public void a_converted_hold_should_keep_its_nights_reserved() throws InterruptedException {
+        LocalDate checkIn = LocalDate.now().plusDays(23);
+        LocalDate checkOut = checkIn.plusDays(3);
+        Hold hold = bookingService.hold(CAMPSITE_ID, checkIn, checkOut);
+
+        Booking booking = bookingService.bookHold(hold.getId(), Booking.builder()
+                .email("a@b.c")
+                .fullName("John Doe")
+                .build());
+
+        Assert.assertEquals(checkIn, booking.getCheckInDate());
+        Assert.assertEquals(Long.valueOf(CAMPSITE_ID), booking.getCampsiteId());
+        Thread.sleep(1500);
+        Assert.assertFalse(availableDates(checkIn, checkOut).contains(checkIn));
+        Assert.assertFalse(holdManager.find(hold.getId()).isPresent());
+        await("the hold is deleted", () -> !bookingHoldRepository.existsById(hold.getId()));
+
+        bookingService.cancel(booking.getId());
+        Assert.assertTrue(availableDates(checkIn, checkOut).contains(checkIn));
+    }
+
+    @Test
+    public void a_stored_hold_should_be_claimed_again_on_restart() throws InterruptedException {
+        LocalDate checkIn = LocalDate.now().plusDays(27);
+        LocalDate checkOut = checkIn.plusDays(1);
+        Hold hold = bookingService.hold(CAMPSITE_ID, checkIn, checkOut);
+        holdManager.flush();
+
+        // what a restarted node starts from: the bookings only
+        reservationEngine.load();
+        availabilityIndex.load();
+        Assert.assertTrue(availableDates(checkIn, checkOut).contains(checkIn));
+
+        HoldManager restarted = new HoldManager(availabilityIndex, reservationEngine,
+                applicationContext.getBeanProvider(BookingHoldRepository.class), transactionManager, meterRegistry,
+                Duration.ofSeconds(1), 100, Duration.ofMillis(10), Duration.ofMillis(10));
+        restarted.start();
+        try {
+            Assert.assertTrue(restarted.find(hold.getId()).isPresent());
+            Assert.assertFalse(availableDates(checkIn, checkOut).contains(checkIn));
+            Assert.assertTrue(reservationEngine.isClaimed(CAMPSITE_ID, checkIn.toEpochDay()));
+
+            await("the restored hold lapses", () -> !reservationEngine.isClaimed(CAMPSITE_ID, checkIn.toEpochDay()));
+            Assert.assertTrue(availableDates(checkIn, checkOut).contains(checkIn));
+        } finally {
+            restarted.stop();
+        }
+    }
+}
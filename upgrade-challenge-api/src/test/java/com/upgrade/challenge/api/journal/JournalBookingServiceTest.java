@@ -0,0 +1,257 @@
+package com.upgrade.challenge.api.journal;
+
+import com.upgrade.challenge.api.entity.Booking;
+import com.upgrade.challenge.api.entity.ReservedDay;
+import com.upgrade.challenge.api.repository.BookingRepository;
+import com.upgrade.challenge.api.repository.ReservedDayRepository;
+import com.upgrade.challenge.api.service.BookingService;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@ActiveProfiles("journal")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+public class JournalBookingServiceTest {
+
+    private static final String DIRECTORY_PROPERTY = "booking.journal.directory";
+
+    @ClassRule
+    public static TemporaryFolder folder = new TemporaryFolder();
+
+    private static Path directory;
+
+    @Autowired
+    BookingService bookingService;
+
+    @Autowired
+    BookingRepository bookingRepository;
+
+    @Autowired
+    ReservedDayRepository reservedDayRepository;
+
+    @Autowired
+    JournalStore journalStore;
+
+    @BeforeClass
+    public static void useFreshDirectory() throws Exception {
+        directory = folder.newFolder("journal").toPath();
+        System.setProperty(DIRECTORY_PROPERTY, directory.toString());
+    }
+
+    @AfterClass
+    public static void clearDirectory() {
+        System.clearProperty(DIRECTORY_PROPERTY);
+    }
+
+    private List<LocalDate> reservedDates(long campsiteId) {
+        return reservedDayRepository.findReservedDaysBetweenDates(campsiteId, LocalDate.now(), LocalDate.now().plusDays(60))
+                .stream()
+                .map(ReservedDay::getDate)
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    private static List<LocalDate> nights(JournalTransaction transaction, long campsiteId) {
+        return transaction.findNights(campsiteId, null, null).stream()
+                .map(ReservedDay::getDate)
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    private static Booking book(JournalStore store, long campsiteId, LocalDate checkIn) {
+        JournalTransaction transaction = store.begin();
+        Booking booking = transaction.saveBooking(Booking.builder()
+                .campsiteId(campsiteId)
+                .email("a@b.c")
+                .fullName("John Doe")
+                .checkInDate(checkIn)
+                .checkOutDate(checkIn.plusDays(1))
+                .build());
+        transaction.saveNight(ReservedDay.builder().campsiteId(campsiteId).date(checkIn).booking(booking).build());
+        store.commit(transaction);
+        return booking;
+    }
+
+    @Test
+    public void book_update_and_cancel_should_keep_reserved_days_in_sync() {
+        LocalDate today = LocalDate.now();
+        Booking booking = bookingService.book(Booking.builder()
+                .campsiteId(1L)
+                .email("a@b.c")
+                .fullName("John Doe")
+                .checkInDate(today.plusDays(5))
+                .checkOutDate(today.plusDays(8))
+                .build());
+
+        Assert.assertEquals(Long.valueOf(0), booking.getVersion());
+        Assert.assertThat(this.reservedDates(1L), contains(today.plusDays(5), today.plusDays(6), today.plusDays(7)));
+
+        Booking updated = bookingService.update(Booking.builder()
+                .id(booking.getId())
+                .checkInDate(today.plusDays(6))
+                .checkOutDate(today.plusDays(9))
+                .version(booking.getVersion())
+                .build());
+
+        Assert.assertEquals(Long.valueOf(1), updated.getVersion());
+        Assert.assertThat(this.reservedDates(1L), contains(today.plusDays(6), today.plusDays(7), today.plusDays(8)));
+        Assert.assertEquals(today.plusDays(9), bookingRepository.findById(booking.getId()).get().getCheckOutDate());
+
+        bookingService.cancel(booking.getId());
+
+        Assert.assertThat(this.reservedDates(1L), empty());
+        Assert.assertFalse(bookingRepository.findById(booking.getId()).isPresent());
+    }
+
+    @Test
+    @DirtiesContext
+    public void reopened_store_should_recover_from_snapshot_and_journal() throws Exception {
+        LocalDate today = LocalDate.now();
+        Booking kept = bookingService.book(Booking.builder()
+                .campsiteId(2L)
+                .email("a@b.c")
+                .fullName("John Doe")
+                .checkInDate(today.plusDays(10))
+                .checkOutDate(today.plusDays(12))
+                .build());
+        Booking cancelled = bookingService.book(Booking.builder()
+                .campsiteId(2L)
+                .email("a@b.c")
+                .fullName("John Doe")
+                .checkInDate(today.plusDays(20))
+                .checkOutDate(today.plusDays(22))
+                .build());
+        journalStore.snapshot();
+
+        bookingService.update(Booking.builder()
+                .id(kept.getId())
+                .campsiteId(2L)
+                .fullName("Jane Doe")
+                .checkInDate(today.plusDays(11))
+                .checkOutDate(today.plusDays(14))
+                .build());
+        bookingService.cancel(cancelled.getId());
+        Booking added = bookingService.book(Booking.builder()
+                .campsiteId(3L)
+                .email("a@b.c")
+                .fullName("John Doe")
+                .checkInDate(today.plusDays(10))
+                .checkOutDate(today.plusDays(11))
+                .build());
+        journalStore.close();
+
+        JournalStore reopened = new JournalStore(directory, 1024 * 1024, false, Duration.ZERO);
+        reopened.open();
+        try {
+            JournalTransaction transaction = reopened.begin();
+            Booking recovered = transaction.findBooking(kept.getId());
+            Assert.assertEquals("Jane Doe", recovered.getFullName());
+            Assert.assertEquals(Long.valueOf(1), recovered.getVersion());
+            Assert.assertNull(transaction.findBooking(cancelled.getId()));
+            Assert.assertEquals(Long.valueOf(0), transaction.findBooking(added.getId()).getVersion());
+            Assert.assertEquals(2, transaction.countBookings());
+
+            Assert.assertThat(nights(transaction, 2L), contains(today.plusDays(11), today.plusDays(12), today.plusDays(13)));
+            Assert.assertThat(nights(transaction, 3L), contains(today.plusDays(10)));
+            Assert.assertTrue(reopened.nextBookingId() > added.getId());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    public void commit_of_a_stale_booking_should_fail_on_its_version() {
+        LocalDate today = LocalDate.now();
+        Booking booking = bookingService.book(Booking.builder()
+                .campsiteId(3L)
+                .email("a@b.c")
+                .fullName("John Doe")
+                .checkInDate(today.plusDays(25))
+                .checkOutDate(today.plusDays(26))
+                .build());
+
+        JournalTransaction first = journalStore.begin();
+        JournalTransaction second = journalStore.begin();
+        first.findBooking(booking.getId()).setFullName("Jane Doe");
+        second.findBooking(booking.getId()).setFullName("Jim Doe");
+        journalStore.commit(first);
+        try {
+            journalStore.commit(second);
+            Assert.fail();
+        } catch (ObjectOptimisticLockingFailureException ex) {
+            // read at version 0, which the first commit moved to 1
+        }
+
+        Booking committed = bookingRepository.findById(booking.getId()).get();
+        Assert.assertEquals("Jane Doe", committed.getFullName());
+        Assert.assertEquals(Long.valueOf(1), committed.getVersion());
+        bookingService.cancel(booking.getId());
+    }
+
+    @Test
+    public void recovery_should_stop_at_a_torn_tail_and_drop_it() throws Exception {
+        Path torn = folder.newFolder("torn").toPath();
+        LocalDate today = LocalDate.now();
+        // the stores are never closed, as in a crash, so recovery only has the journal to go by
+        JournalStore crashed = new JournalStore(torn, 1024 * 1024, false, Duration.ZERO);
+        crashed.open();
+        Booking kept = book(crashed, 1L, today.plusDays(5));
+        Booking lost = book(crashed, 1L, today.plusDays(6));
+
+        Path segment;
+        try (Stream<Path> files = Files.list(torn)) {
+            segment = files.filter(file -> file.getFileName().toString().startsWith("journal-")).findFirst().get();
+        }
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            // a record is its length, its checksum and its payload; one payload byte of the second is flipped
+            long second = 2 * Integer.BYTES + file.readInt();
+            file.seek(second + 2 * Integer.BYTES + 1);
+            int value = file.read();
+            file.seek(second + 2 * Integer.BYTES + 1);
+            file.write(value ^ 0xFF);
+        }
+
+        JournalStore recovered = new JournalStore(torn, 1024 * 1024, false, Duration.ZERO);
+        recovered.open();
+        JournalTransaction transaction = recovered.begin();
+        Assert.assertNotNull(transaction.findBooking(kept.getId()));
+        Assert.assertNull(transaction.findBooking(lost.getId()));
+        Assert.assertEquals(1, transaction.countBookings());
+        Booking added = book(recovered, 1L, today.plusDays(7));
+
+        JournalStore reopened = new JournalStore(torn, 1024 * 1024, false, Duration.ZERO);
+        reopened.open();
+        try {
+            transaction = reopened.begin();
+            Assert.assertEquals(2, transaction.countBookings());
+            Assert.assertEquals(today.plusDays(7), transaction.findBooking(added.getId()).getCheckInDate());
+            Assert.assertThat(nights(transaction, 1L), contains(today.plusDays(5), today.plusDays(7)));
+        } finally {
+            reopened.close();
+        }
+    }
+}
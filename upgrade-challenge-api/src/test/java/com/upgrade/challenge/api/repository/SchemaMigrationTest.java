@@ -0,0 +1,94 @@
+package com.upgrade.challenge.api.repository;
+
+import com.upgrade.challenge.api.entity.Booking;
+import com.upgrade.challenge.api.service.BookingService;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.hamcrest.Matchers.containsString;
+
+/**
+ * Boots on the Flyway schema with Hibernate validating it, as the prod profile does. The SQL Hibernate sends is
+ * recorded, so the plans checked are those of the statements the repository actually runs.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:migrated;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+        "spring.flyway.enabled=true",
+        "spring.jpa.hibernate.ddl-auto=validate",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                + "com.upgrade.challenge.api.repository.SchemaMigrationTest$RecordingInspector"
+})
+public class SchemaMigrationTest {
+
+    @Autowired
+    BookingService bookingService;
+
+    @Autowired
+    BookingRepository bookingRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    public static class RecordingInspector implements StatementInspector {
+
+        static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            STATEMENTS.add(sql);
+            return sql;
+        }
+    }
+
+    private static String lastStatement() {
+        Assert.assertFalse(RecordingInspector.STATEMENTS.isEmpty());
+        return RecordingInspector.STATEMENTS.get(RecordingInspector.STATEMENTS.size() - 1);
+    }
+
+    @Test
+    public void migrated_schema_should_match_the_entities() {
+        LocalDate checkIn = LocalDate.now().plusDays(3);
+        Booking booking = bookingService.book(Booking.builder()
+                .email("a@b.c")
+                .fullName("John Doe")
+                .checkInDate(checkIn)
+                .checkOutDate(checkIn.plusDays(2))
+                .build());
+
+        Assert.assertNotNull(booking.getId());
+        Assert.assertEquals(Long.valueOf(0L), booking.getVersion());
+    }
+
+    /**
+     * The parameters are bound in the order they appear in the generated SQL, the page size last.
+     */
+    @Test
+    public void booking_lookups_should_seek_along_their_indexes() {
+        Date afterCheckIn = Date.valueOf(LocalDate.now());
+        Date lastCheckIn = Date.valueOf(LocalDate.now().plusDays(30));
+
+        bookingRepository.findByEmailAfter("a@b.c", afterCheckIn.toLocalDate(), 0L, PageRequest.of(0, 21));
+        String byEmail = jdbcTemplate.queryForObject("EXPLAIN " + lastStatement(), String.class,
+                "a@b.c", afterCheckIn, afterCheckIn, 0L, 21);
+        Assert.assertThat(byEmail.toUpperCase(), containsString("IDX_BOOKING_EMAIL"));
+
+        bookingRepository.findByCheckInAfter(afterCheckIn.toLocalDate(), 0L, lastCheckIn.toLocalDate(),
+                PageRequest.of(0, 21));
+        String byCheckIn = jdbcTemplate.queryForObject("EXPLAIN " + lastStatement(), String.class,
+                lastCheckIn, afterCheckIn, afterCheckIn, 0L, 21);
+        Assert.assertThat(byCheckIn.toUpperCase(), containsString("IDX_BOOKING_CHECK_IN"));
+    }
+}
@@ -0,0 +1,132 @@
+package com.upgrade.challenge.api.repository;
+
+import com.upgrade.challenge.api.entity.Booking;
+import com.upgrade.challenge.api.entity.ReservedDay;
+import com.upgrade.challenge.api.metrics.SecondLevelCacheMetrics;
+import com.upgrade.challenge.api.service.BookingService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class SecondLevelCacheTest {
+
+    private static final long CAMPSITE_ID = 3L;
+
+    @Autowired
+    BookingService bookingService;
+
+    @Autowired
+    BookingRepository bookingRepository;
+
+    @Autowired
+    ReservedDayRepository reservedDayRepository;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    Statistics statistics;
+
+    @Before
+    public void setup() {
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    private List<LocalDate> reservedDates() {
+        return reservedDayRepository.findReservedDaysBetweenDates(CAMPSITE_ID, LocalDate.now().plusDays(5), LocalDate.now().plusDays(10))
+                .stream()
+                .map(ReservedDay::getDate)
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    private long queryCacheHits() {
+        CacheRegionStatistics region = statistics.getQueryRegionStatistics(ReservedDayRepository.RANGE_CACHE_REGION);
+        return region == null ? 0 : region.getHitCount();
+    }
+
+    @Test
+    public void cached_range_reads_should_follow_book_update_and_cancel() {
+        LocalDate today = LocalDate.now();
+        Booking booking = bookingService.book(Booking.builder()
+                .campsiteId(CAMPSITE_ID)
+                .email("a@b.c")
+                .fullName("John Doe")
+                .checkInDate(today.plusDays(5))
+                .checkOutDate(today.plusDays(7))
+                .build());
+
+        Assert.assertThat(this.reservedDates(), contains(today.plusDays(5), today.plusDays(6)));
+        long hits = this.queryCacheHits();
+        Assert.assertThat(this.reservedDates(), contains(today.plusDays(5), today.plusDays(6)));
+        Assert.assertEquals(hits + 1, this.queryCacheHits());
+
+        bookingService.update(Booking.builder()
+                .id(booking.getId())
+                .campsiteId(CAMPSITE_ID)
+                .checkInDate(today.plusDays(6))
+                .checkOutDate(today.plusDays(9))
+                .build());
+        Assert.assertThat(this.reservedDates(), contains(today.plusDays(6), today.plusDays(7), today.plusDays(8)));
+        Assert.assertThat(this.reservedDates(), contains(today.plusDays(6), today.plusDays(7), today.plusDays(8)));
+
+        bookingService.cancel(booking.getId());
+        Assert.assertThat(this.reservedDates(), empty());
+
+        Assert.assertNotNull(meterRegistry.find(SecondLevelCacheMetrics.HIT_RATIO_GAUGE)
+                .tag("region", ReservedDayRepository.RANGE_CACHE_REGION).gauge());
+        Assert.assertTrue(meterRegistry.find(SecondLevelCacheMetrics.HIT_RATIO_GAUGE)
+                .tag("region", ReservedDayRepository.RANGE_CACHE_REGION).gauge().value() > 0);
+        Assert.assertNotNull(meterRegistry.find("hibernate.sessions.open").functionCounter());
+    }
+
+    @Test
+    public void cached_bookings_should_follow_updates() {
+        LocalDate checkIn = LocalDate.now().plusDays(20);
+        Booking booking = bookingService.book(Booking.builder()
+                .campsiteId(CAMPSITE_ID)
+                .email("a@b.c")
+                .fullName("John Doe")
+                .checkInDate(checkIn)
+                .checkOutDate(checkIn.plusDays(1))
+                .build());
+
+        CacheRegionStatistics region = statistics.getDomainDataRegionStatistics(Booking.CACHE_REGION);
+        long hits = region.getHitCount();
+        Assert.assertEquals("John Doe", bookingRepository.findById(booking.getId()).get().getFullName());
+        Assert.assertEquals(hits + 1, region.getHitCount());
+
+        bookingService.update(Booking.builder()
+                .id(booking.getId())
+                .campsiteId(CAMPSITE_ID)
+                .fullName("Jane Doe")
+                .build());
+
+        Booking cached = bookingRepository.findById(booking.getId()).get();
+        Assert.assertEquals("Jane Doe", cached.getFullName());
+        Assert.assertEquals(Long.valueOf(1), cached.getVersion());
+
+        bookingService.cancel(booking.getId());
+        Assert.assertFalse(bookingRepository.findById(booking.getId()).isPresent());
+    }
+}
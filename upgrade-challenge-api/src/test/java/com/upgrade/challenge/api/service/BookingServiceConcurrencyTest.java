@@ -1,24 +1,32 @@
 package com.upgrade.challenge.api.service;
 
+import com.upgrade.challenge.api.availability.AvailabilityIndex;
+import com.upgrade.challenge.api.availability.ReservationEngine;
 import com.upgrade.challenge.api.entity.Booking;
-import com.upgrade.challenge.api.entity.ReservedDay;
+import com.upgrade.challenge.api.exceprions.BookingDateUnavailableException;
 import com.upgrade.challenge.api.repository.BookingRepository;
 import com.upgrade.challenge.api.repository.ReservedDayRepository;
+import org.junit.After;
 import org.junit.Assert;
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
-import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
 import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
-
-import static org.hamcrest.Matchers.hasSize;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @RunWith(SpringJUnit4ClassRunner.class)
 @SpringBootTest
@@ -26,6 +34,8 @@ public class BookingServiceConcurrencyTest {
 
     public final int NUMBER_OF_EXECUTIONS = 10;
 
+    public final int NUMBER_OF_CONTENDERS = 300;
+
     @Autowired
     BookingService bookingService;
 
@@ -35,9 +45,24 @@ public class BookingServiceConcurrencyTest {
     @Autowired
     ReservedDayRepository reservedDayRepository;
 
+    @Autowired
+    AvailabilityIndex availabilityIndex;
+
+    @Autowired
+    ReservationEngine reservationEngine;
+
+    @Before
+    @After
+    public void cleanUp() {
+        reservedDayRepository.deleteAll();
+        bookingRepository.deleteAll();
+        availabilityIndex.load();
+        reservationEngine.load();
+    }
+
     @Test
     public void book_concurrent_should_be_ok() throws InterruptedException {
-        final ExecutorService executor = Executors.newFixedThreadPool(NUMBER_OF_EXECUTIONS + 1);
+        final ExecutorService executor = Executors.newFixedThreadPool(NUMBER_OF_EXECUTIONS);
 
         for (int i = 1; i <= NUMBER_OF_EXECUTIONS; i++) {
             Booking booking = Booking.builder()
@@ -49,6 +74,9 @@ public class BookingServiceConcurrencyTest {
             executor.execute(() -> bookingService.book(booking));
         }
 
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+
         Booking bookingWithReservedDate = Booking.builder()
                 .email("a@b.c")
                 .fullName("John Doe")
@@ -56,13 +84,68 @@ public class BookingServiceConcurrencyTest {
                 .checkOutDate(LocalDate.now().plusDays(3))
                 .build();
 
-        executor.execute(() -> bookingService.book(bookingWithReservedDate));
-
-        executor.shutdown();
-        executor.awaitTermination(1, TimeUnit.MINUTES);
+        try {
+            bookingService.book(bookingWithReservedDate);
+            Assert.fail("Booking of reserved dates should be rejected");
+        } catch (BookingDateUnavailableException expected) {
+        }
 
         Assert.assertEquals(bookingRepository.count(), NUMBER_OF_EXECUTIONS);
         Assert.assertEquals(reservedDayRepository.count(), NUMBER_OF_EXECUTIONS);
+    }
+
+    @Test
+    public void high_contention_should_book_each_night_once() throws InterruptedException {
+        final ExecutorService executor = Executors.newFixedThreadPool(NUMBER_OF_CONTENDERS);
+        final CountDownLatch startGate = new CountDownLatch(1);
+        final Queue<Booking> booked = new ConcurrentLinkedQueue<>();
+        final AtomicInteger rejected = new AtomicInteger();
+        final Queue<Throwable> unexpected = new ConcurrentLinkedQueue<>();
+        final Random random = new Random(42);
+
+        for (int i = 0; i < NUMBER_OF_CONTENDERS; i++) {
+            int checkIn = 21 + random.nextInt(6);
+            int nights = 1 + random.nextInt(3);
+            Booking booking = Booking.builder()
+                    .email("a@b.c")
+                    .fullName("John Doe")
+                    .checkInDate(LocalDate.now().plusDays(checkIn))
+                    .checkOutDate(LocalDate.now().plusDays(checkIn + nights))
+                    .build();
+
+            executor.execute(() -> {
+                try {
+                    startGate.await();
+                    booked.add(bookingService.book(booking));
+                } catch (BookingDateUnavailableException ex) {
+                    rejected.incrementAndGet();
+                } catch (Throwable ex) {
+                    unexpected.add(ex);
+                }
+            });
+        }
+
+        startGate.countDown();
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+        Assert.assertTrue(unexpected.toString(), unexpected.isEmpty());
+        Assert.assertFalse(booked.isEmpty());
+        Assert.assertEquals(NUMBER_OF_CONTENDERS, booked.size() + rejected.get());
+
+        List<Booking> winners = new ArrayList<>(booked);
+        long nights = 0;
+        for (int i = 0; i < winners.size(); i++) {
+            Booking a = winners.get(i);
+            nights += ChronoUnit.DAYS.between(a.getCheckInDate(), a.getCheckOutDate());
+            for (int j = i + 1; j < winners.size(); j++) {
+                Booking b = winners.get(j);
+                Assert.assertFalse("Overlapping bookings " + a + " and " + b,
+                        a.getCheckInDate().isBefore(b.getCheckOutDate()) && b.getCheckInDate().isBefore(a.getCheckOutDate()));
+            }
+        }
 
+        Assert.assertEquals(winners.size(), bookingRepository.count());
+        Assert.assertEquals(nights, reservedDayRepository.count());
     }
 }
@@ -0,0 +1,406 @@
+package com.upgrade.challenge.api.service;
+
+import com.upgrade.challenge.api.availability.AvailabilityIndex;
+import com.upgrade.challenge.api.availability.ReservationEngine;
+import com.upgrade.challenge.api.entity.Booking;
+import com.upgrade.challenge.api.entity.ReservedDay;
+import com.upgrade.challenge.api.exceprions.BookingDateUnavailableException;
+import com.upgrade.challenge.api.exceprions.BookingVersionMismatchException;
+import com.upgrade.challenge.api.metrics.BookingMetricsAspect;
+import com.upgrade.challenge.api.repository.BookingRepository;
+import com.upgrade.challenge.api.repository.BookingSummary;
+import com.upgrade.challenge.api.repository.ReservedDayRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringBootTest
+public class BookingServiceIntegrationTest {
+
+    @Autowired
+    BookingService bookingService;
+
+    @Autowired
+    BookingRepository bookingRepository;
+
+    @Autowired
+    ReservedDayRepository reservedDayRepository;
+
+    @Autowired
+    AvailabilityIndex availabilityIndex;
+
+    @Autowired
+    ReservationEngine reservationEngine;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Before
+    @After
+    public void cleanUp() {
+        reservedDayRepository.deleteAll();
+        bookingRepository.deleteAll();
+        availabilityIndex.load();
+        reservationEngine.load();
+    }
+
+    private List<LocalDate> reservedDates() {
+        return reservedDayRepository.findReservedDaysBetweenDates(LocalDate.now(), LocalDate.now().plusDays(40)).stream()
+                .map(ReservedDay::getDate)
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void book_update_and_cancel_should_keep_reserved_days_in_sync() {
+        LocalDate today = LocalDate.now();
+        Booking booking = bookingService.book(Booking.builder()
+                .email("a@b.c")
+                .fullName("John Doe")
+                .checkInDate(today.plusDays(5))
+                .checkOutDate(today.plusDays(8))
+                .build());
+
+        Assert.assertThat(this.reservedDates(), contains(today.plusDays(5), today.plusDays(6), today.plusDays(7)));
+        Assert.assertTrue(reservedDayRepository.findByDate(today.plusDays(5)).isPresent());
+        Assert.assertTrue(reservedDayRepository.findByDate(1L, today.plusDays(5)).isPresent());
+        Assert.assertFalse(reservedDayRepository.findByDate(2L, today.plusDays(5)).isPresent());
+
+        bookingService.update(Booking.builder()
+                .id(booking.getId())
+                .checkInDate(today.plusDays(6))
+                .checkOutDate(today.plusDays(9))
+                .build());
+
+        Assert.assertThat(this.reservedDates(), contains(today.plusDays(6), today.plusDays(7), today.plusDays(8)));
+
+        bookingService.update(Booking.builder()
+                .id(booking.getId())
+                .checkInDate(today.plusDays(7))
+                .checkOutDate(today.plusDays(8))
+                .build());
+
+        Assert.assertThat(this.reservedDates(), contains(today.plusDays(7)));
+
+        bookingService.cancel(booking.getId());
+
+        Assert.assertThat(this.reservedDates(), empty());
+        Assert.assertEquals(0, bookingRepository.count());
+    }
+
+    @Test
+    public void stay_search_should_rank_and_page_every_free_stay() {
+        LocalDate today = LocalDate.now();
+        bookingService.book(Booking.builder()
+                .campsiteId(1L)
+                .email("a@b.c")
+                .fullName("John Doe")
+                .checkInDate(today.plusDays(2))
+                .checkOutDate(today.plusDays(4))
+                .build());
+
+        Page<AvailableStay> stays = bookingService.findAvailableStays(1L, 3, today, today.plusDays(6), PageRequest.of(0, 10));
+        Assert.assertEquals(3, stays.getTotalElements());
+        Assert.assertThat(stays.stream().map(AvailableStay::getCheckInDate).collect(Collectors.toList()),
+                contains(today.plusDays(4), today.plusDays(5), today.plusDays(6)));
+        Assert.assertEquals(today.plusDays(7), stays.getContent().get(0).getCheckOutDate());
+
+        // by check-in date, then campsite: (+1, 2), (+1, 3), (+2, 2), (+2, 3)
+        Page<AvailableStay> secondPage = bookingService.findAvailableStays(null, 3, today, today.plusDays(2), PageRequest.of(1, 3));
+        Assert.assertEquals(4, secondPage.getTotalElements());
+        Assert.assertEquals(1, secondPage.getNumberOfElements());
+        Assert.assertEquals(new AvailableStay(3L, today.plusDays(2), today.plusDays(5)), secondPage.getContent().get(0));
+
+        Assert.assertEquals(BookingValidator.MAX_DAYS_AHEAD,
+                bookingService.findAvailableStays(2L, 1, null, null, PageRequest.of(0, 50)).getTotalElements());
+    }
+
+    @Test
+    public void lookups_should_page_with_cursors_by_check_in_date() {
+        LocalDate today = LocalDate.now();
+        List<Long> guestBookings = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            // two bookings per check-in date, so pages also seek by id
+            Booking booking = bookingService.book(Booking.builder()
+                    .campsiteId(1L + i % 2)
+                    .email(i == 4 ? "other@b.c" : "guest@b.c")
+                    .fullName("John Doe")
+                    .checkInDate(today.plusDays(10 - i / 2))
+                    .checkOutDate(today.plusDays(11 - i / 2))
+                    .build());
+            if (i != 4) {
+                guestBookings.add(booking.getId());
+            }
+        }
+
+        BookingListing first = bookingService.findBookingsByEmail("guest@b.c", null, 3);
+        Assert.assertThat(first.getBookings().stream().map(BookingSummary::getId).collect(Collectors.toList()),
+                contains(guestBookings.get(2), guestBookings.get(3), guestBookings.get(0)));
+        Assert.assertNotNull(first.getNextCursor());
+        BookingListing last = bookingService.findBookingsByEmail("guest@b.c", first.getNextCursor(), 3);
+        Assert.assertThat(last.getBookings().stream().map(BookingSummary::getId).collect(Collectors.toList()),
+                contains(guestBookings.get(1)));
+        Assert.assertNull(last.getNextCursor());
+
+        List<LocalDate> checkIns = new ArrayList<>();
+        String cursor = null;
+        do {
+            BookingListing page = bookingService.findBookingsByCheckIn(today.plusDays(9), today.plusDays(10), cursor, 2);
+            page.getBookings().forEach(booking -> checkIns.add(booking.getCheckInDate()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        Assert.assertThat(checkIns, contains(today.plusDays(9), today.plusDays(9), today.plusDays(10), today.plusDays(10)));
+    }
+
+    @Test
+    public void same_nights_should_be_bookable_once_per_campsite() {
+        LocalDate checkIn = LocalDate.now().plusDays(10);
+        LocalDate checkOut = LocalDate.now().plusDays(12);
+        for (long campsiteId = 1; campsiteId <= 2; campsiteId++) {
+            bookingService.book(Booking.builder()
+                    .campsiteId(campsiteId)
+                    .email("a@b.c")
+                    .fullName("John Doe")
+                    .checkInDate(checkIn)
+                    .checkOutDate(checkOut)
+                    .build());
+        }
+
+        Assert.assertThat(bookingService.findAvailableCampsites(checkIn, checkOut), contains(3L));
+        Assert.assertThat(bookingService.findAvailableCampsites(checkOut, checkOut.plusDays(1)), containsInAnyOrder(1L, 2L, 3L));
+        Assert.assertThat(bookingService.findAvailableDates(3L, checkIn, checkIn), contains(checkIn));
+        Assert.assertThat(bookingService.findAvailableDates(1L, checkIn, checkIn), empty());
+    }
+
+    @Test
+    public void rejected_booking_should_be_metered_as_conflict() {
+        Booking.BookingBuilder booking = Booking.builder()
+                .email("a@b.c")
+                .fullName("John Doe")
+                .checkInDate(LocalDate.now().plusDays(20))
+                .checkOutDate(LocalDate.now().plusDays(22));
+        bookingService.book(booking.build());
+
+        double conflicts = meterRegistry.counter(BookingMetricsAspect.CONFLICT_COUNTER,
+                "operation", "book", "source", "claim").count();
+        try {
+            bookingService.book(booking.build());
+            Assert.fail();
+        } catch (BookingDateUnavailableException ex) {
+            // expected
+        }
+
+        Assert.assertEquals(conflicts + 1, meterRegistry.counter(BookingMetricsAspect.CONFLICT_COUNTER,
+                "operation", "book", "source", "claim").count(), 0);
+        Assert.assertNotNull(meterRegistry.find("booking.service").tag("method", "book").timer());
+        Assert.assertNotNull(meterRegistry.find(BookingMetricsAspect.TRANSACTION_TIMER)
+                .tags("method", "book", "exception", "none").timer());
+        Assert.assertNotNull(meterRegistry.find(BookingMetricsAspect.REPOSITORY_TIMER)
+                .tags("repository", "ReservedDayRepository", "method", "saveAll").timer());
+    }
+
+    private PendingBooking awaitCompletion(String token) throws InterruptedException {
+        for (int attempt = 0; attempt < 100; attempt++) {
+            PendingBooking pendingBooking = bookingService.findPendingBooking(token);
+            if (pendingBooking.getStatus() != PendingBooking.Status.PENDING) {
+                return pendingBooking;
+            }
+            Thread.sleep(50);
+        }
+        throw new AssertionError("Reservation " + token + " is still pending.");
+    }
+
+    @Test
+    public void async_bookings_should_be_confirmed_by_the_writer() throws InterruptedException {
+        LocalDate today = LocalDate.now();
+        List<String> tokens = new ArrayList<>();
+        for (long campsiteId = 1; campsiteId <= 3; campsiteId++) {
+            tokens.add(bookingService.bookAsync(Booking.builder()
+                    .campsiteId(campsiteId)
+                    .email("a@b.c")
+                    .fullName("John Doe")
+                    .checkInDate(today.plusDays(15))
+                    .checkOutDate(today.plusDays(17))
+                    .build()).getToken());
+        }
+
+        try {
+            bookingService.bookAsync(Booking.builder()
+                    .campsiteId(2L)
+                    .email("a@b.c")
+                    .fullName("John Doe")
+                    .checkInDate(today.plusDays(16))
+                    .checkOutDate(today.plusDays(18))
+                    .build());
+            Assert.fail();
+        } catch (BookingDateUnavailableException ex) {
+            // claimed by the pending booking
+        }
+
+        for (String token : tokens) {
+            PendingBooking pendingBooking = this.awaitCompletion(token);
+            Assert.assertEquals(PendingBooking.Status.CONFIRMED, pendingBooking.getStatus());
+            Assert.assertTrue(bookingRepository.findById(pendingBooking.getBookingId()).isPresent());
+        }
+        Assert.assertEquals(6, this.reservedDates().size());
+        Assert.assertThat(bookingService.findAvailableCampsites(today.plusDays(15), today.plusDays(16)), empty());
+    }
+
+    private long bookingLoads() {
+        Timer timer = meterRegistry.find(BookingMetricsAspect.REPOSITORY_TIMER)
+                .tags("repository", "BookingRepository", "method", "findById").timer();
+        return timer == null ? 0 : timer.count();
+    }
+
+    @Test
+    public void update_with_a_stale_version_should_be_refused() {
+        LocalDate checkIn = LocalDate.now().plusDays(5);
+        Booking booking = bookingService.book(Booking.builder()
+                .email("a@b.c")
+                .fullName("John Doe")
+                .checkInDate(checkIn)
+                .checkOutDate(checkIn.plusDays(2))
+                .build());
+        Long readVersion = booking.getVersion();
+
+        Booking updated = bookingService.update(Booking.builder()
+                .id(booking.getId())
+                .campsiteId(booking.getCampsiteId())
+                .checkInDate(checkIn.plusDays(1))
+                .checkOutDate(checkIn.plusDays(3))
+                .version(readVersion)
+                .build());
+        Assert.assertNotEquals(readVersion, updated.getVersion());
+        Assert.assertEquals(updated.getVersion(), bookingService.findBooking(booking.getId()).getVersion());
+
+        try {
+            bookingService.update(Booking.builder()
+                    .id(booking.getId())
+                    .campsiteId(booking.getCampsiteId())
+                    .checkInDate(checkIn.plusDays(10))
+                    .checkOutDate(checkIn.plusDays(12))
+                    .version(readVersion)
+                    .build());
+            Assert.fail("A stale version should be refused");
+        } catch (BookingVersionMismatchException expected) {
+        }
+
+        Assert.assertThat(this.reservedDates(), contains(checkIn.plusDays(1), checkIn.plusDays(2)));
+        Assert.assertTrue(availabilityIndex.isAvailable(1L, checkIn.plusDays(10).toEpochDay(), checkIn.plusDays(12).toEpochDay()));
+    }
+
+    @Test
+    public void find_booking_should_be_served_from_cache_and_follow_commits() {
+        Booking booking = bookingService.book(Booking.builder()
+                .email("a@b.c")
+                .fullName("John Doe")
+                .checkInDate(LocalDate.now().plusDays(25))
+                .checkOutDate(LocalDate.now().plusDays(27))
+                .build());
+
+        long loads = this.bookingLoads();
+        Assert.assertEquals("John Doe", bookingService.findBooking(booking.getId()).getFullName());
+        Assert.assertEquals(loads, this.bookingLoads());
+
+        bookingService.update(Booking.builder()
+                .id(booking.getId())
+                .fullName("Jane Doe")
+                .build());
+
+        loads = this.bookingLoads();
+        Assert.assertEquals("Jane Doe", bookingService.findBooking(booking.getId()).getFullName());
+        Assert.assertEquals(loads, this.bookingLoads());
+
+        bookingService.cancel(booking.getId());
+        try {
+            bookingService.findBooking(booking.getId());
+            Assert.fail();
+        } catch (IllegalArgumentException ex) {
+            // removed from the cache on commit
+        }
+    }
+
+    @Test
+    public void bulk_book_and_cancel_should_report_each_item() {
+        LocalDate today = LocalDate.now();
+        List<BookingResult> booked = bookingService.bookAll(Arrays.asList(
+                Booking.builder().campsiteId(1L).email("a@b.c").fullName("John Doe")
+                        .checkInDate(today.plusDays(5)).checkOutDate(today.plusDays(7)).build(),
+                Booking.builder().campsiteId(1L).email("a@b.c").fullName("John Doe")
+                        .checkInDate(today.plusDays(6)).checkOutDate(today.plusDays(8)).build(),
+                Booking.builder().campsiteId(2L).email("").fullName("John Doe")
+                        .checkInDate(today.plusDays(5)).checkOutDate(today.plusDays(7)).build(),
+                Booking.builder().campsiteId(2L).email("a@b.c").fullName("John Doe")
+                        .checkInDate(today.plusDays(5)).checkOutDate(today.plusDays(7)).build()));
+
+        Assert.assertEquals(Arrays.asList(BookingResult.Status.OK, BookingResult.Status.REJECTED,
+                BookingResult.Status.REJECTED, BookingResult.Status.OK),
+                booked.stream().map(BookingResult::getStatus).collect(Collectors.toList()));
+        Assert.assertEquals(4, this.reservedDates().size());
+        Assert.assertThat(bookingService.findAvailableCampsites(today.plusDays(5), today.plusDays(7)), contains(3L));
+
+        Long first = booked.get(0).getBookingId();
+        Long last = booked.get(3).getBookingId();
+        List<BookingResult> cancelled = bookingService.cancelAll(Arrays.asList(first, first, -1L, last));
+
+        Assert.assertEquals(Arrays.asList(BookingResult.Status.OK, BookingResult.Status.REJECTED,
+                BookingResult.Status.REJECTED, BookingResult.Status.OK),
+                cancelled.stream().map(BookingResult::getStatus).collect(Collectors.toList()));
+        Assert.assertThat(this.reservedDates(), empty());
+        Assert.assertEquals(0, bookingRepository.count());
+        Assert.assertThat(bookingService.findAvailableCampsites(today.plusDays(5), today.plusDays(7)),
+                containsInAnyOrder(1L, 2L, 3L));
+    }
+
+    @Test
+    public void failed_bulk_book_should_give_back_the_nights_it_claimed() {
+        LocalDate today = LocalDate.now();
+        // reserved behind the engine's back, as by another node, so only the unique key finds the conflict
+        Booking elsewhere = bookingRepository.save(Booking.builder().campsiteId(1L).email("a@b.c").fullName("Jane Doe")
+                .checkInDate(today.plusDays(9)).checkOutDate(today.plusDays(10)).build());
+        reservedDayRepository.save(ReservedDay.builder().campsiteId(1L).date(today.plusDays(9)).booking(elsewhere).build());
+
+        try {
+            bookingService.bookAll(Arrays.asList(
+                    Booking.builder().campsiteId(2L).email("a@b.c").fullName("John Doe")
+                            .checkInDate(today.plusDays(5)).checkOutDate(today.plusDays(7)).build(),
+                    null,
+                    Booking.builder().campsiteId(1L).email("a@b.c").fullName("John Doe")
+                            .checkInDate(today.plusDays(9)).checkOutDate(today.plusDays(10)).build()));
+            Assert.fail();
+        } catch (DataIntegrityViolationException ex) {
+            // the whole batch rolls back
+        }
+
+        Booking booking = bookingService.book(Booking.builder().campsiteId(2L).email("a@b.c").fullName("John Doe")
+                .checkInDate(today.plusDays(5)).checkOutDate(today.plusDays(7)).build());
+        Assert.assertNotNull(booking.getId());
+
+        List<BookingResult> results = bookingService.bookAll(Arrays.asList(null,
+                Booking.builder().campsiteId(3L).email("a@b.c").fullName("John Doe")
+                        .checkInDate(today.plusDays(5)).checkOutDate(today.plusDays(7)).build()));
+        Assert.assertEquals(Arrays.asList(BookingResult.Status.REJECTED, BookingResult.Status.OK),
+                results.stream().map(BookingResult::getStatus).collect(Collectors.toList()));
+    }
+}
@@ -1,9 +1,11 @@
 package com.upgrade.challenge.api.service;
 
+import com.upgrade.challenge.api.availability.AvailabilityIndex;
 import com.upgrade.challenge.api.entity.Booking;
 import com.upgrade.challenge.api.entity.ReservedDay;
 import com.upgrade.challenge.api.exceprions.InvalidDateIntervalException;
 import com.upgrade.challenge.api.repository.BookingRepository;
+import com.upgrade.challenge.api.repository.BookingStay;
 import com.upgrade.challenge.api.repository.ReservedDayRepository;
 import org.junit.Assert;
 import org.junit.Test;
@@ -21,6 +23,8 @@ import java.util.*;
 
 import static org.hamcrest.Matchers.hasSize;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(SpringJUnit4ClassRunner.class)
@@ -36,6 +40,9 @@ public class BookingServiceTest {
     @MockBean
     ReservedDayRepository reservedDayRepository;
 
+    @Autowired
+    AvailabilityIndex availabilityIndex;
+
     @Test(expected = IllegalArgumentException.class)
     public void book_without_email_should_throw_exception() {
         Booking booking = Booking.builder()
@@ -216,26 +223,60 @@ public class BookingServiceTest {
     public void findAvailableDates_2_reserved_days_of_next_10_days() {
         LocalDate firstReservedDate = LocalDate.now().plusDays(1);
         LocalDate secondReservedDay = LocalDate.now().plusDays(2);
-        ReservedDay reservedDay = ReservedDay.builder()
-                .date(firstReservedDate)
-                .build();
-
-        List<ReservedDay> reservedDays = new ArrayList<>();
-        reservedDays.add(reservedDay);
+        List<BookingStay> bookings = new ArrayList<>();
+        bookings.add(new BookingStay(1L, firstReservedDate, secondReservedDay.plusDays(1)));
 
-        reservedDay = ReservedDay.builder()
-                .date(secondReservedDay)
-                .build();
-
-        reservedDays.add(reservedDay);
-
-        when(reservedDayRepository.findReservedDaysBetweenDates(any(), any())).thenReturn(reservedDays);
+        when(bookingRepository.findOverlapping(any(), any())).thenReturn(bookings);
+        availabilityIndex.load();
 
         Set<LocalDate> availableDays = bookingService.findAvailableDates(LocalDate.now(), LocalDate.now().plusDays(10));
 
         Assert.assertThat(availableDays, hasSize(9));
         Assert.assertFalse(availableDays.contains(firstReservedDate));
         Assert.assertFalse(availableDays.contains(secondReservedDay));
+        verify(bookingRepository, times(1)).findOverlapping(any(), any());
+    }
+
+    @Test
+    public void book_then_cancel_should_update_available_dates() {
+        LocalDate checkIn = LocalDate.now().plusDays(20);
+        LocalDate checkOut = LocalDate.now().plusDays(22);
+        Booking booking = Booking.builder()
+                .id(new Random().nextLong())
+                .email("a@b.c")
+                .fullName("John Doe")
+                .checkInDate(checkIn)
+                .checkOutDate(checkOut)
+                .build();
+
+        bookingService.book(booking);
+
+        Set<LocalDate> availableDays = bookingService.findAvailableDates(checkIn, checkOut);
+        Assert.assertThat(availableDays, hasSize(1));
+        Assert.assertTrue(availableDays.contains(checkOut));
+
+        when(bookingRepository.findById(any())).thenReturn(Optional.of(booking));
+        when(reservedDayRepository.deleteBookingNights(booking.getId())).thenReturn(2);
+
+        bookingService.cancel(booking.getId());
+
+        Assert.assertThat(bookingService.findAvailableDates(checkIn, checkOut), hasSize(3));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void cancel_with_reserved_nights_missing_should_fail_as_an_inconsistency() {
+        LocalDate checkIn = LocalDate.now().plusDays(24);
+        Booking booking = Booking.builder()
+                .id(new Random().nextLong())
+                .email("a@b.c")
+                .fullName("John Doe")
+                .checkInDate(checkIn)
+                .checkOutDate(checkIn.plusDays(2))
+                .build();
+
+        when(bookingRepository.findById(any())).thenReturn(Optional.of(booking));
+        when(reservedDayRepository.deleteBookingNights(booking.getId())).thenReturn(1);
 
+        bookingService.cancel(booking.getId());
     }
 }
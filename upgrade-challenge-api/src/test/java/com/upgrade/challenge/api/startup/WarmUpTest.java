@@ -0,0 +1,74 @@
+package com.upgrade.challenge.api.startup;
+
+import com.upgrade.challenge.api.entity.Booking;
+import com.upgrade.challenge.api.metrics.BookingMetricsAspect;
+import com.upgrade.challenge.api.repository.ReservationEventRepository;
+import com.upgrade.challenge.api.service.BookingService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.SessionFactory;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.LocalDate;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:warm-up;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+        "booking.warm-up.enabled=true",
+        "booking.warm-up.iterations=5",
+        "booking.cluster.enabled=true"
+})
+public class WarmUpTest {
+
+    @Autowired
+    WarmUp warmUp;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    BookingService bookingService;
+
+    @Autowired
+    ReservationEventRepository reservationEventRepository;
+
+    @Test
+    public void warm_up_should_leave_no_trace_in_the_metrics() {
+        Assert.assertEquals(Status.UP, warmUp.health().getStatus());
+        Assert.assertEquals(5, warmUp.health().getDetails().get("iterations"));
+
+        Assert.assertNull(meterRegistry.find("booking.service").tag("method", "book").timer());
+        Assert.assertNull(meterRegistry.find(BookingMetricsAspect.TRANSACTION_TIMER).tag("method", "book").timer());
+        Assert.assertTrue(meterRegistry.getMeters().stream()
+                .noneMatch(meter -> meter.getId().getName().startsWith(WarmUp.METER_PREFIX)));
+        Assert.assertEquals(0, entityManagerFactory.unwrap(SessionFactory.class).getStatistics().getEntityInsertCount());
+    }
+
+    @Test
+    @DirtiesContext
+    public void dry_run_bookings_should_not_take_reservation_event_ids() {
+        Booking booking = bookingService.book(Booking.builder()
+                .campsiteId(2L)
+                .email("a@b.c")
+                .fullName("John Doe")
+                .checkInDate(LocalDate.now().plusDays(4))
+                .checkOutDate(LocalDate.now().plusDays(5))
+                .build());
+        try {
+            // the first id of the sequence: no rolled back event left a gap for the other nodes to wait out
+            Assert.assertEquals(1L, reservationEventRepository.findLastId());
+        } finally {
+            bookingService.cancel(booking.getId());
+        }
+    }
+}
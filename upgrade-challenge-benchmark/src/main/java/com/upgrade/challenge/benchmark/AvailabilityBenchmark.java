@@ -0,0 +1,72 @@
+package com.upgrade.challenge.benchmark;
+
+import com.upgrade.challenge.api.availability.AvailabilityRangesWriter;
+import com.upgrade.challenge.api.availability.Campsites;
+import com.upgrade.challenge.api.service.BookingService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read path of GET /api/booking/available, below the HTTP layer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AvailabilityBenchmark {
+
+    @Param({"7", "30", "90"})
+    int windowDays;
+
+    @Param({"0", "50", "90"})
+    int occupancyPercent;
+
+    private ConfigurableApplicationContext context;
+
+    private BookingService bookingService;
+
+    private LocalDate startDate;
+
+    private LocalDate endDate;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        bookingService = context.getBean(BookingService.class);
+        BenchmarkApplication.occupy(bookingService, Campsites.DEFAULT_ID, occupancyPercent, 42);
+        startDate = LocalDate.now();
+        endDate = startDate.plusDays(windowDays - 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Set<LocalDate> findAvailableDates() {
+        return bookingService.findAvailableDates(Campsites.DEFAULT_ID, startDate, endDate);
+    }
+
+    @Benchmark
+    public int findAvailableRanges(RangesBuffer buffer) throws IOException {
+        AvailabilityRangesWriter writer = new AvailabilityRangesWriter();
+        bookingService.findAvailableRanges(Campsites.DEFAULT_ID, startDate, endDate, writer);
+        buffer.out.reset();
+        writer.writeTo(buffer.out);
+        return buffer.out.size();
+    }
+
+    @State(Scope.Thread)
+    public static class RangesBuffer {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(1024);
+    }
+}
@@ -0,0 +1,62 @@
+package com.upgrade.challenge.benchmark;
+
+import com.upgrade.challenge.api.ChallengeApiApplication;
+import com.upgrade.challenge.api.entity.Booking;
+import com.upgrade.challenge.api.service.BookingService;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDate;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Boots the API against a private in-memory H2 database for one benchmark trial.
+ */
+final class BenchmarkApplication {
+
+    static final int CAMPSITES = 64;
+
+    private BenchmarkApplication() {
+    }
+
+    /**
+     * Overrides are passed as command line arguments so they win over the API's application.yaml.
+     */
+    static ConfigurableApplicationContext start() {
+        return new SpringApplicationBuilder(ChallengeApiApplication.class)
+                .web(WebApplicationType.NONE)
+                .logStartupInfo(false)
+                .run(
+                        "--spring.datasource.url=jdbc:h2:mem:bench-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=bench",
+                        "--spring.jpa.hibernate.ddl-auto=create",
+                        "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                        "--booking.campsites=" + CAMPSITES,
+                        "--logging.level.root=WARN",
+                        "--logging.level.org.hibernate.SQL=WARN",
+                        "--logging.level.org.springframework=WARN");
+    }
+
+    /**
+     * Books single nights on the campsite until roughly the given share of the bookable window is taken.
+     */
+    static void occupy(BookingService bookingService, long campsiteId, int occupancyPercent, long seed) {
+        Random random = new Random(seed);
+        LocalDate today = LocalDate.now();
+        for (int day = 1; day <= 30; day++) {
+            if (random.nextInt(100) >= occupancyPercent) {
+                continue;
+            }
+            bookingService.book(Booking.builder()
+                    .campsiteId(campsiteId)
+                    .email("bench@volcano.camp")
+                    .fullName("Bench Mark")
+                    .checkInDate(today.plusDays(day))
+                    .checkOutDate(today.plusDays(day + 1))
+                    .build());
+        }
+    }
+}
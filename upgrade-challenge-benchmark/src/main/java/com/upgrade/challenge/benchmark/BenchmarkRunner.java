@@ -0,0 +1,36 @@
+package com.upgrade.challenge.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+
+/**
+ * Runs every benchmark once per thread count in {@code bench.threads} and writes one JSON result file per
+ * thread count to {@code bench.output}. Regular JMH arguments (e.g. a benchmark regexp) are passed through.
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        File output = new File(System.getProperty("bench.output", "target/jmh"));
+        output.mkdirs();
+
+        for (String threads : System.getProperty("bench.threads", "1").split(",")) {
+            int count = Integer.parseInt(threads.trim());
+            new Runner(new OptionsBuilder()
+                    .parent(commandLine)
+                    .threads(count)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(new File(output, "threads-" + count + ".json").getPath())
+                    .build()).run();
+        }
+    }
+}
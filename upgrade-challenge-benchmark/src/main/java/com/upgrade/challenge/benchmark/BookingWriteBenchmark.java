@@ -0,0 +1,162 @@
+package com.upgrade.challenge.benchmark;
+
+import com.upgrade.challenge.api.entity.Booking;
+import com.upgrade.challenge.api.exceprions.BookingDateUnavailableException;
+import com.upgrade.challenge.api.service.BookingService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Write paths of BookingService against H2. Every thread works on its own campsite unless
+ * {@code sharedCampsite} is set, in which case all threads race for the same nights and most of them
+ * measure the cost of a rejection.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookingWriteBenchmark {
+
+    @Benchmark
+    public Long book(BookState state) {
+        state.bookingId = state.application.tryBook(state.campsiteId, 10, 12);
+        return state.bookingId;
+    }
+
+    @Benchmark
+    public Long cancel(CancelState state) {
+        state.application.tryCancel(state.bookingId);
+        Long cancelled = state.bookingId;
+        state.bookingId = null;
+        return cancelled;
+    }
+
+    @Benchmark
+    public Booking update(UpdateState state) {
+        if (state.bookingId == null) {
+            return null;
+        }
+        state.shifted = !state.shifted;
+        LocalDate checkIn = LocalDate.now().plusDays(state.shifted ? 11 : 10);
+        try {
+            return state.application.bookingService.update(Booking.builder()
+                    .id(state.bookingId)
+                    .campsiteId(state.campsiteId)
+                    .checkInDate(checkIn)
+                    .checkOutDate(checkIn.plusDays(2))
+                    .build());
+        } catch (BookingDateUnavailableException ex) {
+            state.shifted = !state.shifted;
+            return null;
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Application {
+
+        @Param({"false", "true"})
+        boolean sharedCampsite;
+
+        private final AtomicInteger nextCampsite = new AtomicInteger();
+
+        private ConfigurableApplicationContext context;
+
+        private BookingService bookingService;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            context = BenchmarkApplication.start();
+            bookingService = context.getBean(BookingService.class);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            context.close();
+        }
+
+        long campsite() {
+            return sharedCampsite ? 1 : nextCampsite.getAndIncrement() % BenchmarkApplication.CAMPSITES + 1;
+        }
+
+        Long tryBook(long campsiteId, int checkIn, int checkOut) {
+            LocalDate today = LocalDate.now();
+            try {
+                return bookingService.book(Booking.builder()
+                        .campsiteId(campsiteId)
+                        .email("bench@volcano.camp")
+                        .fullName("Bench Mark")
+                        .checkInDate(today.plusDays(checkIn))
+                        .checkOutDate(today.plusDays(checkOut))
+                        .build()).getId();
+            } catch (BookingDateUnavailableException ex) {
+                return null;
+            }
+        }
+
+        void tryCancel(Long bookingId) {
+            if (bookingId != null) {
+                bookingService.cancel(bookingId);
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class BookState {
+        Application application;
+        long campsiteId;
+        Long bookingId;
+
+        @Setup(Level.Trial)
+        public void setUp(Application application) {
+            this.application = application;
+            campsiteId = application.campsite();
+        }
+
+        @Setup(Level.Invocation)
+        public void cancelPrevious() {
+            application.tryCancel(bookingId);
+            bookingId = null;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class CancelState {
+        Application application;
+        long campsiteId;
+        Long bookingId;
+
+        @Setup(Level.Trial)
+        public void setUp(Application application) {
+            this.application = application;
+            campsiteId = application.campsite();
+        }
+
+        @Setup(Level.Invocation)
+        public void bookNext() {
+            bookingId = application.tryBook(campsiteId, 10, 12);
+        }
+    }
+
+    /**
+     * Books once per trial; the context is thrown away afterwards, so there is nothing to cancel.
+     */
+    @State(Scope.Thread)
+    public static class UpdateState {
+        Application application;
+        long campsiteId;
+        Long bookingId;
+        boolean shifted;
+
+        @Setup(Level.Trial)
+        public void setUp(Application application) {
+            this.application = application;
+            campsiteId = application.campsite();
+            bookingId = application.tryBook(campsiteId, 10, 12);
+        }
+    }
+}
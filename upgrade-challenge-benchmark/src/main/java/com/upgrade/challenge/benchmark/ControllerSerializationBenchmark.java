@@ -0,0 +1,75 @@
+package com.upgrade.challenge.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.upgrade.challenge.api.availability.Campsites;
+import com.upgrade.challenge.api.controller.BookingController;
+import com.upgrade.challenge.api.service.BookingService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * GET /api/booking/available through the MVC stack, comparing the JSON date list with the range encoding.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ControllerSerializationBenchmark {
+
+    @Param({"30", "90"})
+    int windowDays;
+
+    @Param({"50"})
+    int occupancyPercent;
+
+    private ConfigurableApplicationContext context;
+
+    private MockMvc mockMvc;
+
+    private String startDate;
+
+    private String endDate;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        BenchmarkApplication.occupy(context.getBean(BookingService.class), Campsites.DEFAULT_ID, occupancyPercent, 42);
+        mockMvc = MockMvcBuilders.standaloneSetup(context.getBean(BookingController.class))
+                .setMessageConverters(new MappingJackson2HttpMessageConverter(context.getBean(ObjectMapper.class)))
+                .build();
+        startDate = LocalDate.now().toString();
+        endDate = LocalDate.now().plusDays(windowDays - 1).toString();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int availableDates() throws Exception {
+        return mockMvc.perform(get("/api/booking/available")
+                .param("startDate", startDate)
+                .param("endDate", endDate))
+                .andReturn().getResponse().getContentLength();
+    }
+
+    @Benchmark
+    public int availableRanges() throws Exception {
+        return mockMvc.perform(get("/api/booking/available")
+                .param("format", "ranges")
+                .param("startDate", startDate)
+                .param("endDate", endDate))
+                .andReturn().getResponse().getContentLength();
+    }
+}
@@ -0,0 +1,183 @@
+package com.upgrade.challenge.loadtest;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sends a traffic plan on schedule. Each request is queued for the senders when it is due, whatever the state of
+ * earlier ones, and its latency is taken from that moment, so a slow response delays no later request being issued
+ * and is charged to every one that queued behind it.
+ */
+@Slf4j
+final class LoadDriver {
+
+    private final String baseUrl;
+
+    private final LoadTestOptions options;
+
+    private final HttpClient client;
+
+    /**
+     * One thread per connection, each sending a request at a time: the open connections are bounded as they are
+     * with real clients behind a proxy, and queued requests wait in the executor.
+     */
+    private final ExecutorService senders;
+
+    private final Random random;
+
+    /**
+     * Bookings made during the run, for the updates and cancellations to act on.
+     */
+    private final List<Long> booked = new ArrayList<>();
+
+    private final Map<Operation, OperationResults> results = new EnumMap<>(Operation.class);
+
+    LoadDriver(String baseUrl, LoadTestOptions options) {
+        this.baseUrl = baseUrl;
+        this.options = options;
+        this.senders = Executors.newFixedThreadPool(options.connections);
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        this.random = new Random(options.seed);
+        for (Operation operation : Operation.values()) {
+            this.results.put(operation, new OperationResults());
+        }
+    }
+
+    /**
+     * @return the results of the requests due after the warm-up, by operation
+     */
+    Map<Operation, OperationResults> run(List<PlannedRequest> plan) throws InterruptedException {
+        long warmupMicros = this.options.warmup.toNanos() / 1000;
+        long start = System.nanoTime();
+        for (PlannedRequest planned : plan) {
+            long due = start + planned.getOffsetMicros() * 1000;
+            for (long wait; (wait = due - System.nanoTime()) > 0; ) {
+                LockSupport.parkNanos(wait);
+            }
+            boolean measured = planned.getOffsetMicros() >= warmupMicros;
+            this.senders.execute(() -> this.send(planned, due, measured));
+        }
+
+        this.senders.shutdown();
+        if (!this.senders.awaitTermination(1, TimeUnit.MINUTES)) {
+            log.warn("Requests still unanswered a minute after the end of the plan");
+            this.senders.shutdownNow();
+        }
+        return this.results;
+    }
+
+    private void send(PlannedRequest planned, long due, boolean measured) {
+        OperationResults results = this.results.get(planned.getOperation());
+        HttpRequest request = this.request(planned);
+        if (request == null) {
+            if (measured) {
+                results.skip();
+            }
+            return;
+        }
+
+        long sent = System.nanoTime();
+        HttpResponse<String> response;
+        try {
+            response = this.client.send(request, HttpResponse.BodyHandlers.ofString());
+        } catch (IOException ex) {
+            response = null;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        int status = response == null ? OperationResults.NO_RESPONSE : response.statusCode();
+        if (measured) {
+            results.record(due, sent, System.nanoTime(), status);
+        }
+        if (status == 200 && (planned.getOperation() == Operation.BOOK || planned.getOperation() == Operation.BURST)) {
+            this.booked(Long.valueOf(response.body().trim()));
+        }
+    }
+
+    private HttpRequest request(PlannedRequest planned) {
+        LocalDate checkIn = LocalDate.now().plusDays(planned.getCheckIn());
+        LocalDate checkOut = checkIn.plusDays(planned.getNights());
+        switch (planned.getOperation()) {
+            case POLL:
+                return this.builder("/api/booking/available?campsiteId=" + planned.getCampsiteId()
+                        + "&startDate=" + LocalDate.now() + "&endDate=" + LocalDate.now().plusDays(TrafficPlan.NEWEST_NIGHT))
+                        .GET()
+                        .build();
+            case BOOK:
+            case BURST:
+                return this.builder("/api/booking")
+                        .POST(json("{\"campsiteId\":" + planned.getCampsiteId()
+                                + ",\"email\":\"load@volcano.camp\",\"fullName\":\"Load Test\""
+                                + ",\"checkInDate\":\"" + checkIn + "\",\"checkOutDate\":\"" + checkOut + "\"}"))
+                        .build();
+            case UPDATE:
+                Long updated = this.pickBooked(false);
+                return updated == null ? null : this.builder("/api/booking/" + updated)
+                        .PUT(json("{\"checkInDate\":\"" + checkIn + "\",\"checkOutDate\":\"" + checkOut + "\"}"))
+                        .build();
+            case CANCEL:
+                Long cancelled = this.pickBooked(true);
+                return cancelled == null ? null : this.builder("/api/booking/" + cancelled)
+                        .DELETE()
+                        .build();
+            default:
+                throw new IllegalArgumentException("Unknown operation " + planned.getOperation());
+        }
+    }
+
+    private HttpRequest.Builder builder(String path) {
+        return HttpRequest.newBuilder(URI.create(this.baseUrl + path))
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", "application/json")
+                .header("X-Forwarded-For", "10.0." + this.clientAddress());
+    }
+
+    private synchronized String clientAddress() {
+        int client = this.random.nextInt(this.options.clients);
+        return (client >> 8 & 0xff) + "." + (client & 0xff);
+    }
+
+    private static HttpRequest.BodyPublisher json(String body) {
+        return HttpRequest.BodyPublishers.ofString(body);
+    }
+
+    private synchronized void booked(Long bookingId) {
+        this.booked.add(bookingId);
+    }
+
+    /**
+     * A random booking of the run, taken out of the pool when it is about to be cancelled.
+     */
+    private synchronized Long pickBooked(boolean remove) {
+        if (this.booked.isEmpty()) {
+            return null;
+        }
+        int index = this.random.nextInt(this.booked.size());
+        Long bookingId = this.booked.get(index);
+        if (remove) {
+            this.booked.set(index, this.booked.get(this.booked.size() - 1));
+            this.booked.remove(this.booked.size() - 1);
+        }
+        return bookingId;
+    }
+}
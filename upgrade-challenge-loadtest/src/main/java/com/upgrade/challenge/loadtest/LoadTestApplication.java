@@ -0,0 +1,58 @@
+package com.upgrade.challenge.loadtest;
+
+import com.upgrade.challenge.api.ChallengeApiApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Boots the API with its web server on a free port, against a private in-memory H2 database or the database of
+ * {@code load.datasource-url}.
+ */
+final class LoadTestApplication {
+
+    private LoadTestApplication() {
+    }
+
+    /**
+     * Overrides are passed as command line arguments so they win over the API's application.yaml. Admission control
+     * stays on and tells clients apart by X-Forwarded-For, as it would behind a proxy.
+     */
+    static ConfigurableApplicationContext start(LoadTestOptions options) {
+        List<String> args = new ArrayList<>(Arrays.asList(
+                "--server.port=0",
+                "--booking.campsites=" + options.campsites,
+                "--booking.admission.client-header=X-Forwarded-For",
+                "--logging.level.root=WARN",
+                "--logging.level.org.hibernate.SQL=WARN",
+                "--logging.level.org.springframework=WARN",
+                "--logging.level.com.upgrade.challenge.loadtest=INFO"));
+        if (options.datasourceUrl.isEmpty()) {
+            args.addAll(Arrays.asList(
+                    "--spring.datasource.url=jdbc:h2:mem:load-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1",
+                    "--spring.datasource.username=sa",
+                    "--spring.datasource.password=load",
+                    "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect"));
+        } else {
+            args.addAll(Arrays.asList(
+                    "--spring.datasource.url=" + options.datasourceUrl,
+                    "--spring.datasource.username=" + options.datasourceUsername,
+                    "--spring.datasource.password=" + options.datasourcePassword));
+        }
+
+        return new SpringApplicationBuilder(ChallengeApiApplication.class)
+                .web(WebApplicationType.SERVLET)
+                .logStartupInfo(false)
+                .run(args.toArray(new String[0]));
+    }
+
+    static String baseUrl(ConfigurableApplicationContext context) {
+        return "http://localhost:" + ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+    }
+}
@@ -0,0 +1,133 @@
+package com.upgrade.challenge.loadtest;
+
+import org.springframework.boot.convert.DurationStyle;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Settings of a run, read from {@code load.*} system properties.
+ */
+final class LoadTestOptions {
+
+    /**
+     * Base URL of a running instance; when empty the API is started in this JVM.
+     */
+    final String target;
+
+    /**
+     * Database of the API started in this JVM, e.g. a local MariaDB container; a private in-memory H2 when empty.
+     */
+    final String datasourceUrl;
+
+    final String datasourceUsername;
+
+    final String datasourcePassword;
+
+    final int campsites;
+
+    /**
+     * Requests started per second, whatever the response times: an open model, as real clients do not wait for each
+     * other.
+     */
+    final double rate;
+
+    final Duration duration;
+
+    /**
+     * Requests due before the end of the warm-up are sent but not reported.
+     */
+    final Duration warmup;
+
+    final Map<Operation, Integer> mix;
+
+    final Duration burstInterval;
+
+    final int burstSize;
+
+    /**
+     * Distinct client addresses sent in X-Forwarded-For, so the per-client rate limit sees a crowd.
+     */
+    final int clients;
+
+    /**
+     * Connections sending at the same time; requests due while all are busy wait for one, and the wait counts in
+     * their latency.
+     */
+    final int connections;
+
+    final long seed;
+
+    /**
+     * Traffic log to replay instead of generating traffic.
+     */
+    final File replay;
+
+    final double replaySpeed;
+
+    /**
+     * Where to write the traffic sent, for a later replay.
+     */
+    final File record;
+
+    final File output;
+
+    private LoadTestOptions() {
+        this.target = property("load.target", "");
+        this.datasourceUrl = property("load.datasource-url", "");
+        this.datasourceUsername = property("load.datasource-username", "root");
+        this.datasourcePassword = property("load.datasource-password", "volcano");
+        this.campsites = Integer.parseInt(property("load.campsites", "16"));
+        this.rate = Double.parseDouble(property("load.rate", "200"));
+        this.duration = DurationStyle.detectAndParse(property("load.duration", "60s"));
+        this.warmup = DurationStyle.detectAndParse(property("load.warmup", "10s"));
+        this.mix = parseMix(property("load.mix", "poll=70,book=15,update=10,cancel=5"));
+        this.burstInterval = DurationStyle.detectAndParse(property("load.burst-interval", "10s"));
+        this.burstSize = Integer.parseInt(property("load.burst-size", "50"));
+        this.clients = Integer.parseInt(property("load.clients", "1000"));
+        this.connections = Integer.parseInt(property("load.connections", "64"));
+        this.seed = Long.parseLong(property("load.seed", "42"));
+        this.replay = file(property("load.replay", ""));
+        this.replaySpeed = Double.parseDouble(property("load.replay-speed", "1"));
+        this.record = file(property("load.record", ""));
+        this.output = new File(property("load.output", "target/loadtest"));
+    }
+
+    static LoadTestOptions fromSystemProperties() {
+        return new LoadTestOptions();
+    }
+
+    /**
+     * Maven passes an empty value for a property left unset.
+     */
+    private static String property(String name, String defaultValue) {
+        String value = System.getProperty(name, "").trim();
+        return value.isEmpty() ? defaultValue : value;
+    }
+
+    private static File file(String path) {
+        return path.isEmpty() ? null : new File(path);
+    }
+
+    /**
+     * Reads weights such as {@code poll=70,book=15}; operations left out are not sent. Bursts have their own
+     * schedule.
+     */
+    private static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.split("=");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid load.mix entry: " + entry);
+            }
+            Operation operation = Operation.valueOf(parts[0].trim().toUpperCase());
+            if (operation == Operation.BURST) {
+                throw new IllegalArgumentException("Bursts are set with load.burst-interval and load.burst-size.");
+            }
+            weights.put(operation, Integer.parseInt(parts[1].trim()));
+        }
+        return weights;
+    }
+}
@@ -0,0 +1,77 @@
+package com.upgrade.challenge.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Drives the API over HTTP with generated or replayed traffic and writes {@code report.json} to {@code load.output}:
+ * throughput, status counts, conflict, rejection and error rates, and latency percentiles by operation and in total.
+ * See {@link LoadTestOptions} for the settings.
+ */
+@Slf4j
+public final class LoadTestRunner {
+
+    private LoadTestRunner() {
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        LoadTestOptions options = LoadTestOptions.fromSystemProperties();
+        List<PlannedRequest> plan = options.replay != null
+                ? TrafficPlan.read(options.replay, options.replaySpeed)
+                : TrafficPlan.generate(options);
+        if (options.record != null) {
+            TrafficPlan.write(plan, options.record);
+        }
+
+        ConfigurableApplicationContext context = options.target.isEmpty() ? LoadTestApplication.start(options) : null;
+        try {
+            String baseUrl = context != null ? LoadTestApplication.baseUrl(context) : options.target;
+            log.info("Sending {} requests to {}", plan.size(), baseUrl);
+            Map<Operation, OperationResults> results = new LoadDriver(baseUrl, options).run(plan);
+            writeReport(options, baseUrl, plan, results);
+        } finally {
+            if (context != null) {
+                context.close();
+            }
+        }
+    }
+
+    private static void writeReport(LoadTestOptions options, String baseUrl, List<PlannedRequest> plan,
+                                    Map<Operation, OperationResults> results) throws IOException {
+        long lastMicros = plan.isEmpty() ? 0 : plan.get(plan.size() - 1).getOffsetMicros();
+        double seconds = Math.max(0, lastMicros / 1e6 - options.warmup.toNanos() / 1e9);
+
+        OperationResults total = new OperationResults();
+        Map<String, Object> operations = new LinkedHashMap<>();
+        results.forEach((operation, operationResults) -> {
+            if (operationResults.requests() > 0) {
+                operations.put(operation.name(), operationResults.summary(seconds));
+                total.add(operationResults);
+            }
+        });
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("target", baseUrl);
+        report.put("finishedAt", Instant.now().toString());
+        report.put("traffic", options.replay != null ? options.replay.getPath() : "generated");
+        report.put("offeredRequests", plan.size());
+        report.put("measuredSeconds", seconds);
+        report.put("operations", operations);
+        report.put("total", total.summary(seconds));
+
+        options.output.mkdirs();
+        File file = new File(options.output, "report.json");
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file, report);
+        log.info("{} requests measured, p99 {} ms, report written to {}",
+                total.requests(), total.latencyMillis(99), file.getPath());
+    }
+}
@@ -0,0 +1,32 @@
+package com.upgrade.challenge.loadtest;
+
+/**
+ * The kinds of requests sent, each reported on its own.
+ */
+enum Operation {
+
+    /**
+     * {@code GET /api/booking/available} over the whole bookable window of a campsite.
+     */
+    POLL,
+
+    /**
+     * {@code POST /api/booking} of a stay anywhere in the bookable window.
+     */
+    BOOK,
+
+    /**
+     * {@code POST /api/booking} of the night that just opened, sent in bursts that race each other for it.
+     */
+    BURST,
+
+    /**
+     * {@code PUT /api/booking/{id}} moving a booking made during the run.
+     */
+    UPDATE,
+
+    /**
+     * {@code DELETE /api/booking/{id}} of a booking made during the run.
+     */
+    CANCEL
+}
@@ -0,0 +1,114 @@
+package com.upgrade.challenge.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Responses to one operation, or to all of them. Two latencies are kept for each response: from when the request
+ * was due, which includes any time it waited behind slow ones and is what a user sees, and from when it was sent.
+ * Measuring from the send only would hide the stalls of the system under test, the coordinated omission that
+ * closed-loop load generators suffer from.
+ */
+final class OperationResults {
+
+    /**
+     * Stands for a request that got no response.
+     */
+    static final int NO_RESPONSE = -1;
+
+    private static final long HIGHEST_MICROS = TimeUnit.MINUTES.toMicros(5);
+
+    private final Histogram latency = new ConcurrentHistogram(HIGHEST_MICROS, 3);
+
+    private final Histogram serviceTime = new ConcurrentHistogram(HIGHEST_MICROS, 3);
+
+    private final ConcurrentMap<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+
+    private final LongAdder skipped = new LongAdder();
+
+    void record(long dueNanos, long sentNanos, long receivedNanos, int status) {
+        this.latency.recordValue(Math.min(HIGHEST_MICROS, (receivedNanos - dueNanos) / 1000));
+        this.serviceTime.recordValue(Math.min(HIGHEST_MICROS, (receivedNanos - sentNanos) / 1000));
+        this.statuses.computeIfAbsent(status, key -> new LongAdder()).increment();
+    }
+
+    /**
+     * An update or a cancellation due while no booking of the run was left to act on.
+     */
+    void skip() {
+        this.skipped.increment();
+    }
+
+    void add(OperationResults other) {
+        this.latency.add(other.latency);
+        this.serviceTime.add(other.serviceTime);
+        other.statuses.forEach((status, count) ->
+                this.statuses.computeIfAbsent(status, key -> new LongAdder()).add(count.sum()));
+        this.skipped.add(other.skipped.sum());
+    }
+
+    /**
+     * The summary of the report: 409 answers are conflicts, 429 and 503 are load shed by admission control, and
+     * other 5xx answers or missing responses are errors.
+     */
+    Map<String, Object> summary(double seconds) {
+        long requests = this.latency.getTotalCount();
+        long conflicts = this.count(409);
+        long rejected = this.count(429) + this.count(503);
+        long errors = this.statuses.entrySet().stream()
+                .filter(entry -> entry.getKey() == NO_RESPONSE || entry.getKey() >= 500 && entry.getKey() != 503)
+                .mapToLong(entry -> entry.getValue().sum())
+                .sum();
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("requests", requests);
+        summary.put("throughput", seconds > 0 ? requests / seconds : 0);
+        summary.put("skipped", this.skipped.sum());
+        Map<String, Long> statusCounts = new TreeMap<>();
+        this.statuses.forEach((status, count) ->
+                statusCounts.put(status == NO_RESPONSE ? "none" : String.valueOf(status), count.sum()));
+        summary.put("statuses", statusCounts);
+        summary.put("conflictRate", rate(conflicts, requests));
+        summary.put("rejectedRate", rate(rejected, requests));
+        summary.put("errorRate", rate(errors, requests));
+        summary.put("latencyMs", percentiles(this.latency));
+        summary.put("serviceTimeMs", percentiles(this.serviceTime));
+        return summary;
+    }
+
+    long requests() {
+        return this.latency.getTotalCount();
+    }
+
+    double latencyMillis(double percentile) {
+        return this.latency.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    private long count(int status) {
+        LongAdder count = this.statuses.get(status);
+        return count == null ? 0 : count.sum();
+    }
+
+    private static double rate(long count, long total) {
+        return total == 0 ? 0 : (double) count / total;
+    }
+
+    private static Map<String, Double> percentiles(Histogram histogram) {
+        Map<String, Double> percentiles = new LinkedHashMap<>();
+        percentiles.put("p50", histogram.getValueAtPercentile(50) / 1000.0);
+        percentiles.put("p90", histogram.getValueAtPercentile(90) / 1000.0);
+        percentiles.put("p99", histogram.getValueAtPercentile(99) / 1000.0);
+        percentiles.put("p99.9", histogram.getValueAtPercentile(99.9) / 1000.0);
+        percentiles.put("max", histogram.getMaxValue() / 1000.0);
+        percentiles.put("mean", histogram.getMean() / 1000.0);
+        return percentiles;
+    }
+}
@@ -0,0 +1,32 @@
+package com.upgrade.challenge.loadtest;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One request of a traffic plan, and one line of a recorded traffic log. Dates are in days from the day of the run,
+ * and updates and cancellations pick a booking made earlier in the same run, so a log replays the same way on any
+ * later day and against an empty database.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+class PlannedRequest {
+
+    /**
+     * When the request is due, from the start of the run.
+     */
+    private long offsetMicros;
+
+    private Operation operation;
+
+    private long campsiteId;
+
+    /**
+     * Check-in of a booking or new dates of an update, in days from today.
+     */
+    private int checkIn;
+
+    private int nights;
+}
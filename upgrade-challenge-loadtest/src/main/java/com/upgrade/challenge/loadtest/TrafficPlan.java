@@ -0,0 +1,113 @@
+package com.upgrade.challenge.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The requests of a run, in the order they are due: generated from the options, or read back from a traffic log of
+ * one JSON {@link PlannedRequest} per line.
+ */
+final class TrafficPlan {
+
+    /**
+     * The last night that can be booked, which opens at midnight.
+     */
+    static final int NEWEST_NIGHT = 30;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private TrafficPlan() {
+    }
+
+    /**
+     * Poisson arrivals at the configured rate, each drawn from the mix, plus a burst of bookings racing for the
+     * newest night of a few campsites every burst interval.
+     */
+    static List<PlannedRequest> generate(LoadTestOptions options) {
+        Random random = new Random(options.seed);
+        long durationMicros = options.duration.toNanos() / 1000;
+        List<PlannedRequest> requests = new ArrayList<>();
+
+        int totalWeight = options.mix.values().stream().mapToInt(Integer::intValue).sum();
+        double meanGapMicros = TimeUnit.SECONDS.toMicros(1) / options.rate;
+        for (double at = 0; totalWeight > 0; ) {
+            at += -Math.log(1 - random.nextDouble()) * meanGapMicros;
+            if (at >= durationMicros) {
+                break;
+            }
+            requests.add(request((long) at, pick(options.mix, totalWeight, random), options, random));
+        }
+
+        long burstMicros = options.burstInterval.toNanos() / 1000;
+        for (long at = burstMicros; burstMicros > 0 && at < durationMicros; at += burstMicros) {
+            // a handful of campsites, so most of the burst collides
+            int contested = Math.max(1, Math.min(options.campsites, options.burstSize / 10));
+            for (int i = 0; i < options.burstSize; i++) {
+                requests.add(new PlannedRequest(at, Operation.BURST, 1 + random.nextInt(contested), NEWEST_NIGHT, 1));
+            }
+        }
+
+        requests.sort(Comparator.comparingLong(PlannedRequest::getOffsetMicros));
+        return requests;
+    }
+
+    private static Operation pick(Map<Operation, Integer> mix, int totalWeight, Random random) {
+        int ticket = random.nextInt(totalWeight);
+        for (Map.Entry<Operation, Integer> weight : mix.entrySet()) {
+            ticket -= weight.getValue();
+            if (ticket < 0) {
+                return weight.getKey();
+            }
+        }
+        throw new IllegalStateException("Empty traffic mix");
+    }
+
+    private static PlannedRequest request(long at, Operation operation, LoadTestOptions options, Random random) {
+        int nights = 1 + random.nextInt(3);
+        return new PlannedRequest(at, operation, 1 + random.nextInt(options.campsites),
+                1 + random.nextInt(NEWEST_NIGHT - nights + 1), nights);
+    }
+
+    /**
+     * Reads a traffic log, with its offsets divided by the speed.
+     */
+    static List<PlannedRequest> read(File log, double speed) throws IOException {
+        List<PlannedRequest> requests = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(log.toPath())) {
+            for (String line; (line = reader.readLine()) != null; ) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                PlannedRequest request = MAPPER.readValue(line, PlannedRequest.class);
+                request.setOffsetMicros((long) (request.getOffsetMicros() / speed));
+                requests.add(request);
+            }
+        }
+        requests.sort(Comparator.comparingLong(PlannedRequest::getOffsetMicros));
+        return requests;
+    }
+
+    static void write(List<PlannedRequest> requests, File log) throws IOException {
+        File directory = log.getAbsoluteFile().getParentFile();
+        if (directory != null) {
+            directory.mkdirs();
+        }
+        try (BufferedWriter writer = Files.newBufferedWriter(log.toPath())) {
+            for (PlannedRequest request : requests) {
+                writer.write(MAPPER.writeValueAsString(request));
+                writer.newLine();
+            }
+        }
+    }
+}